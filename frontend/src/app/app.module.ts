@@ -16,7 +16,7 @@ import {OperationVehiclesComponent} from './operation/operation-vehicles/operati
 import {OperationLocationComponent} from './operation/operation-location/operation-location.component'
 import {ApiModule, BASE_PATH} from "./gen";
 import {OperationProcessingComponent} from './operation-processing/operation-processing.component';
-import {POLL_INTERVAL_PARAMETER} from "./parameter.service";
+import {POLL_INTERVAL_PARAMETER} from "./dashboard.service";
 import {environment} from "../environments/environment";
 
 @NgModule({
@@ -0,0 +1,57 @@
+import {DashboardService} from './dashboard.service'
+import {NEVER, of, take} from "rxjs";
+import {HttpHeaders, HttpResponse} from "@angular/common/http";
+
+describe('DashboardService', () => {
+  let service: DashboardService
+  let getDashboard = jest.fn((ifNoneMatch) => {
+    return ifNoneMatch === 'XYZ'
+      ? NEVER
+      : of(new HttpResponse({
+        status: 200,
+        headers: new HttpHeaders('ETag: XYZ'),
+        body: {
+          processing: false,
+          parameter: {highlight: 'foo', weatherPollInterval: 1, operationPollInterval: 1}
+        }
+      }))
+  })
+
+  beforeEach(() => service = new DashboardService(
+    1,
+    {getDashboard} as any,
+    {getEvents: () => NEVER, isConnected: () => of(false)} as any
+  ))
+
+  it('should be created', () => expect(service).toBeTruthy())
+
+  it('should fetch the dashboard on startup', (done) => {
+    service.getDashboard('parameter').pipe(take(1)).subscribe(parameter => {
+      expect(getDashboard).toHaveBeenCalledWith(undefined, undefined, 'response')
+      expect(parameter.highlight).toBe('foo')
+      done()
+    })
+  })
+
+  it('should wait for the next change with the received ETag', (done) => {
+    service.getDashboard('processing').pipe(take(1)).subscribe(() => {
+      setTimeout(() => {
+        expect(getDashboard).toHaveBeenLastCalledWith('XYZ', 'wait=30', 'response')
+        done()
+      })
+    })
+  })
+
+  it('should not poll while events are pushed', (done) => {
+    const getDashboard = jest.fn()
+    new DashboardService(
+      1,
+      {getDashboard} as any,
+      {getEvents: () => NEVER, isConnected: () => of(true)} as any
+    ).getDashboard('processing').subscribe()
+    setTimeout(() => {
+      expect(getDashboard).not.toHaveBeenCalled()
+      done()
+    }, 10)
+  })
+})
@@ -0,0 +1,76 @@
+import {Inject, Injectable, InjectionToken} from '@angular/core'
+import {
+  BehaviorSubject,
+  catchError,
+  distinctUntilChanged,
+  EMPTY,
+  exhaustMap,
+  filter,
+  interval,
+  Observable,
+  of,
+  shareReplay,
+  startWith
+} from 'rxjs'
+import {map, switchMap, tap} from 'rxjs/operators'
+import {Dashboard, DefaultService} from './gen'
+import {EventService} from './event.service'
+
+/**
+ * Polls everything a display shows with a single conditional long polling request while no events are pushed by the
+ * server.
+ */
+@Injectable({
+  providedIn: 'root'
+})
+export class DashboardService {
+
+  private readonly lastETag$ = new BehaviorSubject<string | undefined>(undefined)
+  private readonly pollInterval$ = new BehaviorSubject(this.initialPollInterval)
+  private readonly dashboard$: Observable<Dashboard> = this.eventService.isConnected().pipe(
+    switchMap(connected => connected
+      ? EMPTY
+      : this.pollInterval$.pipe(
+        distinctUntilChanged(),
+        switchMap(pollInterval => interval(pollInterval)),
+        startWith(0),
+        switchMap(() => this.lastETag$.pipe(distinctUntilChanged())),
+        // Long polling: parked requests are answered as soon as anything changes, further ticks are ignored meanwhile
+        exhaustMap(lastETag => this.apiService.getDashboard(lastETag, lastETag ? `wait=${LONG_POLL_WAIT}` : undefined, 'response')
+          .pipe(
+            catchError(resp => resp.status === 304 ? of(resp) : EMPTY),
+            filter(resp => resp.status !== 304),
+            tap(resp => this.lastETag$.next(resp.headers.get('ETag') || undefined)),
+            map(resp => resp.body as Dashboard),
+            tap(dashboard => this.pollInterval$.next(dashboard.parameter.operationPollInterval))
+          )
+        )
+      )
+    ),
+    shareReplay(1)
+  )
+
+  constructor(
+    @Inject(POLL_INTERVAL_PARAMETER)
+    private readonly initialPollInterval: number,
+    private readonly apiService: DefaultService,
+    private readonly eventService: EventService
+  ) {
+  }
+
+  public getDashboard<K extends keyof Dashboard>(property: K): Observable<Dashboard[K]> {
+    return this.dashboard$.pipe(
+      map(dashboard => dashboard[property])
+    )
+  }
+}
+
+/**
+ * Seconds to wait for the next change when polling, the server might limit this
+ */
+const LONG_POLL_WAIT = 30
+
+/**
+ * Milliseconds between requests until the configured poll interval is known
+ */
+export const POLL_INTERVAL_PARAMETER = new InjectionToken<number>('POLL_INTERVAL_PARAMETER')
@@ -0,0 +1,95 @@
+import {Inject, Injectable} from '@angular/core'
+import {BehaviorSubject, defer, distinctUntilChanged, filter, map, Observable, retry, share} from 'rxjs'
+import {webSocket} from 'rxjs/webSocket'
+import {BASE_PATH} from './gen'
+
+/**
+ * Receives state changes pushed by the server via WebSocket or, if not supported, via Server-Sent Events.
+ * Consumers should fall back to polling while not connected.
+ */
+@Injectable({
+  providedIn: 'root'
+})
+export class EventService {
+
+  private readonly connected$ = new BehaviorSubject(false)
+
+  private readonly webSocketEvents$: Observable<StateEvent> = defer(() => webSocket<StateEvent>({
+    url: this.getWebSocketUrl(),
+    openObserver: {
+      next: () => {
+        console.info('📡 Connected to event stream via WebSocket.')
+        this.connected$.next(true)
+      }
+    },
+    closeObserver: {next: () => this.connected$.next(false)}
+  })).pipe(
+    retry({delay: RECONNECT_DELAY})
+  )
+
+  private readonly serverSentEvents$ = new Observable<StateEvent>(subscriber => {
+    const source = new EventSource(`${this.basePath}/events`)
+    const forward = (event: Event) => subscriber.next({
+      topic: event.type as EventTopic,
+      data: JSON.parse((event as MessageEvent).data)
+    })
+    source.onopen = () => {
+      console.info('📡 Connected to event stream via Server-Sent Events.')
+      this.connected$.next(true)
+    }
+    // EventSource reconnects by itself and sends the Last-Event-ID header to catch up
+    source.onerror = () => this.connected$.next(false)
+    EVENT_TOPICS.forEach(topic => source.addEventListener(topic, forward))
+    return () => {
+      source.close()
+      this.connected$.next(false)
+    }
+  })
+
+  private readonly events$ = defer(() => {
+    if (typeof WebSocket !== 'undefined') {
+      return this.webSocketEvents$
+    }
+    if (typeof EventSource !== 'undefined') {
+      return this.serverSentEvents$
+    }
+    console.warn('📡 Neither WebSocket nor Server-Sent Events are supported, falling back to polling.')
+    return new Observable<StateEvent>()
+  }).pipe(
+    share()
+  )
+
+  constructor(
+    @Inject(BASE_PATH)
+    private readonly basePath: string
+  ) {
+  }
+
+  public getEvents<T>(topic: EventTopic): Observable<T> {
+    return this.events$.pipe(
+      filter(event => event.topic === topic),
+      map(event => event.data as T)
+    )
+  }
+
+  public isConnected() {
+    return this.connected$.pipe(distinctUntilChanged())
+  }
+
+  private getWebSocketUrl() {
+    const url = new URL(`${this.basePath}/ws`, window.location.href)
+    url.protocol = url.protocol === 'https:' ? 'wss:' : 'ws:'
+    return url.toString()
+  }
+}
+
+const RECONNECT_DELAY = 5_000
+
+const EVENT_TOPICS = ['operation', 'processing', 'weather', 'parameter', 'expired'] as const
+
+export type EventTopic = typeof EVENT_TOPICS[number]
+
+interface StateEvent {
+  topic: EventTopic
+  data: unknown
+}
@@ -1,12 +1,14 @@
 import {InfoService} from "./info.service";
-import {EMPTY, of} from "rxjs";
-import {ParameterService} from "../parameter.service";
+import {NEVER, of} from "rxjs";
 
 describe('InfoService', () => {
   let service: InfoService
 
   beforeEach(() => {
-    service = new InfoService({getParameter: () => of(1)} as ParameterService, {getWeather: () => EMPTY} as any)
+    service = new InfoService(
+      {getDashboard: () => NEVER} as any,
+      {getEvents: () => NEVER, isConnected: () => of(false)} as any
+    )
   })
 
   it('should be created', () => {
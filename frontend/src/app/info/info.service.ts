@@ -1,39 +1,22 @@
 import {Injectable} from '@angular/core'
-import {
-  BehaviorSubject,
-  catchError,
-  concatMap,
-  distinctUntilChanged,
-  EMPTY,
-  filter,
-  interval,
-  of,
-  shareReplay,
-  startWith,
-  timer
-} from 'rxjs'
-import {map, switchMap, tap} from 'rxjs/operators'
-import {DefaultService, Weather} from '../gen';
-import {ParameterService} from '../parameter.service';
+import {distinctUntilChanged, filter, merge, shareReplay, timer} from 'rxjs'
+import {map, tap} from 'rxjs/operators'
+import {Weather} from '../gen';
+import {DashboardService} from '../dashboard.service';
+import {EventService} from '../event.service';
 
 @Injectable({
   providedIn: 'root'
 })
 export class InfoService {
 
-  private readonly lastETag$ = new BehaviorSubject<string | undefined>(undefined)
-  private readonly weather$ = this.paramService.getParameter('weatherPollInterval').pipe(
-    switchMap(pollInterval => interval(pollInterval)),
-    startWith(0),
-    switchMap(() => this.lastETag$.pipe(distinctUntilChanged())),
-    concatMap(lastETag => this.apiService.getWeather(lastETag, 'response')
-      .pipe(
-        catchError(resp => resp.status === 304 ? of(resp) : EMPTY),
-        tap(resp => this.lastETag$.next(resp.headers.get('ETag') || undefined)),
-        filter(resp => resp.body !== undefined),
-        map(resp => resp.body),
-      )
+  private readonly weather$ = merge(
+    this.dashboardService.getDashboard('weather').pipe(
+      filter((weather): weather is Weather => !!weather)
     ),
+    this.eventService.getEvents<Weather>('weather')
+  ).pipe(
+    distinctUntilChanged((previous, current) => JSON.stringify(previous) === JSON.stringify(current)),
     tap(weather => console.info('⛅️ Current weather:', `${weather?.temperature}°`)),
     shareReplay(1)
   )
@@ -50,8 +33,8 @@ export class InfoService {
   )
 
   constructor(
-    private readonly paramService: ParameterService,
-    private readonly apiService: DefaultService
+    private readonly dashboardService: DashboardService,
+    private readonly eventService: EventService
   ) {
   }
 
@@ -1,43 +1,31 @@
 import {Injectable} from '@angular/core'
-import {
-  BehaviorSubject,
-  catchError,
-  combineLatest,
-  concatMap,
-  distinctUntilChanged,
-  EMPTY,
-  filter,
-  interval,
-  Observable,
-  of,
-  shareReplay,
-  startWith,
-} from 'rxjs'
-import {map, switchMap, tap} from 'rxjs/operators'
-import {DefaultService, Operation} from "../gen";
-import {ParameterService} from "../parameter.service";
+import {BehaviorSubject, combineLatest, distinctUntilChanged, ignoreElements, merge, Observable, shareReplay} from 'rxjs'
+import {map, tap} from 'rxjs/operators'
+import {Operation} from "../gen";
+import {DashboardService} from "../dashboard.service";
+import {EventService} from "../event.service";
 
 @Injectable({
   providedIn: 'root'
 })
 export class OperationService {
 
-  private readonly lastETag$ = new BehaviorSubject<string | undefined>(undefined)
   private readonly processing$ = new BehaviorSubject(false)
-  private readonly activeOperation$: Observable<Operation | null> = this.paramService.getParameter('operationPollInterval').pipe(
-    switchMap(pollInterval => interval(pollInterval as number)),
-    startWith(0),
-    switchMap(() => this.lastETag$.pipe(distinctUntilChanged())),
-    concatMap(lastETag => this.apiService.getOperation(lastETag, 'response')
-      .pipe(
-        catchError(resp => resp.status === 304 ? of(resp) : EMPTY),
-        filter(resp => resp.status !== 304),
-        tap(resp => this.processing$.next(resp.status === 202)),
-        tap(resp => this.lastETag$.next(resp.headers.get('ETag') || undefined)),
-        map(resp => resp.status === 200 ? resp.body : null),
-      )
-    ),
-    distinctUntilChanged(),
+  private readonly polledOperation$: Observable<Operation | null> = this.dashboardService.getDashboard('operation').pipe(
+    map(operation => operation ?? null)
+  )
+  private readonly activeOperation$: Observable<Operation | null> = merge(
+    this.polledOperation$,
+    this.eventService.getEvents<Operation | null>('operation'),
+    merge(
+      this.dashboardService.getDashboard('processing'),
+      this.eventService.getEvents<boolean>('processing')
+    ).pipe(
+      tap(processing => this.processing$.next(processing)),
+      ignoreElements()
+    )
+  ).pipe(
+    distinctUntilChanged((previous, current) => JSON.stringify(previous) === JSON.stringify(current)),
     tap(operation => {
       if (operation === null) {
         console.info('🚒️ Currently no active operation.')
@@ -49,8 +37,8 @@ export class OperationService {
   )
 
   constructor(
-    private readonly paramService: ParameterService,
-    private readonly apiService: DefaultService,
+    private readonly dashboardService: DashboardService,
+    private readonly eventService: EventService,
   ) {
   }
 
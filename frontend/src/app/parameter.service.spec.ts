@@ -1,44 +1,29 @@
 import {ParameterService} from './parameter.service'
-import {of, take} from "rxjs";
-import {HttpHeaders, HttpResponse} from "@angular/common/http";
+import {NEVER, of, take, toArray} from "rxjs";
+import {DashboardService} from "./dashboard.service";
 
 describe('ParameterService', () => {
   let service: ParameterService
-  let getParameter = jest.fn((ifNoneMatch) => {
-    return ifNoneMatch === 'XYZ'
-      ? of(new HttpResponse({
-        status: 304,
-        headers: new HttpHeaders('ETag: XYZ')
-      }))
-      : of(new HttpResponse({
-        status: 200,
-        headers: new HttpHeaders('ETag: XYZ'),
-        body: {highlight: 'foo'}
-      }))
-  })
+  const parameter = {highlight: 'foo', weatherPollInterval: 1, operationPollInterval: 1}
 
-  beforeEach(() => service = new ParameterService(1, {getParameter} as any))
+  beforeEach(() => service = new ParameterService(
+    {getDashboard: () => of(parameter, {...parameter}, {...parameter, highlight: 'bar'})} as unknown as DashboardService,
+    {getEvents: () => NEVER} as any
+  ))
 
   it('should be created', () => expect(service).toBeTruthy())
 
-  it('should fetch parameters on startup', (done) => {
-    service.getParameter().pipe(take(1)).subscribe(() => {
-      expect(getParameter).toHaveBeenCalled()
+  it('should take parameters from the dashboard', (done) => {
+    service.getParameter('highlight').pipe(take(1)).subscribe(highlight => {
+      expect(highlight).toBe('foo')
       done()
     })
   })
 
-  it('should send received ETags as If-None-Match header with the second request', (done) => {
-    let firstRequest = true
-    service.getParameter().pipe(take(2)).subscribe(() => {
-      if (firstRequest) {
-        expect(getParameter).toHaveBeenCalledWith(undefined, 'response')
-        firstRequest = false
-      } else {
-        expect(getParameter).toHaveBeenLastCalledWith('XYZ', 'response')
-        done()
-      }
+  it('should only emit changed parameters', (done) => {
+    service.getParameter().pipe(take(2), toArray()).subscribe(parameters => {
+      expect(parameters.map(p => p.highlight)).toEqual(['foo', 'bar'])
+      done()
     })
   })
 })
-
@@ -1,45 +1,27 @@
-import {Inject, Injectable, InjectionToken} from '@angular/core'
-import {
-  BehaviorSubject,
-  catchError,
-  concatMap,
-  distinctUntilChanged,
-  EMPTY,
-  filter,
-  interval,
-  of,
-  shareReplay,
-  startWith
-} from 'rxjs'
-import {map, switchMap, tap} from 'rxjs/operators'
-import {ClientConfiguration, DefaultService} from "./gen";
+import {Injectable} from '@angular/core'
+import {distinctUntilChanged, merge, shareReplay} from 'rxjs'
+import {map, tap} from 'rxjs/operators'
+import {ClientConfiguration} from "./gen";
+import {DashboardService} from "./dashboard.service";
+import {EventService} from "./event.service";
 
 @Injectable({
   providedIn: 'root'
 })
 export class ParameterService {
 
-  private readonly lastETag$ = new BehaviorSubject<string | undefined>(undefined)
-  private readonly parameter$ = interval(this.pollInterval).pipe(
-    startWith(0),
-    switchMap(() => this.lastETag$.pipe(distinctUntilChanged())),
-    concatMap(lastETag => this.apiService.getParameter(lastETag, 'response')
-      .pipe(
-        catchError(resp => resp.status === 304 ? of(resp) : EMPTY),
-        tap(resp => this.lastETag$.next(resp.headers.get('ETag') || undefined)),
-        filter(resp => resp.body !== undefined),
-        map(resp => resp.body),
-      )
-    ),
+  private readonly parameter$ = merge(
+    this.dashboardService.getDashboard('parameter'),
+    this.eventService.getEvents<ClientConfiguration>('parameter')
+  ).pipe(
+    distinctUntilChanged((previous, current) => JSON.stringify(previous) === JSON.stringify(current)),
     tap(parameter => console.info('⚙️ Parameter:', parameter)),
-    distinctUntilChanged(),
     shareReplay(1)
   )
 
   constructor(
-    @Inject(POLL_INTERVAL_PARAMETER)
-    private readonly pollInterval: number,
-    private readonly apiService: DefaultService
+    private readonly dashboardService: DashboardService,
+    private readonly eventService: EventService
   ) {
   }
 
@@ -52,5 +34,3 @@ export class ParameterService {
       : this.parameter$
   }
 }
-
-export const POLL_INTERVAL_PARAMETER = new InjectionToken<number>('POLL_INTERVAL_PARAMETER')
@@ -0,0 +1,63 @@
+package it.niedermann.fis;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.niedermann.fis.main.model.ClientConfigurationDto;
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.main.model.WeatherDto;
+import it.niedermann.fis.main.model.WeatherIconDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+
+/**
+ * Measures the serialization which happens for each request of each display.
+ */
+@SuppressWarnings("SpellCheckingInspection")
+@State(Scope.Benchmark)
+public class DtoSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private OperationDto operation;
+    private WeatherDto weather;
+    private ClientConfigurationDto parameter;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+
+        operation = new OperationDto();
+        operation.setKeyword("THL P EINGESCHLOSSEN");
+        operation.setTags(List.of("THL2309", "Person in Wohnung", "Tür öffnen"));
+        operation.setVehicles(List.of("9.8.7 RH FF Musterwehr", "Musterwehr 24/1", "Musterkreis Land 7/8"));
+        operation.setStreet("Musterstraße");
+        operation.setNumber("16B");
+        operation.setLocation("99999 Musterdorf - Mustergemeinde");
+        operation.setObj("");
+        operation.setNote("Person hilflos hinter verschlossener Tür\nSchlüssel beim Nachbarn");
+
+        weather = new WeatherDto();
+        weather.setTemperature(21.5f);
+        weather.setIcon(WeatherIconDto.DAY_PARTIAL_CLOUD);
+        weather.setIsDay(true);
+
+        parameter = objectMapper.readValue(
+                "{\"weatherPollInterval\": 30000, \"operationPollInterval\": 2000, \"highlight\": \"Musterwehr\"}",
+                ClientConfigurationDto.class);
+    }
+
+    @Benchmark
+    public byte[] serializeOperation() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(operation);
+    }
+
+    @Benchmark
+    public byte[] serializeWeather() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(weather);
+    }
+
+    @Benchmark
+    public byte[] serializeParameter() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(parameter);
+    }
+}
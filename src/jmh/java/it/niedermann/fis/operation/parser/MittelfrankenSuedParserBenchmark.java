@@ -0,0 +1,67 @@
+package it.niedermann.fis.operation.parser;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Measures the parsing hot path on the recorded faxes from <code>src/test/resources/samples</code>.
+ */
+@SuppressWarnings("SpellCheckingInspection")
+@State(Scope.Benchmark)
+public class MittelfrankenSuedParserBenchmark {
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12"})
+    public int sample;
+
+    private MittelfrankenSuedParser parser;
+    private String input;
+    private String[] lines;
+
+    @Setup
+    public void setup() {
+        parser = new MittelfrankenSuedParser();
+        input = readSample(sample);
+        lines = input.split("\n");
+    }
+
+    @Benchmark
+    public Object parse() {
+        return parser.parse(input);
+    }
+
+    @Benchmark
+    public String findKeyword() {
+        return parser.findKeyword(lines);
+    }
+
+    @Benchmark
+    public String findValue() {
+        return parser.findValue("Straße", lines);
+    }
+
+    @Benchmark
+    public Object findVehicles() {
+        return parser.findVehicles(lines);
+    }
+
+    @Benchmark
+    public String trimSpecialCharacters() {
+        return parser.trimSpecialCharacters(" ;.:Musterstraße _-+*| ");
+    }
+
+    /**
+     * Reads the sample from the classpath instead of the file system because benchmarks are executed from a JAR
+     */
+    private static String readSample(int number) {
+        final var path = "/samples/mittelfranken-sued/" + number + "-sample.txt";
+        try (final var stream = MittelfrankenSuedParserBenchmark.class.getResourceAsStream(path)) {
+            return new String(Objects.requireNonNull(stream, "Could not find " + path).readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
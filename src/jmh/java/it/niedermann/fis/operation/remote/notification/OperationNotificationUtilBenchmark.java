@@ -0,0 +1,40 @@
+package it.niedermann.fis.operation.remote.notification;
+
+import it.niedermann.fis.main.model.OperationDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+
+@SuppressWarnings("SpellCheckingInspection")
+@State(Scope.Benchmark)
+public class OperationNotificationUtilBenchmark {
+
+    private OperationNotificationUtil util;
+    private OperationDto operation;
+
+    @Setup
+    public void setup() {
+        util = new OperationNotificationUtil();
+        operation = new OperationDto();
+        operation.setKeyword("B 3 PERSON");
+        operation.setStreet("Musterstraße");
+        operation.setNumber("16B");
+        operation.setLocation("99999 Musterdorf - Mustergemeinde");
+        operation.setObj("Kirche");
+    }
+
+    @Benchmark
+    public Optional<String> getHumanReadableLocation() {
+        return util.getHumanReadableLocation(operation);
+    }
+
+    @Benchmark
+    public String getGoogleMapsLink() {
+        return util.getGoogleMapsLink(operation);
+    }
+
+    @Benchmark
+    public String getGoogleMapsLinkWithOrigin() {
+        return util.getGoogleMapsLink(operation, "Feuerwehrhaus Musterdorf");
+    }
+}
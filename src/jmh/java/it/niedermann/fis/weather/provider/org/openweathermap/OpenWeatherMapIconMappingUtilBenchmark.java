@@ -0,0 +1,21 @@
+package it.niedermann.fis.weather.provider.org.openweathermap;
+
+import it.niedermann.fis.main.model.WeatherIconDto;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+public class OpenWeatherMapIconMappingUtilBenchmark {
+
+    @Param({"200", "500", "800", "804"})
+    public String key;
+
+    @Benchmark
+    public WeatherIconDto getDay() {
+        return OpenWeatherMapIconMappingUtil.get(key, true);
+    }
+
+    @Benchmark
+    public WeatherIconDto getNight() {
+        return OpenWeatherMapIconMappingUtil.get(key, false);
+    }
+}
@@ -0,0 +1,90 @@
+package it.niedermann.fis;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Requests which wait for the next change of a resource without blocking a thread, see <code>Prefer: wait=…</code>
+ * in <code>api.yml</code>.
+ *
+ * @param <T> type of the response body
+ */
+public class LongPollingRequests<T> {
+
+    private static final Pattern PREFER_WAIT = Pattern.compile("(?:^|[,;\\s])wait=(\\d+)");
+
+    /**
+     * Guarded by itself
+     */
+    private final Set<CompletableFuture<ResponseEntity<T>>> parkedRequests = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param changedResponse checked while no change can be released, returns a response in case the resource changed
+     *                        since the caller checked it, otherwise the request is parked
+     * @param notModified     response in case the resource did not change within the given time
+     */
+    public CompletableFuture<ResponseEntity<T>> await(long wait,
+                                                      Supplier<Optional<ResponseEntity<T>>> changedResponse,
+                                                      ResponseEntity<T> notModified) {
+        synchronized (parkedRequests) {
+            final var changed = changedResponse.get();
+            if (changed.isPresent()) {
+                return CompletableFuture.completedFuture(changed.get());
+            }
+            final var parkedRequest = new CompletableFuture<ResponseEntity<T>>();
+            parkedRequests.add(parkedRequest);
+            parkedRequest.whenComplete((response, throwable) -> parkedRequests.remove(parkedRequest));
+            return parkedRequest.completeOnTimeout(notModified, wait, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Must be called after each change of the resource has been applied
+     *
+     * @param response called only if there are parked requests
+     */
+    public void release(Supplier<ResponseEntity<T>> response) {
+        final ArrayList<CompletableFuture<ResponseEntity<T>>> released;
+        synchronized (parkedRequests) {
+            if (parkedRequests.isEmpty()) {
+                return;
+            }
+            released = new ArrayList<>(parkedRequests);
+            parkedRequests.clear();
+        }
+        final var releasedResponse = response.get();
+        released.forEach(parkedRequest -> parkedRequest.complete(releasedResponse));
+    }
+
+    public int size() {
+        return parkedRequests.size();
+    }
+
+    /**
+     * @return the time the client is willing to wait in milliseconds, limited by the given maximum
+     */
+    public static long parseWait(String prefer, long maxWait) {
+        if (prefer == null) {
+            return 0;
+        }
+        final var matcher = PREFER_WAIT.matcher(prefer);
+        if (!matcher.find()) {
+            return 0;
+        }
+        try {
+            return Math.min(SECONDS.toMillis(Long.parseLong(matcher.group(1))), maxWait);
+        } catch (NumberFormatException e) {
+            return maxWait;
+        }
+    }
+}
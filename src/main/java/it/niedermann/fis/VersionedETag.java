@@ -0,0 +1,82 @@
+package it.niedermann.fis;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A strong ETag which is derived from a version, incremented whenever the represented state changes.
+ * <p>
+ * This allows answering <code>If-None-Match</code> requests without serializing and hashing the response body. The
+ * ETag also identifies the running instance, so that ETags from before a restart never match.
+ */
+public class VersionedETag {
+
+    private static final String BOOT_ID = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private static final String GZIP_SUFFIX = "-gzip\"";
+
+    private final String name;
+    private final AtomicLong version = new AtomicLong();
+    private volatile String value;
+
+    /**
+     * @param name distinguishes the ETags of different resources
+     */
+    public VersionedETag(String name) {
+        this.name = name;
+        this.value = format(0);
+    }
+
+    /**
+     * Must be called after the represented state has been changed
+     *
+     * @return the new ETag
+     */
+    public String increment() {
+        value = format(version.incrementAndGet());
+        return value;
+    }
+
+    public String get() {
+        return value;
+    }
+
+    /**
+     * @param ifNoneMatch value of the <code>If-None-Match</code> header, may be <code>null</code>
+     * @return whether the client already knows the current version
+     */
+    public boolean matches(String ifNoneMatch) {
+        return matches(ifNoneMatch, value);
+    }
+
+    /**
+     * @param ifNoneMatch value of the <code>If-None-Match</code> header, may be <code>null</code>, weak ETags are
+     *                    compared like strong ones and the {@link #gzip(String) gzip variant} like the original one
+     */
+    public static boolean matches(String ifNoneMatch, String eTag) {
+        return ifNoneMatch != null && Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(candidate -> candidate.startsWith("W/") ? candidate.substring(2) : candidate)
+                .map(candidate -> candidate.endsWith(GZIP_SUFFIX) ? candidate.substring(0, candidate.length() - GZIP_SUFFIX.length()) + "\"" : candidate)
+                .anyMatch(candidate -> candidate.equals(eTag) || candidate.equals("*"));
+    }
+
+    /**
+     * @param eTag a strong ETag
+     * @return the strong ETag of the gzip encoded representation, which must differ from the one of the identity
+     * encoding
+     */
+    public static String gzip(String eTag) {
+        return eTag.substring(0, eTag.length() - 1) + GZIP_SUFFIX;
+    }
+
+    private String format(long version) {
+        return format(name, version);
+    }
+
+    /**
+     * For state which maintains its version itself
+     */
+    public static String format(String name, long version) {
+        return "\"" + BOOT_ID + "-" + name + "-" + version + "\"";
+    }
+}
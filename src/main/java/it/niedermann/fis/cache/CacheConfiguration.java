@@ -0,0 +1,22 @@
+package it.niedermann.fis.cache;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class CacheConfiguration implements WebMvcConfigurer {
+
+    private final ResponseBodyCache cache;
+
+    public CacheConfiguration(ResponseBodyCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new CachedBodyHttpMessageConverter(cache));
+    }
+}
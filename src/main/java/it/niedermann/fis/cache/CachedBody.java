@@ -0,0 +1,10 @@
+package it.niedermann.fis.cache;
+
+/**
+ * Serialized representation of a response body, rendered once when the state changes.
+ *
+ * @param json must not be modified
+ * @param gzip must not be modified, <code>null</code> if compressing does not pay off
+ */
+record CachedBody(byte[] json, byte[] gzip) {
+}
@@ -0,0 +1,88 @@
+package it.niedermann.fis.cache;
+
+import it.niedermann.fis.VersionedETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the bodies of {@link ResponseBodyCache} as they are, including a precise <code>Content-Length</code> and the
+ * gzip variant if the client accepts it. The gzip variant gets its own strong ETag, because a strong validator must
+ * change with the representation. Must be registered before the Jackson converter.
+ */
+public class CachedBodyHttpMessageConverter implements HttpMessageConverter<Object> {
+
+    private final ResponseBodyCache cache;
+
+    public CachedBodyHttpMessageConverter(ResponseBodyCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return cache.supports(clazz) && (mediaType == null || MediaType.APPLICATION_JSON.isCompatibleWith(mediaType));
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return List.of(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    public Object read(Class<?> clazz, HttpInputMessage inputMessage) throws HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("Reading is not supported", inputMessage);
+    }
+
+    @Override
+    public void write(Object source, MediaType contentType, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        final var headers = outputMessage.getHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        final byte[] body;
+        final var cachedBody = cache.get(source);
+        if (cachedBody.isEmpty()) {
+            // The state changed in the meantime, so the cache might be outdated or not populated yet
+            body = cache.serialize(source);
+        } else if (cachedBody.get().gzip() != null && acceptsGzip()) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            final var eTag = headers.getETag();
+            if (eTag != null && !eTag.startsWith("W/")) {
+                headers.setETag(VersionedETag.gzip(eTag));
+            }
+            body = cachedBody.get().gzip();
+        } else {
+            body = cachedBody.get().json();
+        }
+
+        headers.setContentLength(body.length);
+        outputMessage.getBody().write(body);
+    }
+
+    private boolean acceptsGzip() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        final var acceptEncoding = attributes.getRequest().getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && Arrays.stream(acceptEncoding.split(","))
+                .map(String::trim)
+                .filter(coding -> !coding.replace(" ", "").matches(".*;q=0(\\.0*)?$"))
+                .map(coding -> coding.split(";")[0].trim())
+                .anyMatch(coding -> coding.equalsIgnoreCase("gzip") || coding.equals("*"));
+    }
+}
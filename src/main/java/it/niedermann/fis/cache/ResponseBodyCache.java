@@ -0,0 +1,98 @@
+package it.niedermann.fis.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the serialized bodies of the current state, so that polling clients are served without serializing the same
+ * state again and again.
+ * <p>
+ * Bodies are kept by instance rather than by type, so that e.g. each active operation stays cached until it is
+ * evicted together with its state.
+ * <p>
+ * Uses the same {@link ObjectMapper} as Spring MVC, so the cached bodies are identical to the ones Jackson would
+ * render for the generated models.
+ */
+@Component
+public class ResponseBodyCache {
+
+    private final Logger logger = LoggerFactory.getLogger(ResponseBodyCache.class);
+
+    private final ObjectMapper objectMapper;
+    /**
+     * Keyed by identity, because the generated models compare all of their fields
+     */
+    private final Map<Object, CachedBody> bodies = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Set<Class<?>> types = ConcurrentHashMap.newKeySet();
+
+    public ResponseBodyCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Must be called with each new instance whenever the state changes. Instances which are no longer part of the
+     * state must be {@link #evict(Object) evicted}.
+     */
+    public void put(Object source) {
+        if (source == null) {
+            return;
+        }
+        try {
+            final var json = objectMapper.writeValueAsBytes(source);
+            final var gzip = gzip(json);
+            bodies.put(source, new CachedBody(json, gzip.length < json.length ? gzip : null));
+            types.add(source.getClass());
+            logger.trace("Cached " + source.getClass().getSimpleName() + " (" + json.length + " bytes, gzip: " + gzip.length + " bytes)");
+        } catch (JsonProcessingException e) {
+            logger.error("Could not serialize " + source.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * @param source may be <code>null</code>
+     */
+    public void evict(Object source) {
+        if (source != null) {
+            bodies.remove(source);
+        }
+    }
+
+    boolean supports(Class<?> clazz) {
+        return types.contains(clazz);
+    }
+
+    /**
+     * @return the cached body only if it has been rendered from exactly this instance
+     */
+    Optional<CachedBody> get(Object source) {
+        return Optional.ofNullable(bodies.get(source));
+    }
+
+    byte[] serialize(Object source) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(source);
+    }
+
+    private static byte[] gzip(byte[] data) {
+        final var out = new ByteArrayOutputStream(data.length);
+        try (final var gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,122 @@
+package it.niedermann.fis.dashboard;
+
+import it.niedermann.fis.FisConfiguration;
+import it.niedermann.fis.LongPollingRequests;
+import it.niedermann.fis.VersionedETag;
+import it.niedermann.fis.cache.ResponseBodyCache;
+import it.niedermann.fis.event.StateChangedEvent;
+import it.niedermann.fis.main.api.DashboardApi;
+import it.niedermann.fis.main.model.ClientConfigurationDto;
+import it.niedermann.fis.main.model.DashboardDto;
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.main.model.WeatherDto;
+import it.niedermann.fis.operation.OperationConfiguration;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Combines all topics of {@link StateChangedEvent}s into a single resource with one ETag, so that displays need only
+ * one conditional request instead of one per topic.
+ */
+@Controller
+@RequestMapping("/api")
+public class DashboardApiImpl implements DashboardApi {
+
+    private final OperationConfiguration config;
+    private final ResponseBodyCache responseBodyCache;
+    private final VersionedETag eTag = new VersionedETag("dashboard");
+    private final LongPollingRequests<DashboardDto> longPollingRequests = new LongPollingRequests<>();
+    /**
+     * Replaced as a whole with each change, guarded by {@link #eTag}
+     */
+    private volatile Dashboard dashboard;
+
+    public DashboardApiImpl(
+            FisConfiguration fisConfig,
+            OperationConfiguration config,
+            ResponseBodyCache responseBodyCache
+    ) {
+        this.config = config;
+        this.responseBodyCache = responseBodyCache;
+        update(new DashboardDto()
+                .processing(false)
+                .parameter(fisConfig.client()));
+    }
+
+    /**
+     * In case the given ETag matches the current state and the client sends a <code>Prefer: wait=…</code> header, the
+     * request is parked without blocking a thread until any topic changes or the requested time elapsed.
+     */
+    @Override
+    public CompletableFuture<ResponseEntity<DashboardDto>> getDashboard(String ifNoneMatch, String prefer) {
+        final var current = dashboard;
+        if (!VersionedETag.matches(ifNoneMatch, current.eTag())) {
+            return CompletableFuture.completedFuture(createResponse(current));
+        }
+        final var wait = LongPollingRequests.parseWait(prefer, config.maxWait());
+        final var notModified = ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current.eTag()).<DashboardDto>build();
+        if (wait <= 0) {
+            return CompletableFuture.completedFuture(notModified);
+        }
+        return longPollingRequests.await(wait, () -> {
+            // The dashboard might have changed in the meantime
+            final var latest = dashboard;
+            return latest == current
+                    ? Optional.empty()
+                    : Optional.of(createResponse(latest));
+        }, notModified);
+    }
+
+    @EventListener
+    public void onStateChanged(StateChangedEvent event) {
+        synchronized (eTag) {
+            final var previous = dashboard.dto();
+            final var next = new DashboardDto()
+                    .operation(previous.getOperation())
+                    .processing(previous.getProcessing())
+                    .weather(previous.getWeather())
+                    .parameter(previous.getParameter());
+            switch (event.topic()) {
+                case OPERATION -> next.setOperation((OperationDto) event.payload());
+                case PROCESSING -> next.setProcessing((Boolean) event.payload());
+                case WEATHER -> next.setWeather((WeatherDto) event.payload());
+                case PARAMETER -> next.setParameter((ClientConfigurationDto) event.payload());
+                default -> {
+                    return;
+                }
+            }
+            if (next.equals(previous)) {
+                return;
+            }
+            update(next);
+        }
+        longPollingRequests.release(() -> createResponse(dashboard));
+    }
+
+    /**
+     * Must only be called while holding the lock of {@link #eTag}
+     */
+    private void update(DashboardDto dto) {
+        responseBodyCache.put(dto);
+        if (dashboard != null) {
+            responseBodyCache.evict(dashboard.dto());
+        }
+        dashboard = new Dashboard(dto, eTag.increment());
+    }
+
+    private ResponseEntity<DashboardDto> createResponse(Dashboard dashboard) {
+        return ResponseEntity.ok().eTag(dashboard.eTag()).body(dashboard.dto());
+    }
+
+    /**
+     * @param dto must not be modified after publishing it
+     */
+    private record Dashboard(DashboardDto dto, String eTag) {
+    }
+}
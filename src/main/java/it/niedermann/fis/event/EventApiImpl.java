@@ -0,0 +1,161 @@
+package it.niedermann.fis.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Pushes each {@link StateChangedEvent} to all connected clients as Server-Sent Event, see <code>/events</code> in
+ * <code>api.yml</code>.
+ * <p>
+ * This does not implement the generated <code>EventsApi</code> because the stream is not a single response entity.
+ */
+@Controller
+@RequestMapping("/api")
+@EnableConfigurationProperties(EventConfiguration.class)
+public class EventApiImpl {
+
+    private final Logger logger = LoggerFactory.getLogger(EventApiImpl.class);
+
+    private final EventConfiguration config;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final Collection<SseClient> clients = new CopyOnWriteArrayList<>();
+    /**
+     * Identifies this instance, so that event IDs from before a restart are not mistaken for current ones
+     */
+    private final String bootId = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    /**
+     * Most recent events for clients reconnecting with <code>Last-Event-ID</code>, guarded by itself
+     */
+    private final Deque<SseFrame> history = new ArrayDeque<>();
+    private final Map<EventTopic, SseFrame> latest = new EnumMap<>(EventTopic.class);
+    private long lastId = 0;
+
+    public EventApiImpl(
+            EventConfiguration config,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Qualifier("eventExecutor") Executor executor
+    ) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        // Clients connecting before anything happened should not have to wait for the current state
+        latest.put(EventTopic.OPERATION, new SseFrame(0, EventTopic.OPERATION, "null"));
+        latest.put(EventTopic.PROCESSING, new SseFrame(0, EventTopic.PROCESSING, "false"));
+        Gauge.builder("fis.event.clients", clients, Collection::size)
+                .description("Clients connected to the event stream")
+                .tag("transport", "sse")
+                .register(meterRegistry);
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        final var emitter = new SseEmitter(config.timeout());
+        synchronized (history) {
+            final var frames = catchUp(parseId(lastEventId));
+            // The missed events must not close the client right away
+            final var client = new SseClient(emitter, Math.max(config.bufferSize(), frames.size()), config.sendTimeout(), executor, clients::remove);
+            logger.debug("New event stream client (Last-Event-ID: " + lastEventId + "), sending " + frames.size() + " events to catch up");
+            frames.forEach(frame -> client.offer(toEvent(frame)));
+            clients.add(client);
+        }
+        return emitter;
+    }
+
+    @EventListener
+    public void onStateChanged(StateChangedEvent event) {
+        final String data;
+        try {
+            data = objectMapper.writeValueAsString(event.payload());
+        } catch (JsonProcessingException e) {
+            logger.error("Could not serialize " + event.topic(), e);
+            return;
+        }
+        synchronized (history) {
+            final var frame = new SseFrame(++lastId, event.topic(), data);
+            if (frame.topic().isRetained()) {
+                latest.put(frame.topic(), frame);
+            }
+            if (config.replaySize() > 0) {
+                history.addLast(frame);
+                while (history.size() > config.replaySize()) {
+                    history.removeFirst();
+                }
+            }
+            clients.forEach(client -> client.offer(toEvent(frame)));
+        }
+        logger.trace("Pushed " + event.topic() + " to " + clients.size() + " event stream clients");
+    }
+
+    /**
+     * Keeps connections through proxies alive and detects clients which went away silently
+     */
+    @Scheduled(fixedDelayString = "${fis.event.heartbeatInterval}")
+    public void sendHeartbeat() {
+        clients.forEach(SseClient::heartbeat);
+    }
+
+    /**
+     * @return only the missed events if all of them are still known, otherwise the current state of each topic
+     */
+    private Collection<SseFrame> catchUp(OptionalLong lastEventId) {
+        if (lastEventId.isPresent()) {
+            final var id = lastEventId.getAsLong();
+            if (id == lastId) {
+                return Collections.emptyList();
+            }
+            if (id < lastId
+                    && !history.isEmpty()
+                    && history.getFirst().id() <= id + 1
+                    && lastId - id <= config.replaySize()) {
+                return history.stream().filter(frame -> frame.id() > id).toList();
+            }
+        }
+        return latest.values().stream()
+                .sorted(Comparator.comparingLong(SseFrame::id))
+                .toList();
+    }
+
+    private OptionalLong parseId(String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(bootId + "-")) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(lastEventId.substring(bootId.length() + 1)));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    private SseEmitter.SseEventBuilder toEvent(SseFrame frame) {
+        return SseEmitter.event()
+                .id(bootId + "-" + frame.id())
+                .name(frame.topic().getEventName())
+                .data(frame.data());
+    }
+
+    /**
+     * @param data the payload, serialized only once for all clients
+     */
+    private record SseFrame(long id, EventTopic topic, String data) {
+    }
+}
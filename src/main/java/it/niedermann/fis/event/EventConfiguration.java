@@ -0,0 +1,17 @@
+package it.niedermann.fis.event;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.event")
+@Validated
+public record EventConfiguration(
+                @Min(1_000) long heartbeatInterval,
+                @Min(0) long timeout,
+                @Min(0) int replaySize,
+                @Min(4) int bufferSize,
+                @Min(100) long sendTimeout) {
+}
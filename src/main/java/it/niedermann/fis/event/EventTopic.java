@@ -0,0 +1,35 @@
+package it.niedermann.fis.event;
+
+/**
+ * Kinds of state which can change and be pushed to clients
+ */
+public enum EventTopic {
+    OPERATION("operation", true),
+    PROCESSING("processing", true),
+    WEATHER("weather", true),
+    PARAMETER("parameter", true),
+    EXPIRED("expired", false);
+
+    private final String eventName;
+    private final boolean retained;
+
+    EventTopic(String eventName, boolean retained) {
+        this.eventName = eventName;
+        this.retained = retained;
+    }
+
+    /**
+     * @return the name of the event when pushed to clients, see <code>api.yml</code>
+     */
+    public String getEventName() {
+        return eventName;
+    }
+
+    /**
+     * @return whether the latest event represents the current state and is therefore sent to newly connected clients,
+     * otherwise it only notifies about something that happened
+     */
+    public boolean isRetained() {
+        return retained;
+    }
+}
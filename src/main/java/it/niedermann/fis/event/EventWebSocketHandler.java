@@ -0,0 +1,132 @@
+package it.niedermann.fis.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Broadcasts each {@link StateChangedEvent} to all connected WebSocket sessions.
+ * <p>
+ * Each frame is a JSON object with the <code>topic</code> and the new state as <code>data</code>. It is serialized
+ * only once and the very same message is sent to all sessions. The current state of each topic is sent right after
+ * connecting.
+ */
+@Component
+public class EventWebSocketHandler extends TextWebSocketHandler {
+
+    private final Logger logger = LoggerFactory.getLogger(EventWebSocketHandler.class);
+
+    /**
+     * Tomcat waits up to 20 seconds for a blocking send by default
+     */
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final EventConfiguration config;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final Map<String, WebSocketClient> clients = new ConcurrentHashMap<>();
+    /**
+     * Guarded by itself, so that new sessions do not miss an event between receiving the current state and being
+     * registered
+     */
+    private final Map<EventTopic, TextMessage> latest = new EnumMap<>(EventTopic.class);
+    private final Counter droppedCounter;
+
+    public EventWebSocketHandler(
+            EventConfiguration config,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Qualifier("eventExecutor") Executor executor
+    ) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        latest.put(EventTopic.OPERATION, createFrame(EventTopic.OPERATION, "null"));
+        latest.put(EventTopic.PROCESSING, createFrame(EventTopic.PROCESSING, "false"));
+        Gauge.builder("fis.event.clients", clients, Map::size)
+                .description("Clients connected to the event stream")
+                .tag("transport", "websocket")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("fis.event.dropped")
+                .description("Events replaced or dropped in favour of newer ones, because a client could not keep up")
+                .tag("transport", "websocket")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession nativeSession
+                && nativeSession.getNativeSession() instanceof javax.websocket.Session standardSession) {
+            standardSession.getUserProperties().put(BLOCKING_SEND_TIMEOUT, config.sendTimeout());
+        }
+        final var client = new WebSocketClient(session, config.sendTimeout(), executor);
+        synchronized (latest) {
+            latest.forEach(client::offer);
+            clients.put(session.getId(), client);
+        }
+        logger.debug("New WebSocket session " + session.getId() + " (" + clients.size() + " connected)");
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        clients.remove(session.getId());
+        logger.debug("Closed WebSocket session " + session.getId() + ": " + status);
+    }
+
+    @EventListener
+    public void onStateChanged(StateChangedEvent event) {
+        final String data;
+        try {
+            data = objectMapper.writeValueAsString(event.payload());
+        } catch (JsonProcessingException e) {
+            logger.error("Could not serialize " + event.topic(), e);
+            return;
+        }
+        final var frame = createFrame(event.topic(), data);
+        synchronized (latest) {
+            if (event.topic().isRetained()) {
+                latest.put(event.topic(), frame);
+            }
+            broadcast(event.topic(), frame);
+        }
+        logger.trace("Broadcast " + event.topic() + " to " + clients.size() + " WebSocket sessions");
+    }
+
+    /**
+     * Keeps connections through proxies alive, browsers answer with a pong automatically
+     */
+    @Scheduled(fixedDelayString = "${fis.event.heartbeatInterval}")
+    public void sendHeartbeat() {
+        clients.values().forEach(WebSocketClient::ping);
+    }
+
+    private void broadcast(EventTopic topic, TextMessage message) {
+        clients.values().forEach(client -> {
+            if (!client.offer(topic, message)) {
+                droppedCounter.increment();
+            }
+        });
+    }
+
+    private TextMessage createFrame(EventTopic topic, String data) {
+        return new TextMessage("{\"topic\":\"" + topic.getEventName() + "\",\"data\":" + data + "}");
+    }
+}
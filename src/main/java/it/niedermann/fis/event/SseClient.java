@@ -0,0 +1,150 @@
+package it.niedermann.fis.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A single connection to a client which receives events via {@link SseEmitter}.
+ * <p>
+ * Events are queued and sent from the given {@link Executor}, so a slow client never blocks the publisher of an event
+ * or other clients. In case the client can not keep up with the bounded queue or does not accept a single event within
+ * the send timeout, the connection is closed and the client is expected to reconnect with the
+ * <code>Last-Event-ID</code> header to catch up.
+ */
+class SseClient {
+
+    private final Logger logger = LoggerFactory.getLogger(SseClient.class);
+
+    private final SseEmitter emitter;
+    private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+    private final long sendTimeout;
+    private final Executor executor;
+    private final Consumer<SseClient> onClosed;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    /**
+     * Heartbeats are not queued, so that they never take the place of an event
+     */
+    private final AtomicBoolean heartbeatPending = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+    /**
+     * {@link System#nanoTime()} when the current send started, <code>0</code> while not sending
+     */
+    private volatile long sendStarted = 0;
+
+    /**
+     * @param sendTimeout milliseconds a single event may take to be sent before the client is considered stalled
+     * @param onClosed    called as soon as the connection has been closed by either side
+     */
+    SseClient(SseEmitter emitter, int bufferSize, long sendTimeout, Executor executor, Consumer<SseClient> onClosed) {
+        this.emitter = emitter;
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.sendTimeout = sendTimeout;
+        this.executor = executor;
+        this.onClosed = onClosed;
+        emitter.onCompletion(this::markClosed);
+        emitter.onTimeout(this::close);
+        emitter.onError(e -> markClosed());
+    }
+
+    /**
+     * @return <code>false</code> if the client has been closed and should not receive any more events
+     */
+    boolean offer(SseEmitter.SseEventBuilder event) {
+        if (closed || closeIfStalled()) {
+            return false;
+        }
+        if (!queue.offer(event)) {
+            logger.info("Closing slow event stream client after exceeding the buffer of " + (queue.size() + queue.remainingCapacity()) + " events");
+            close();
+            return false;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    void heartbeat() {
+        if (closed || closeIfStalled()) {
+            return;
+        }
+        heartbeatPending.set(true);
+        scheduleDrain();
+    }
+
+    /**
+     * Does not block, the emitter is completed as soon as a send in progress returned
+     */
+    void close() {
+        markClosed();
+        scheduleDrain();
+    }
+
+    private boolean closeIfStalled() {
+        final var started = sendStarted;
+        if (started != 0 && System.nanoTime() - started > TimeUnit.MILLISECONDS.toNanos(sendTimeout)) {
+            logger.info("Closing event stream client which did not accept an event within " + sendTimeout + "ms");
+            close();
+            return true;
+        }
+        return false;
+    }
+
+    private void markClosed() {
+        closed = true;
+        queue.clear();
+        onClosed.accept(this);
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Queued events are sent with the next event or heartbeat
+                logger.debug("Event executor is busy, postponing sending to event stream client");
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while (!closed && (event = poll()) != null) {
+                sendStarted = System.nanoTime();
+                emitter.send(event);
+                sendStarted = 0;
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Event stream client disconnected: " + e.getMessage());
+            markClosed();
+        } finally {
+            sendStarted = 0;
+            if (closed) {
+                emitter.complete();
+            }
+            draining.set(false);
+        }
+        // An event might have been queued after polling the last one but before resetting the flag
+        if (!closed && (!queue.isEmpty() || heartbeatPending.get())) {
+            scheduleDrain();
+        }
+    }
+
+    private SseEmitter.SseEventBuilder poll() {
+        final var event = queue.poll();
+        if (event == null && heartbeatPending.getAndSet(false)) {
+            return SseEmitter.event().comment("heartbeat");
+        }
+        return event;
+    }
+}
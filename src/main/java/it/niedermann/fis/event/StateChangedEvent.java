@@ -0,0 +1,10 @@
+package it.niedermann.fis.event;
+
+/**
+ * Published via {@link org.springframework.context.ApplicationEventPublisher} whenever a state changes which should
+ * be pushed to clients.
+ *
+ * @param payload the new state, serialized as JSON when pushed, may be <code>null</code>
+ */
+public record StateChangedEvent(EventTopic topic, Object payload) {
+}
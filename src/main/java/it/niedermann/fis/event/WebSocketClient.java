@@ -0,0 +1,208 @@
+package it.niedermann.fis.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single {@link WebSocketSession} which receives events.
+ * <p>
+ * Messages are queued and sent from the given {@link Executor}, so a slow client never blocks the publisher of an
+ * event or other clients. Each message of a {@link EventTopic#isRetained() retained} topic contains the whole state of
+ * its topic, so only the newest pending message of each retained topic is kept. Other messages notify about something
+ * that happened and are all kept, up to {@link #MAX_PENDING_NOTIFICATIONS}. A burst of one topic can therefore neither
+ * grow the queue unbounded nor push out the pending message of another topic. A client which does not accept a single
+ * message within the send timeout is closed.
+ */
+class WebSocketClient {
+
+    private final Logger logger = LoggerFactory.getLogger(WebSocketClient.class);
+
+    /**
+     * Pending messages of topics which are not retained, the oldest one is dropped when exceeded
+     */
+    static final int MAX_PENDING_NOTIFICATIONS = 16;
+
+    private final WebSocketSession session;
+    private final long sendTimeout;
+    private final Executor executor;
+    /**
+     * Messages in the order they have been offered, guarded by itself. Messages of retained topics are keyed by their
+     * {@link EventTopic}, all others by a unique key, so that they never replace each other.
+     */
+    private final Map<Object, TextMessage> pending = new LinkedHashMap<>();
+    /**
+     * Number of pending messages which are not keyed by their topic, guarded by {@link #pending}
+     */
+    private int pendingNotifications = 0;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    /**
+     * Pings are not queued, so that they never take the place of an event
+     */
+    private final AtomicBoolean pingPending = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+    /**
+     * {@link System#nanoTime()} when the current send started, <code>0</code> while not sending
+     */
+    private volatile long sendStarted = 0;
+
+    /**
+     * @param sendTimeout milliseconds a single message may take to be sent before the client is considered stalled
+     */
+    WebSocketClient(WebSocketSession session, long sendTimeout, Executor executor) {
+        this.session = session;
+        this.sendTimeout = sendTimeout;
+        this.executor = executor;
+    }
+
+    /**
+     * @return <code>false</code> if a pending message has been replaced or dropped or the client has been closed
+     */
+    boolean offer(EventTopic topic, TextMessage message) {
+        if (closed || closeIfStalled()) {
+            return false;
+        }
+        final boolean dropped;
+        synchronized (pending) {
+            if (topic.isRetained()) {
+                // Removing first moves the topic to the end, so that the messages stay in the order of the changes
+                dropped = pending.remove(topic) != null;
+                pending.put(topic, message);
+            } else {
+                dropped = pendingNotifications >= MAX_PENDING_NOTIFICATIONS && dropOldestNotification();
+                pending.put(new Object(), message);
+                pendingNotifications++;
+            }
+        }
+        if (dropped) {
+            logger.debug("Dropped pending message for slow WebSocket session " + session.getId() + " because of a newer " + topic + " message");
+        }
+        scheduleDrain();
+        return !dropped;
+    }
+
+    /**
+     * Must be called while holding the monitor of {@link #pending}
+     */
+    private boolean dropOldestNotification() {
+        final var iterator = pending.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!(iterator.next() instanceof EventTopic)) {
+                iterator.remove();
+                pendingNotifications--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void ping() {
+        if (closed || closeIfStalled()) {
+            return;
+        }
+        pingPending.set(true);
+        scheduleDrain();
+    }
+
+    private boolean closeIfStalled() {
+        final var started = sendStarted;
+        if (started != 0 && System.nanoTime() - started > TimeUnit.MILLISECONDS.toNanos(sendTimeout)) {
+            logger.info("Closing WebSocket session " + session.getId() + " which did not accept a message within " + sendTimeout + "ms");
+            // The session is closed as soon as the send in progress returned, closing it now might block
+            closed = true;
+            return true;
+        }
+        return false;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Queued messages are sent with the next event or ping
+                logger.debug("Event executor is busy, postponing sending to WebSocket session " + session.getId());
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            WebSocketMessage<?> message;
+            while (!closed && session.isOpen() && (message = poll()) != null) {
+                sendStarted = System.nanoTime();
+                session.sendMessage(message);
+                sendStarted = 0;
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("WebSocket session " + session.getId() + " disconnected: " + e.getMessage());
+            closed = true;
+        } finally {
+            sendStarted = 0;
+            if (closed) {
+                clear();
+                close();
+            }
+            draining.set(false);
+        }
+        // A message might have been queued after polling the last one but before resetting the flag
+        if (!closed && session.isOpen() && (!isEmpty() || pingPending.get())) {
+            scheduleDrain();
+        }
+    }
+
+    private WebSocketMessage<?> poll() {
+        final WebSocketMessage<?> message;
+        synchronized (pending) {
+            final var iterator = pending.entrySet().iterator();
+            if (iterator.hasNext()) {
+                final var entry = iterator.next();
+                message = entry.getValue();
+                iterator.remove();
+                if (!(entry.getKey() instanceof EventTopic)) {
+                    pendingNotifications--;
+                }
+            } else {
+                message = null;
+            }
+        }
+        if (message == null && pingPending.getAndSet(false)) {
+            return new PingMessage();
+        }
+        return message;
+    }
+
+    private boolean isEmpty() {
+        synchronized (pending) {
+            return pending.isEmpty();
+        }
+    }
+
+    private void clear() {
+        synchronized (pending) {
+            pending.clear();
+            pendingNotifications = 0;
+        }
+    }
+
+    private void close() {
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            logger.debug("Could not close WebSocket session " + session.getId() + ": " + e.getMessage());
+        }
+    }
+}
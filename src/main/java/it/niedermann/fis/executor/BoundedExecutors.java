@@ -0,0 +1,138 @@
+package it.niedermann.fis.executor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Separate thread pools for the stages of the alarm pipeline, so that e.g. a hanging weather request or a slow SMS
+ * provider can not delay polling for the next operation. Scheduled tasks only trigger the work, which then runs
+ * on these pools via {@link org.springframework.scheduling.annotation.Async}.
+ * <p>
+ * Each pool is bounded and exposes its size, active threads and queued tasks as <code>executor.*</code> metrics as
+ * well as its rejected tasks as <code>fis.executor.rejected</code>, all tagged with the name of the pool.
+ */
+@Configuration
+@EnableConfigurationProperties(ExecutorConfiguration.class)
+public class BoundedExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedExecutors.class);
+
+    private final ExecutorConfiguration config;
+    private final MeterRegistry meterRegistry;
+
+    public BoundedExecutors(ExecutorConfiguration config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Polls the FTP server, downloads, recognizes and parses operation faxes
+     */
+    @Bean
+    public ThreadPoolExecutor ingestExecutor() {
+        return create("ingest", config.ingest(), meterRegistry);
+    }
+
+    /**
+     * Runs the {@link it.niedermann.fis.operation.parser.OperationParser}s concurrently
+     */
+    @Bean
+    public ThreadPoolExecutor parserExecutor() {
+        return create("parser", config.parser(), meterRegistry);
+    }
+
+    /**
+     * Sends notifications via the SMS provider, separate from mail so that a slow channel can not occupy the threads
+     * of the other one
+     */
+    @Bean
+    public ThreadPoolExecutor smsExecutor() {
+        return create("sms", config.sms(), meterRegistry);
+    }
+
+    /**
+     * Sends notifications via the mail provider
+     */
+    @Bean
+    public ThreadPoolExecutor mailExecutor() {
+        return create("mail", config.mail(), meterRegistry);
+    }
+
+    /**
+     * Runs the attempts of the {@link it.niedermann.fis.operation.remote.notification.sms.failover.FailoverSmsProvider}
+     * while the SMS thread waits for them, therefore separate from {@link #smsExecutor()}
+     */
+    @Bean
+    public ThreadPoolExecutor smsFailoverExecutor() {
+        return create("sms-failover", config.smsFailover(), meterRegistry);
+    }
+
+    @Bean
+    public ThreadPoolExecutor weatherExecutor() {
+        return create("weather", config.weather(), meterRegistry);
+    }
+
+    /**
+     * Sends events to the connected SSE and WebSocket clients
+     */
+    @Bean
+    public ThreadPoolExecutor eventExecutor() {
+        return create("event", config.event(), meterRegistry);
+    }
+
+    /**
+     * Spring Boot only provides its executor for asynchronous requests if no other one is defined
+     */
+    @Primary
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    static ThreadPoolExecutor create(String name, ExecutorConfiguration.Pool pool, MeterRegistry meterRegistry) {
+        final var threadCount = new AtomicInteger();
+        final BlockingQueue<Runnable> queue = pool.queueCapacity() == 0
+                ? new SynchronousQueue<>()
+                : new ArrayBlockingQueue<>(pool.queueCapacity());
+        final var executor = new ThreadPoolExecutor(pool.coreSize(), Math.max(pool.coreSize(), pool.maxSize()),
+                60, TimeUnit.SECONDS, queue, runnable -> {
+            final var thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final var policy = createRejectionHandler(pool.rejection());
+        final var rejectedCounter = Counter.builder("fis.executor.rejected")
+                .description("Tasks which could neither be started nor queued and have been handled by the rejection policy")
+                .tag("name", name)
+                .register(meterRegistry);
+        executor.setRejectedExecutionHandler((runnable, rejectingExecutor) -> {
+            rejectedCounter.increment();
+            logger.debug("Executor \"" + name + "\" is busy, applying " + pool.rejection());
+            policy.rejectedExecution(runnable, rejectingExecutor);
+        });
+        new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    private static RejectedExecutionHandler createRejectionHandler(ExecutorConfiguration.RejectionPolicy policy) {
+        return switch (policy) {
+            case ABORT -> new ThreadPoolExecutor.AbortPolicy();
+            case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+            case DISCARD -> new ThreadPoolExecutor.DiscardPolicy();
+            case DISCARD_OLDEST -> new ThreadPoolExecutor.DiscardOldestPolicy();
+        };
+    }
+}
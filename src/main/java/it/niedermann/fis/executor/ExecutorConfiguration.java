@@ -0,0 +1,52 @@
+package it.niedermann.fis.executor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.executor")
+@Validated
+public record ExecutorConfiguration(
+                @NotNull @Valid Pool ingest,
+                @NotNull @Valid Pool parser,
+                @NotNull @Valid Pool sms,
+                @NotNull @Valid Pool mail,
+                @NotNull @Valid Pool smsFailover,
+                @NotNull @Valid Pool weather,
+                @NotNull @Valid Pool event) {
+
+    /**
+     * @param maxSize       threads are only added beyond the core size while the queue is full
+     * @param queueCapacity 0 hands tasks over to a thread directly or rejects them
+     * @param rejection     applied to tasks which can neither be handed over nor queued
+     */
+    public record Pool(
+                    @Min(1) int coreSize,
+                    @Min(1) int maxSize,
+                    @Min(0) int queueCapacity,
+                    @NotNull RejectionPolicy rejection) {
+    }
+
+    public enum RejectionPolicy {
+        /**
+         * Throws a {@link java.util.concurrent.RejectedExecutionException} to the submitter
+         */
+        ABORT,
+        /**
+         * Runs the task on the thread of the submitter
+         */
+        CALLER_RUNS,
+        /**
+         * Drops the task
+         */
+        DISCARD,
+        /**
+         * Drops the oldest queued task and tries again
+         */
+        DISCARD_OLDEST
+    }
+}
@@ -0,0 +1,55 @@
+package it.niedermann.fis.history;
+
+import it.niedermann.fis.VersionedETag;
+import it.niedermann.fis.main.api.HistoryApi;
+import it.niedermann.fis.main.model.HistoryEntryDto;
+import it.niedermann.fis.main.model.HistoryPageDto;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+@Controller
+@RequestMapping("/api")
+public class HistoryApiImpl implements HistoryApi {
+
+    private final HistoryConfiguration config;
+    private final OperationHistoryRepository historyRepository;
+
+    public HistoryApiImpl(
+            HistoryConfiguration config,
+            OperationHistoryRepository historyRepository
+    ) {
+        this.config = config;
+        this.historyRepository = historyRepository;
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<HistoryPageDto>> getHistory(String ifNoneMatch, Integer page, Integer size, String keyword, Date from, Date to) {
+        final var eTag = historyRepository.getETag();
+        if (VersionedETag.matches(ifNoneMatch, eTag)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build());
+        }
+        final var pageNumber = page == null ? 0 : Math.max(0, page);
+        final var pageSize = size == null ? 20 : Math.max(1, Math.min(size, config.maxPageSize()));
+        final var result = historyRepository.query(
+                keyword,
+                from == null ? null : from.toInstant(),
+                to == null ? null : to.toInstant(),
+                pageNumber,
+                pageSize);
+        final var dto = new HistoryPageDto()
+                .page(pageNumber)
+                .size(pageSize)
+                .total(result.total())
+                .entries(result.entries().stream()
+                        .map(entry -> new HistoryEntryDto()
+                                .time(Date.from(entry.time()))
+                                .operation(entry.operation()))
+                        .toList());
+        return CompletableFuture.completedFuture(ResponseEntity.ok().eTag(eTag).body(dto));
+    }
+}
@@ -0,0 +1,117 @@
+package it.niedermann.fis.history;
+
+import it.niedermann.fis.main.model.OperationDto;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of {@link HistoryEntry}s. Strings are encoded as UTF-8 with a leading byte count, lists with
+ * a leading element count, <code>-1</code> represents <code>null</code> for both.
+ * <p>
+ * New fields of {@link OperationDto} must be appended at the end and require a new {@link #VERSION}. Entries are decoded
+ * according to the version they have been written with, so that entries written by older versions can still be read.
+ */
+final class HistoryCodec {
+
+    static final byte VERSION = 1;
+
+    private HistoryCodec() {
+        // Util class
+    }
+
+    static byte[] encode(HistoryEntry entry) {
+        final var bytes = new ByteArrayOutputStream(256);
+        try (final var out = new DataOutputStream(bytes)) {
+            final var operation = entry.operation();
+            out.writeByte(VERSION);
+            out.writeLong(entry.id());
+            out.writeLong(entry.time().toEpochMilli());
+            writeString(out, operation.getKeyword());
+            writeList(out, operation.getTags());
+            writeList(out, operation.getVehicles());
+            writeString(out, operation.getNote());
+            writeString(out, operation.getStreet());
+            writeString(out, operation.getNumber());
+            writeString(out, operation.getLocation());
+            writeString(out, operation.getObj());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException in case the data is not a valid entry or has been written by a newer version
+     */
+    static HistoryEntry decode(byte[] data) throws IOException {
+        try (final var in = new DataInputStream(new ByteArrayInputStream(data))) {
+            final var version = in.readByte();
+            return switch (version) {
+                case 1 -> decodeVersion1(in);
+                default -> throw new IOException("Unknown history entry version: " + version);
+            };
+        }
+    }
+
+    private static HistoryEntry decodeVersion1(DataInput in) throws IOException {
+        final var id = in.readLong();
+        final var time = Instant.ofEpochMilli(in.readLong());
+        final var operation = new OperationDto()
+                .keyword(readString(in))
+                .tags(readList(in))
+                .vehicles(readList(in))
+                .note(readString(in))
+                .street(readString(in))
+                .number(readString(in))
+                .location(readString(in))
+                .obj(readString(in));
+        return new HistoryEntry(id, time, operation);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        final var length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeList(DataOutput out, List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.size());
+        for (final var value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readList(DataInput in) throws IOException {
+        final var size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        final var values = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+}
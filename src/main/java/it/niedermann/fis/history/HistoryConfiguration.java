@@ -0,0 +1,17 @@
+package it.niedermann.fis.history;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.history")
+@Validated
+public record HistoryConfiguration(
+                String path,
+                @Min(1024) long segmentSize,
+                @Min(0) long retention,
+                @Min(1000) long compactionInterval,
+                @Min(1) int maxPageSize) {
+}
@@ -0,0 +1,12 @@
+package it.niedermann.fis.history;
+
+import it.niedermann.fis.main.model.OperationDto;
+
+import java.time.Instant;
+
+/**
+ * @param id   strictly increasing in the order of appending
+ * @param time when the operation has been alarmed
+ */
+public record HistoryEntry(long id, Instant time, OperationDto operation) {
+}
@@ -0,0 +1,103 @@
+package it.niedermann.fis.history;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Immutable in-memory index of all {@link HistoryEntry}s by time and keyword. Changes create a new index, so it can be
+ * queried concurrently without locking.
+ */
+class HistoryIndex {
+
+    private static final Comparator<HistoryEntry> BY_TIME = Comparator.comparing(HistoryEntry::time)
+            .thenComparingLong(HistoryEntry::id);
+
+    /**
+     * Ordered by time, the oldest first
+     */
+    private final List<HistoryEntry> entries;
+    private final Map<String, List<HistoryEntry>> byKeyword;
+
+    private HistoryIndex(List<HistoryEntry> entries) {
+        this.entries = entries;
+        final var byKeyword = new HashMap<String, List<HistoryEntry>>();
+        entries.forEach(entry -> byKeyword
+                .computeIfAbsent(normalize(entry.operation().getKeyword()), keyword -> new ArrayList<>())
+                .add(entry));
+        this.byKeyword = byKeyword;
+    }
+
+    static HistoryIndex of(Collection<HistoryEntry> entries) {
+        final var sorted = new ArrayList<>(entries);
+        sorted.sort(BY_TIME);
+        return new HistoryIndex(Collections.unmodifiableList(sorted));
+    }
+
+    HistoryIndex with(HistoryEntry entry) {
+        final var position = Collections.binarySearch(this.entries, entry, BY_TIME);
+        final var insertAt = position < 0 ? -position - 1 : position;
+        final var entries = new ArrayList<HistoryEntry>(this.entries.size() + 1);
+        entries.addAll(this.entries.subList(0, insertAt));
+        entries.add(entry);
+        entries.addAll(this.entries.subList(insertAt, this.entries.size()));
+        return new HistoryIndex(Collections.unmodifiableList(entries));
+    }
+
+    HistoryIndex retainAfter(Instant time) {
+        return new HistoryIndex(entries.subList(lowerBound(entries, time), entries.size()));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param keyword case insensitive, <code>null</code> matches all entries
+     * @param from    inclusive, <code>null</code> for no lower limit
+     * @param to      exclusive, <code>null</code> for no upper limit
+     * @return the requested page of matching entries, the latest first
+     */
+    HistoryPage query(String keyword, Instant from, Instant to, int page, int size) {
+        final var candidates = keyword == null
+                ? entries
+                : byKeyword.getOrDefault(normalize(keyword), Collections.emptyList());
+        final var start = from == null ? 0 : lowerBound(candidates, from);
+        final var end = to == null ? candidates.size() : lowerBound(candidates, to);
+        final var total = Math.max(0, end - start);
+        final var pageEnd = end - (long) page * size;
+        final var pageStart = Math.max(start, pageEnd - size);
+        if (pageEnd <= start) {
+            return new HistoryPage(Collections.emptyList(), total);
+        }
+        final var pageEntries = new ArrayList<>(candidates.subList((int) pageStart, (int) pageEnd));
+        Collections.reverse(pageEntries);
+        return new HistoryPage(pageEntries, total);
+    }
+
+    /**
+     * @return the index of the first entry which is not older than the given time
+     */
+    private static int lowerBound(List<HistoryEntry> entries, Instant time) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            final var mid = (low + high) >>> 1;
+            if (entries.get(mid).time().isBefore(time)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String normalize(String keyword) {
+        return keyword == null ? "" : keyword.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param total count of all matching entries on all pages
+     */
+    record HistoryPage(List<HistoryEntry> entries, int total) {
+    }
+}
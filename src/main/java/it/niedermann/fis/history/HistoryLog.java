@@ -0,0 +1,206 @@
+package it.niedermann.fis.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only log of {@link HistoryEntry}s, split into numbered segment files of roughly the configured size.
+ * <p>
+ * Each entry is stored as frame consisting of the length and CRC32 of the {@link HistoryCodec encoded} entry followed
+ * by the entry itself. Every append is flushed to the disk before it returns. A frame which has only partially been
+ * written, e.g. because of a power loss, is detected by its checksum and cut off when opening the log. An intact frame
+ * which can not be decoded, e.g. after a downgrade, is skipped and dropped by the next compaction.
+ * <p>
+ * Not thread safe, all methods must be called from the same thread.
+ */
+class HistoryLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryLog.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("^(\\d{10})\\.log$");
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final long segmentSize;
+    private FileChannel active;
+    private long activeNumber;
+
+    HistoryLog(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Must be called once before appending
+     *
+     * @return all entries of the log in the order of appending
+     */
+    List<HistoryEntry> open() throws IOException {
+        Files.createDirectories(directory);
+        final var segments = listSegments();
+        final var entries = new ArrayList<HistoryEntry>();
+        for (final var segment : segments) {
+            for (final var entry : readSegment(segment, true)) {
+                // Leftovers of an interrupted compaction are already contained in an earlier segment
+                if (entries.isEmpty() || entry.id() > entries.get(entries.size() - 1).id()) {
+                    entries.add(entry);
+                }
+            }
+        }
+        activeNumber = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1));
+        active = openSegment(activeNumber);
+        return entries;
+    }
+
+    void append(HistoryEntry entry) throws IOException {
+        if (active.size() >= segmentSize) {
+            active.close();
+            active = openSegment(++activeNumber);
+            logger.debug("Started new history segment " + activeNumber);
+        }
+        active.write(frame(HistoryCodec.encode(entry)));
+        active.force(false);
+    }
+
+    /**
+     * Rewrites all segments except the active one into a single segment and drops entries older than the given time.
+     * The new segment replaces the oldest one atomically, so a crash during compaction never loses entries.
+     *
+     * @return the number of dropped entries
+     */
+    int compact(Instant retainAfter) throws IOException {
+        final var closed = listSegments().stream()
+                .filter(segment -> segmentNumber(segment) != activeNumber)
+                .toList();
+        if (closed.isEmpty()) {
+            return 0;
+        }
+        final var entries = new ArrayList<HistoryEntry>();
+        for (final var segment : closed) {
+            entries.addAll(readSegment(segment, false));
+        }
+        final var retained = entries.stream()
+                .filter(entry -> !entry.time().isBefore(retainAfter))
+                .toList();
+        final var dropped = entries.size() - retained.size();
+        if (closed.size() == 1 && dropped == 0) {
+            return 0;
+        }
+
+        final var target = closed.get(0);
+        if (retained.isEmpty()) {
+            Files.delete(target);
+        } else {
+            final var temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (final var channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                for (final var entry : retained) {
+                    channel.write(frame(HistoryCodec.encode(entry)));
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        }
+        for (final var segment : closed.subList(1, closed.size())) {
+            Files.delete(segment);
+        }
+        logger.debug("Compacted " + closed.size() + " history segments, dropped " + dropped + " entries");
+        return dropped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (active != null) {
+            active.force(true);
+            active.close();
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (final var files = Files.list(directory)) {
+            return files.filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @param repair whether an invalid tail should be cut off, otherwise it is only skipped
+     */
+    private List<HistoryEntry> readSegment(Path segment, boolean repair) throws IOException {
+        final var buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        final var entries = new ArrayList<HistoryEntry>();
+        while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+            final var start = buffer.position();
+            final var length = buffer.getInt();
+            final var checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            final var data = new byte[length];
+            buffer.get(data);
+            if (checksum != checksum(data)) {
+                buffer.position(start);
+                break;
+            }
+            try {
+                entries.add(HistoryCodec.decode(data));
+            } catch (IOException e) {
+                logger.warn("Skipping undecodable entry at position " + start + " of history segment " + segment.getFileName() + ": " + e.getMessage());
+            }
+        }
+        if (buffer.hasRemaining()) {
+            logger.warn("Skipping " + buffer.remaining() + " invalid bytes at the end of history segment " + segment.getFileName());
+            if (repair) {
+                try (final var channel = FileChannel.open(segment, WRITE)) {
+                    channel.truncate(buffer.position());
+                    channel.force(true);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(directory.resolve(String.format("%010d.log", number)), CREATE, WRITE, APPEND);
+    }
+
+    private static long segmentNumber(Path segment) {
+        final var matcher = SEGMENT_NAME.matcher(segment.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a history segment: " + segment);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static ByteBuffer frame(byte[] data) {
+        return ByteBuffer.allocate(FRAME_HEADER_SIZE + data.length)
+                .putInt(data.length)
+                .putInt(checksum(data))
+                .put(data)
+                .flip();
+    }
+
+    private static int checksum(byte[] data) {
+        final var crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
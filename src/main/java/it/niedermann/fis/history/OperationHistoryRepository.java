@@ -0,0 +1,143 @@
+package it.niedermann.fis.history;
+
+import it.niedermann.fis.VersionedETag;
+import it.niedermann.fis.main.model.OperationDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps all alarmed operations for later review. Operations are persisted to a {@link HistoryLog} on a dedicated
+ * thread, so neither slow disks nor queries delay the alarm.
+ */
+@Service
+@EnableConfigurationProperties(HistoryConfiguration.class)
+public class OperationHistoryRepository implements Consumer<OperationDto> {
+
+    private final Logger logger = LoggerFactory.getLogger(OperationHistoryRepository.class);
+
+    private final HistoryConfiguration config;
+    private final ExecutorService executor;
+    private final HistoryLog log;
+    private final VersionedETag eTag = new VersionedETag("history");
+    private volatile HistoryIndex index;
+    /**
+     * Only accessed by the {@link #executor} after construction
+     */
+    private long lastId;
+
+    public OperationHistoryRepository(HistoryConfiguration config) throws IOException {
+        this.config = config;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            final var thread = new Thread(runnable, "history-1");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (config.path() == null || config.path().isBlank()) {
+            logger.info("❌ Operation history will get lost on restart because no path has been specified");
+            this.log = null;
+            this.index = HistoryIndex.of(Collections.emptyList());
+        } else {
+            final var start = System.currentTimeMillis();
+            this.log = new HistoryLog(Path.of(config.path()), config.segmentSize());
+            final var entries = log.open();
+            this.index = HistoryIndex.of(entries);
+            this.lastId = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).id();
+            logger.info("✅ Loaded " + entries.size() + " past operations from " + config.path() + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Adds the given operation to the history asynchronously
+     */
+    @Override
+    public void accept(OperationDto operation) {
+        final var time = Instant.now();
+        executor.execute(() -> append(operation, time));
+    }
+
+    private void append(OperationDto operation, Instant time) {
+        final var entry = new HistoryEntry(++lastId, time, operation);
+        if (log != null) {
+            try {
+                log.append(entry);
+            } catch (IOException e) {
+                logger.error("Could not persist operation \"" + operation.getKeyword() + "\" to history", e);
+            }
+        }
+        index = index.with(entry);
+        eTag.increment();
+    }
+
+    /**
+     * Merges full segments and drops operations which exceeded the configured retention
+     */
+    @Scheduled(fixedDelayString = "${fis.history.compactionInterval}")
+    public void compact() {
+        executor.execute(() -> {
+            final var retainAfter = config.retention() > 0
+                    ? Instant.now().minusMillis(config.retention())
+                    : Instant.MIN;
+            try {
+                if (log != null) {
+                    log.compact(retainAfter);
+                }
+            } catch (IOException e) {
+                logger.error("Could not compact history", e);
+            }
+            final var retained = index.retainAfter(retainAfter);
+            if (retained.size() != index.size()) {
+                index = retained;
+                eTag.increment();
+            }
+        });
+    }
+
+    /**
+     * Waits for pending operations to be written and closes the log
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        executor.execute(() -> {
+            try {
+                if (log != null) {
+                    log.close();
+                }
+            } catch (IOException e) {
+                logger.error("Could not close history", e);
+            }
+        });
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Operation history has not been closed within 10 seconds");
+        }
+    }
+
+    /**
+     * @see HistoryIndex#query(String, Instant, Instant, int, int)
+     */
+    HistoryIndex.HistoryPage query(String keyword, Instant from, Instant to, int page, int size) {
+        return index.query(keyword, from, to, page, size);
+    }
+
+    /**
+     * Must be read before {@link #query(String, Instant, Instant, int, int)}, so that a concurrent change can at most
+     * cause an outdated ETag for a newer result
+     */
+    public String getETag() {
+        return eTag.get();
+    }
+}
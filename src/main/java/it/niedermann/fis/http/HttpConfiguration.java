@@ -0,0 +1,19 @@
+package it.niedermann.fis.http;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.http")
+@Validated
+public record HttpConfiguration(
+                @Min(1) long connectTimeout,
+                @Min(1) long readTimeout,
+                @Min(1) long callTimeout,
+                @Min(1) int maxIdleConnections,
+                @Min(1_000) long keepAlive,
+                @Min(1) int maxRequestsPerHost,
+                @Min(10_000) long warmUpInterval) {
+}
@@ -0,0 +1,153 @@
+package it.niedermann.fis.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpMetricsEventListener;
+import okhttp3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import retrofit2.Callback;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares one connection pool and dispatcher between all providers talking to remote APIs, so that connections
+ * (including their TLS handshake) are reused instead of being set up again for every notification.
+ */
+@Component
+@EnableConfigurationProperties(HttpConfiguration.class)
+public class OutboundHttpClient {
+
+    private final Logger logger = LoggerFactory.getLogger(OutboundHttpClient.class);
+
+    private final OkHttpClient client;
+    /**
+     * Hosts which should have an established connection before the next alarm
+     */
+    private final Collection<HttpUrl> warmUpUrls = new CopyOnWriteArraySet<>();
+
+    public OutboundHttpClient(
+            HttpConfiguration config,
+            MeterRegistry meterRegistry
+    ) {
+        final var threadCount = new AtomicInteger();
+        final var executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            final var thread = new Thread(runnable, "http-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final var dispatcher = new Dispatcher(executor);
+        dispatcher.setMaxRequestsPerHost(config.maxRequestsPerHost());
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(config.maxIdleConnections(), config.keepAlive(), TimeUnit.MILLISECONDS))
+                // Multiplexes parallel requests to the same provider over a single connection where supported
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(Duration.ofMillis(config.connectTimeout()))
+                .readTimeout(Duration.ofMillis(config.readTimeout()))
+                .callTimeout(Duration.ofMillis(config.callTimeout()))
+                .retryOnConnectionFailure(true)
+                .eventListener(OkHttpMetricsEventListener.builder(meterRegistry, "fis.http.client.requests")
+                        // Query parameters may contain API keys
+                        .uriMapper(request -> request.url().encodedPath())
+                        .tags(List.of(Tag.of("client", "fis")))
+                        .build())
+                .build();
+    }
+
+    /**
+     * @param baseUrl of the remote API, must end with <code>/</code>
+     * @return a Retrofit service sending its requests via the shared client
+     */
+    public <T> T createService(String baseUrl, Class<T> service) {
+        return new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(service);
+    }
+
+    /**
+     * Enqueues the call on the shared dispatcher instead of blocking the calling thread while it is on the wire.
+     *
+     * @return completes with the response, or exceptionally with the {@link IOException} of the call
+     */
+    public <T> CompletableFuture<retrofit2.Response<T>> send(retrofit2.Call<T> call) {
+        final var future = new CompletableFuture<retrofit2.Response<T>>();
+        call.enqueue(new Callback<>() {
+            @Override
+            public void onResponse(retrofit2.Call<T> call, retrofit2.Response<T> response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(retrofit2.Call<T> call, Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        // Cancelling the future, e.g. because of a deadline, aborts the request
+        future.whenComplete((response, throwable) -> {
+            if (future.isCancelled() || throwable instanceof TimeoutException) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Keeps a connection to the host of the given URL open, so that a request in case of an alarm does not have to
+     * wait for DNS, TCP and TLS.
+     */
+    public void warmUp(String url) {
+        final var httpUrl = HttpUrl.get(url);
+        if (warmUpUrls.add(httpUrl)) {
+            warmUp(httpUrl);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${fis.http.warmUpInterval}", fixedDelayString = "${fis.http.warmUpInterval}")
+    public void warmUpAll() {
+        warmUpUrls.forEach(this::warmUp);
+    }
+
+    private void warmUp(HttpUrl url) {
+        client.newCall(new Request.Builder().url(url).head().build()).enqueue(new okhttp3.Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                // Closing the response releases the connection back to the pool
+                response.close();
+                logger.trace("🔥 Warmed up connection to " + url.host() + " via " + response.protocol());
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                logger.debug("Could not warm up connection to " + url.host() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return the count of pooled connections, idle and in use
+     */
+    int getConnectionCount() {
+        return client.connectionPool().connectionCount();
+    }
+
+    /**
+     * @return the count of pooled connections which are ready to be reused
+     */
+    int getIdleConnectionCount() {
+        return client.connectionPool().idleConnectionCount();
+    }
+}
@@ -0,0 +1,11 @@
+package it.niedermann.fis.operation;
+
+import it.niedermann.fis.main.model.OperationDto;
+
+import java.time.Instant;
+
+/**
+ * @param expiry the operation is no longer active after this point in time
+ */
+public record ActiveOperation(OperationDto operation, Instant expiry) {
+}
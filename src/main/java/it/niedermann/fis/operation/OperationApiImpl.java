@@ -1,24 +1,47 @@
 package it.niedermann.fis.operation;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.niedermann.fis.LongPollingRequests;
+import it.niedermann.fis.VersionedETag;
+import it.niedermann.fis.cache.ResponseBodyCache;
+import it.niedermann.fis.event.EventTopic;
+import it.niedermann.fis.event.StateChangedEvent;
+import it.niedermann.fis.history.OperationHistoryRepository;
 import it.niedermann.fis.main.api.OperationApi;
+import it.niedermann.fis.main.api.OperationsApi;
 import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.parser.OperationParserRepository;
 import it.niedermann.fis.operation.remote.ftp.OperationFTPRepository;
 import it.niedermann.fis.operation.remote.notification.OperationNotificationRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.NativeWebRequest;
 
 import java.io.File;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 @Controller
 @RequestMapping("/api")
 @EnableConfigurationProperties(OperationConfiguration.class)
-public class OperationApiImpl implements OperationApi {
+public class OperationApiImpl implements OperationApi, OperationsApi {
 
     private final Logger logger = LoggerFactory.getLogger(OperationApiImpl.class);
 
@@ -26,79 +49,195 @@ public class OperationApiImpl implements OperationApi {
     private final OperationFTPRepository ftpRepository;
     private final OperationNotificationRepository notificationRepository;
     private final OperationParserRepository parserRepository;
+    private final OperationHistoryRepository historyRepository;
+    private final OperationStateStore stateStore;
+    private final OperationExpiryScheduler expiryScheduler;
+    private final OperationSnapshotRepository snapshotRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ResponseBodyCache responseBodyCache;
+    private final Timer alarmTimer;
+    private final Counter operationCounter;
 
-    private Thread cancelCurrentOperation;
-    private OperationDto currentOperation;
-    private boolean processing = false;
+    private final LongPollingRequests<OperationDto> longPollingRequests = new LongPollingRequests<>();
 
     public OperationApiImpl(
             OperationConfiguration config,
             OperationFTPRepository ftpRepository,
             OperationNotificationRepository notificationRepository,
-            OperationParserRepository parserRepository
+            OperationParserRepository parserRepository,
+            OperationHistoryRepository historyRepository,
+            OperationStateStore stateStore,
+            OperationExpiryScheduler expiryScheduler,
+            OperationSnapshotRepository snapshotRepository,
+            ApplicationEventPublisher eventPublisher,
+            ResponseBodyCache responseBodyCache,
+            MeterRegistry meterRegistry
     ) {
         this.config = config;
         this.ftpRepository = ftpRepository;
         this.notificationRepository = notificationRepository;
         this.parserRepository = parserRepository;
+        this.historyRepository = historyRepository;
+        this.stateStore = stateStore;
+        this.expiryScheduler = expiryScheduler;
+        this.snapshotRepository = snapshotRepository;
+        this.eventPublisher = eventPublisher;
+        this.responseBodyCache = responseBodyCache;
+        this.alarmTimer = Timer.builder("fis.operation.alarm")
+                .description("Time from polling the FTP server until a new operation is available")
+                .register(meterRegistry);
+        this.operationCounter = Counter.builder("fis.operation.published")
+                .description("Operations which have been made available")
+                .register(meterRegistry);
+        Gauge.builder("fis.operation.active", stateStore, store -> store.get().operations().size())
+                .description("Operations which are currently active")
+                .register(meterRegistry);
+        Gauge.builder("fis.operation.parked", longPollingRequests, LongPollingRequests::size)
+                .description("Long polling requests waiting for the next change")
+                .register(meterRegistry);
+        restoreSnapshot();
+    }
+
+    /**
+     * Restores the operations which were active before a restart. This happens while the application context is being
+     * created, so the web server does not accept any request before.
+     */
+    private void restoreSnapshot() {
+        final var now = Instant.now();
+        for (final var activeOperation : snapshotRepository.load()) {
+            final var operation = activeOperation.operation();
+            if (activeOperation.expiry().isAfter(now)) {
+                logger.info("♻️ Restored active operation \"" + operation.getKeyword() + "\" until " + activeOperation.expiry());
+                responseBodyCache.put(operation);
+                stateStore.add(operation, activeOperation.expiry());
+                expiryScheduler.schedule(operation, activeOperation.expiry(), () -> expireOperation(operation));
+            } else {
+                logger.debug("Skip restoring operation \"" + operation.getKeyword() + "\" which expired at " + activeOperation.expiry());
+            }
+        }
+    }
+
+    /**
+     * Event listeners are not available yet while the snapshot is restored, so clients of the event stream are
+     * notified as soon as the application is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void publishRestoredSnapshot() {
+        stateStore.get().current().ifPresent(operation ->
+                eventPublisher.publishEvent(new StateChangedEvent(EventTopic.OPERATION, operation)));
+    }
+
+    /**
+     * Both generated interfaces provide this default, so it has to be chosen explicitly
+     */
+    @Override
+    public Optional<NativeWebRequest> getRequest() {
+        return Optional.empty();
+    }
+
+    /**
+     * In case the given ETag matches the current state and the client sends a <code>Prefer: wait=…</code> header, the
+     * request is parked without blocking a thread until the state changes or the requested time elapsed.
+     */
+    @Override
+    public CompletableFuture<ResponseEntity<OperationDto>> getOperation(String ifNoneMatch, String prefer) {
+        final var state = stateStore.get();
+        if (!VersionedETag.matches(ifNoneMatch, state.eTag())) {
+            return CompletableFuture.completedFuture(createResponse(state));
+        }
+        final var wait = LongPollingRequests.parseWait(prefer, config.maxWait());
+        if (wait <= 0) {
+            return CompletableFuture.completedFuture(createNotModifiedResponse(state));
+        }
+        return longPollingRequests.await(wait, () -> {
+            // The state might have changed in the meantime
+            final var latest = stateStore.get();
+            return latest.version() == state.version()
+                    ? Optional.empty()
+                    : Optional.of(createResponse(latest));
+        }, createNotModifiedResponse(state));
     }
 
     @Override
-    public ResponseEntity<OperationDto> getOperation(String ifNoneMatch) {
-        return currentOperation == null
-                ? processing
-                ? ResponseEntity.accepted().build()
-                : ResponseEntity.noContent().build()
-                : ResponseEntity.ok(currentOperation);
+    public CompletableFuture<ResponseEntity<List<OperationDto>>> getOperations(String ifNoneMatch) {
+        final var state = stateStore.get();
+        if (VersionedETag.matches(ifNoneMatch, state.eTag())) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(state.eTag()).build());
+        }
+        final var operations = state.operations().stream()
+                .map(ActiveOperation::operation)
+                .toList();
+        return CompletableFuture.completedFuture(ResponseEntity.ok().eTag(state.eTag()).body(operations));
+    }
+
+    private ResponseEntity<OperationDto> createResponse(OperationState state) {
+        return state.current()
+                .map(operation -> ResponseEntity.ok().eTag(state.eTag()).body(operation))
+                .orElseGet(() -> ResponseEntity.status(state.processing() ? HttpStatus.ACCEPTED : HttpStatus.NO_CONTENT).eTag(state.eTag()).build());
+    }
+
+    private ResponseEntity<OperationDto> createNotModifiedResponse(OperationState state) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(state.eTag()).build();
+    }
+
+    /**
+     * Publishes the change to event stream clients and releases all parked long polling requests
+     *
+     * @param state the state right after the change has been applied to the {@link #stateStore}
+     */
+    private void onStateChanged(EventTopic topic, Object payload, OperationState state) {
+        if (topic == EventTopic.OPERATION) {
+            snapshotRepository.save(state);
+        }
+        eventPublisher.publishEvent(new StateChangedEvent(topic, payload));
+        longPollingRequests.release(() -> {
+            // Concurrent changes might have been applied in the meantime, respond with the latest one
+            final var latest = stateStore.get();
+            return createResponse(latest.version() > state.version() ? latest : state);
+        });
     }
 
+    /**
+     * Runs on the ingest executor, which skips a poll while the previous one is still parsing
+     */
+    @Async("ingestExecutor")
     @Scheduled(fixedDelayString = "${fis.ftp.pollInterval}")
     public void pollOperations() {
+        final var start = System.nanoTime();
         ftpRepository.poll()
                 .flatMap(ftpRepository::awaitUploadCompletion)
                 .flatMap(ftpRepository::download)
-                .ifPresent(this::parseAndApplyOperation);
+                .ifPresent(operationFile -> parseAndApplyOperation(operationFile, start));
     }
 
-    private void parseAndApplyOperation(File operationFile) {
-        this.processing = true;
+    private void parseAndApplyOperation(File operationFile, long start) {
+        onStateChanged(EventTopic.PROCESSING, true, stateStore.setProcessing(true));
 
         this.parserRepository.parse(operationFile).ifPresent(operationDto -> {
             logger.debug("🚒 Saving operation as currently active operation: \"" + operationDto.getKeyword() + "\"…");
-            this.currentOperation = operationDto;
+            responseBodyCache.put(operationDto);
+            final var expiry = Instant.now().plusMillis(config.duration());
+            onStateChanged(EventTopic.OPERATION, operationDto, stateStore.add(operationDto, expiry));
+            alarmTimer.record(System.nanoTime() - start, NANOSECONDS);
+            operationCounter.increment();
             notificationRepository.accept(operationDto);
+            historyRepository.accept(operationDto);
 
-            logger.debug("Planning cancellation of currently active operation: \"" + operationDto.getKeyword() + "\"…");
-            scheduleOperationCancellation(operationDto);
+            expiryScheduler.schedule(operationDto, expiry, () -> expireOperation(operationDto));
         });
 
         if (!operationFile.delete()) {
             logger.warn("Could not delete downloaded FTP file: " + operationFile.getName());
         }
 
-        this.processing = false;
+        onStateChanged(EventTopic.PROCESSING, false, stateStore.setProcessing(false));
     }
 
-    private void scheduleOperationCancellation(OperationDto dto) {
-        if (cancelCurrentOperation != null) {
-            logger.trace("→ Interrupt existing operation cancellation attempt");
-            cancelCurrentOperation.interrupt();
-        }
-
-        cancelCurrentOperation = new Thread(() -> {
-            try {
-                logger.trace("Scheduled cancellation of operation \"" + dto.getKeyword() + "\" in " + config.duration() / 1_000 + "s");
-                Thread.sleep(config.duration());
-                if (Thread.currentThread().isInterrupted()) {
-                    throw new InterruptedException();
-                }
-                logger.info("⏰ Timeout over… unset active operation \"" + dto.getKeyword() + "\"");
-                this.currentOperation = null;
-            } catch (InterruptedException e) {
-                logger.trace("→ Existing operation " + "\"" + dto.getKeyword() + "\"" + " cancellation attempt has been interrupted.");
-            }
-        });
-        cancelCurrentOperation.start();
-        logger.trace("→ Cancellation of currently active operation: \"" + dto.getKeyword() + "\" planned.");
+    private void expireOperation(OperationDto dto) {
+        logger.info("⏰ Timeout over… unset active operation \"" + dto.getKeyword() + "\"");
+        final var state = stateStore.remove(dto);
+        responseBodyCache.evict(dto);
+        onStateChanged(EventTopic.OPERATION, state.current().orElse(null), state);
+        eventPublisher.publishEvent(new StateChangedEvent(EventTopic.EXPIRED, dto));
     }
 }
@@ -3,10 +3,14 @@ package it.niedermann.fis.operation;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
+import javax.validation.constraints.Min;
+
 @SuppressWarnings("SpellCheckingInspection")
 @ConfigurationProperties("fis.operation")
 @Validated
 public record OperationConfiguration(
                 long duration,
-                String origin) {
+                String origin,
+                @Min(0) long maxWait,
+                String snapshot) {
 }
@@ -0,0 +1,96 @@
+package it.niedermann.fis.operation;
+
+import it.niedermann.fis.main.model.OperationDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Expires any number of operations using a single shared thread instead of one sleeping thread per operation.
+ */
+@Component
+public class OperationExpiryScheduler {
+
+    private final Logger logger = LoggerFactory.getLogger(OperationExpiryScheduler.class);
+
+    private final ScheduledThreadPoolExecutor executor;
+    /**
+     * Pending deadlines by operation instance, guarded by itself
+     */
+    private final Map<OperationDto, Deadline> deadlines = new IdentityHashMap<>();
+
+    public OperationExpiryScheduler() {
+        final var threadCount = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final var thread = new Thread(runnable, "expiry-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Cancelled deadlines would otherwise stay in the queue until they are due
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Schedules the expiry of the given operation. Replaces a pending deadline of the same operation, which allows
+     * extending or shortening it.
+     *
+     * @param onExpiry called on the scheduler thread, must not block
+     */
+    public void schedule(OperationDto operation, Instant expiry, Runnable onExpiry) {
+        synchronized (deadlines) {
+            final var previous = deadlines.remove(operation);
+            if (previous != null) {
+                previous.future().cancel(false);
+            }
+            final var delay = Math.max(0, expiry.toEpochMilli() - System.currentTimeMillis());
+            final var future = executor.schedule(() -> expire(operation, expiry, onExpiry), delay, MILLISECONDS);
+            deadlines.put(operation, new Deadline(expiry, future));
+        }
+        logger.trace("Scheduled expiry of operation \"" + operation.getKeyword() + "\" at " + expiry);
+    }
+
+    /**
+     * @return whether a pending deadline has been cancelled
+     */
+    public boolean cancel(OperationDto operation) {
+        final Deadline deadline;
+        synchronized (deadlines) {
+            deadline = deadlines.remove(operation);
+        }
+        return deadline != null && deadline.future().cancel(false);
+    }
+
+    public int getPendingCount() {
+        synchronized (deadlines) {
+            return deadlines.size();
+        }
+    }
+
+    private void expire(OperationDto operation, Instant expiry, Runnable onExpiry) {
+        synchronized (deadlines) {
+            // The deadline might have been replaced right before it became due
+            final var deadline = deadlines.get(operation);
+            if (deadline == null || !deadline.expiry().equals(expiry)) {
+                return;
+            }
+            deadlines.remove(operation);
+        }
+        try {
+            onExpiry.run();
+        } catch (RuntimeException e) {
+            logger.error("Could not expire operation \"" + operation.getKeyword() + "\"", e);
+        }
+    }
+
+    private record Deadline(Instant expiry, ScheduledFuture<?> future) {
+    }
+}
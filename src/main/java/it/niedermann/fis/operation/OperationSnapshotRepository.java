@@ -0,0 +1,126 @@
+package it.niedermann.fis.operation;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Persists the active operations including their expiry, so that they can be restored right after a restart.
+ * <p>
+ * The snapshot is replaced atomically, so a crash while writing leaves the previous snapshot intact. Pending snapshots
+ * are written before shutting down.
+ */
+@Service
+public class OperationSnapshotRepository {
+
+    private final Logger logger = LoggerFactory.getLogger(OperationSnapshotRepository.class);
+
+    private static final TypeReference<List<ActiveOperation>> SNAPSHOT_TYPE = new TypeReference<>() {
+    };
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    /**
+     * Only accessed by the {@link #executor}
+     */
+    private long savedVersion = -1;
+
+    @Autowired
+    public OperationSnapshotRepository(OperationConfiguration config, ObjectMapper objectMapper) {
+        this(config, objectMapper, Executors.newSingleThreadExecutor(runnable -> {
+            final var thread = new Thread(runnable, "snapshot-1");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    OperationSnapshotRepository(OperationConfiguration config, ObjectMapper objectMapper, ExecutorService executor) {
+        this.path = config.snapshot() == null || config.snapshot().isBlank() ? null : Path.of(config.snapshot());
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        if (path == null) {
+            logger.info("❌ Active operations will not be restored after a restart because no snapshot path has been specified");
+        }
+    }
+
+    /**
+     * @return the active operations of the last snapshot, including already expired ones
+     */
+    public List<ActiveOperation> load() {
+        if (path == null || !Files.exists(path)) {
+            return Collections.emptyList();
+        }
+        try {
+            return objectMapper.readValue(path.toFile(), SNAPSHOT_TYPE);
+        } catch (IOException e) {
+            logger.error("Could not restore active operations from " + path, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Writes the given state asynchronously, unless a newer state has already been written
+     */
+    public void save(OperationState state) {
+        if (path == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                if (state.version() <= savedVersion) {
+                    return;
+                }
+                try {
+                    write(state.operations());
+                    savedVersion = state.version();
+                } catch (IOException e) {
+                    logger.error("Could not save snapshot of active operations to " + path, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Could not save snapshot of active operations during shutdown");
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Snapshot of active operations has not been saved within 10 seconds");
+        }
+    }
+
+    private void write(List<ActiveOperation> operations) throws IOException {
+        final var directory = path.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        final var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, objectMapper.writeValueAsBytes(operations));
+        try (final var channel = FileChannel.open(temp, WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,34 @@
+package it.niedermann.fis.operation;
+
+import it.niedermann.fis.VersionedETag;
+import it.niedermann.fis.main.model.OperationDto;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Immutable snapshot of all active operations
+ *
+ * @param version    incremented with each change
+ * @param processing whether an operation is currently being downloaded and parsed
+ * @param operations ordered by alarm time, the latest one last
+ */
+public record OperationState(long version, boolean processing, List<ActiveOperation> operations) {
+
+    public OperationState {
+        operations = List.copyOf(operations);
+    }
+
+    /**
+     * @return the latest operation which is still active
+     */
+    public Optional<OperationDto> current() {
+        return operations.isEmpty()
+                ? Optional.empty()
+                : Optional.of(operations.get(operations.size() - 1).operation());
+    }
+
+    public String eTag() {
+        return VersionedETag.format("operation", version);
+    }
+}
@@ -0,0 +1,56 @@
+package it.niedermann.fis.operation;
+
+import it.niedermann.fis.main.model.OperationDto;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds the active operations as {@link OperationState} snapshot. Readers never block, writers replace the whole
+ * snapshot atomically, so they never see a partially applied change.
+ */
+@Component
+public class OperationStateStore {
+
+    private final AtomicReference<OperationState> state = new AtomicReference<>(
+            new OperationState(0, false, Collections.emptyList()));
+
+    public OperationState get() {
+        return state.get();
+    }
+
+    public OperationState setProcessing(boolean processing) {
+        return update(current -> new OperationState(current.version() + 1, processing, current.operations()));
+    }
+
+    public OperationState add(OperationDto operation, Instant expiry) {
+        return update(current -> {
+            final var operations = new ArrayList<>(current.operations());
+            operations.add(new ActiveOperation(operation, expiry));
+            return new OperationState(current.version() + 1, current.processing(), operations);
+        });
+    }
+
+    /**
+     * @return the new state or the unchanged current state if the operation is not active
+     */
+    public OperationState remove(OperationDto operation) {
+        return update(current -> {
+            final var operations = new ArrayList<>(current.operations());
+            return operations.removeIf(activeOperation -> activeOperation.operation() == operation)
+                    ? new OperationState(current.version() + 1, current.processing(), operations)
+                    : current;
+        });
+    }
+
+    /**
+     * @param change must be free of side effects because it might be applied multiple times under contention
+     */
+    private OperationState update(UnaryOperator<OperationState> change) {
+        return state.updateAndGet(change);
+    }
+}
@@ -0,0 +1,14 @@
+package it.niedermann.fis.operation.address;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.address")
+@Validated
+public record AddressConfiguration(
+                String index,
+                @Min(0) int maxDistance) {
+}
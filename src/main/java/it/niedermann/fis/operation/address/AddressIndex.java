@@ -0,0 +1,198 @@
+package it.niedermann.fis.operation.address;
+
+import java.util.*;
+
+/**
+ * An immutable trie of known names which supports looking up the closest entry by Levenshtein distance.
+ * <p>
+ * After building, the nodes are flattened into a few primitive arrays in breadth first order, so that all children of
+ * a node are stored next to each other. This keeps the memory footprint small even for some ten thousand streets. A
+ * search allocates a single Levenshtein matrix up front and nothing while walking the trie.
+ */
+class AddressIndex {
+
+    private final String[] names;
+    /**
+     * Character of the edge leading to each node
+     */
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] childCount;
+    /**
+     * Index of the name stored at each node in {@link #names} or <code>-1</code> if no name ends at this node
+     */
+    private final int[] entries;
+    private final int maxDepth;
+
+    private AddressIndex(Collection<String> names) {
+        final var root = new Node();
+        final var storedNames = new ArrayList<String>();
+        var nodeCount = 1;
+        var maxDepth = 0;
+        for (final var name : names) {
+            final var key = normalize(name);
+            if (key.isEmpty()) {
+                continue;
+            }
+            var node = root;
+            for (int i = 0; i < key.length(); i++) {
+                final var child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    final var newChild = new Node();
+                    node.children.put(key.charAt(i), newChild);
+                    node = newChild;
+                    nodeCount++;
+                } else {
+                    node = child;
+                }
+            }
+            if (node.entry < 0) {
+                node.entry = storedNames.size();
+                storedNames.add(name.strip());
+            }
+            maxDepth = Math.max(maxDepth, key.length());
+        }
+
+        this.names = storedNames.toArray(String[]::new);
+        this.labels = new char[nodeCount];
+        this.firstChild = new int[nodeCount];
+        this.childCount = new int[nodeCount];
+        this.entries = new int[nodeCount];
+        this.maxDepth = maxDepth;
+
+        final var order = new ArrayList<Node>(nodeCount);
+        order.add(root);
+        for (int i = 0; i < order.size(); i++) {
+            final var node = order.get(i);
+            entries[i] = node.entry;
+            firstChild[i] = order.size();
+            childCount[i] = node.children.size();
+            for (final var child : node.children.entrySet()) {
+                labels[order.size()] = child.getKey();
+                order.add(child.getValue());
+            }
+        }
+    }
+
+    public static AddressIndex of(Collection<String> names) {
+        return new AddressIndex(names);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param query       any name, case and surrounding whitespace are ignored
+     * @param maxDistance maximum count of inserted, deleted or replaced characters
+     * @return the known name with the smallest distance to the given query, as long as it does not exceed the given
+     * maximum distance
+     */
+    public Optional<String> find(String query, int maxDistance) {
+        if (query == null) {
+            return Optional.empty();
+        }
+        final var key = normalize(query);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final var exactMatch = findExact(key);
+        if (exactMatch >= 0 || maxDistance <= 0) {
+            return exactMatch >= 0 ? Optional.of(names[exactMatch]) : Optional.empty();
+        }
+
+        final var search = new Search(key, maxDistance);
+        for (int child = firstChild[0]; child < firstChild[0] + childCount[0]; child++) {
+            search.visit(child, 1);
+        }
+        return search.bestEntry < 0 ? Optional.empty() : Optional.of(names[search.bestEntry]);
+    }
+
+    private int findExact(String key) {
+        var node = 0;
+        for (int i = 0; i < key.length(); i++) {
+            node = findChild(node, key.charAt(i));
+            if (node < 0) {
+                return -1;
+            }
+        }
+        return entries[node];
+    }
+
+    /**
+     * Children are sorted by their label, so a binary search is sufficient
+     */
+    private int findChild(int node, char label) {
+        var low = firstChild[node];
+        var high = low + childCount[node] - 1;
+        while (low <= high) {
+            final var mid = (low + high) >>> 1;
+            if (labels[mid] < label) {
+                low = mid + 1;
+            } else if (labels[mid] > label) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    static String normalize(String name) {
+        return name.strip().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Computes one row of the Levenshtein matrix per visited node and skips all subtrees which can not contain a
+     * better match than the best one found so far.
+     */
+    private class Search {
+
+        private final String key;
+        private final int[][] rows;
+        private int bestDistance;
+        private int bestEntry = -1;
+
+        Search(String key, int maxDistance) {
+            this.key = key;
+            this.rows = new int[maxDepth + 1][key.length() + 1];
+            this.bestDistance = maxDistance + 1;
+            for (int column = 0; column <= key.length(); column++) {
+                rows[0][column] = column;
+            }
+        }
+
+        void visit(int node, int depth) {
+            final var previous = rows[depth - 1];
+            final var current = rows[depth];
+            final var label = labels[node];
+
+            current[0] = previous[0] + 1;
+            var rowMinimum = current[0];
+            for (int column = 1; column <= key.length(); column++) {
+                final var insertion = current[column - 1] + 1;
+                final var deletion = previous[column] + 1;
+                final var replacement = previous[column - 1] + (key.charAt(column - 1) == label ? 0 : 1);
+                current[column] = Math.min(Math.min(insertion, deletion), replacement);
+                rowMinimum = Math.min(rowMinimum, current[column]);
+            }
+
+            if (entries[node] >= 0 && current[key.length()] < bestDistance) {
+                bestDistance = current[key.length()];
+                bestEntry = entries[node];
+            }
+
+            if (rowMinimum < bestDistance) {
+                for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+                    visit(child, depth + 1);
+                }
+            }
+        }
+    }
+
+    private static class Node {
+        private final SortedMap<Character, Node> children = new TreeMap<>();
+        private int entry = -1;
+    }
+}
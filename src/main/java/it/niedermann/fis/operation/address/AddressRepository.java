@@ -0,0 +1,119 @@
+package it.niedermann.fis.operation.address;
+
+import it.niedermann.fis.main.model.OperationDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Snaps OCR'd streets and places to the closest known entry of a local index, so that a single misread character does
+ * not break the navigation link.
+ * <p>
+ * The index is a UTF-8 text file with one <code>street;place</code> pair per line, separated by a semicolon or a tab.
+ * Lines starting with <code>#</code> are ignored. It can be exported for the coverage area from
+ * <a href="https://www.openstreetmap.org">OpenStreetMap</a>, for example with an Overpass query using
+ * <code>[out:csv("addr:street", "addr:city"; false)]</code>.
+ */
+@SuppressWarnings("SpellCheckingInspection")
+@Service
+@EnableConfigurationProperties(AddressConfiguration.class)
+public class AddressRepository {
+
+    private final Logger logger = LoggerFactory.getLogger(AddressRepository.class);
+
+    private static final Pattern SEPARATOR = Pattern.compile("[;\t]");
+    private static final Pattern LOCATION_PART = Pattern.compile("^(\\d{5}\\s+)?(.+)$");
+    private static final String LOCATION_PART_SEPARATOR = " - ";
+
+    private final int maxDistance;
+    private final AddressIndex streets;
+    private final AddressIndex places;
+
+    public AddressRepository(AddressConfiguration config) throws IOException {
+        this.maxDistance = config.maxDistance();
+        if (config.index() == null || config.index().isBlank()) {
+            logger.info("❌ Addresses will not be corrected because no address index has been specified");
+            this.streets = AddressIndex.of(Collections.emptyList());
+            this.places = AddressIndex.of(Collections.emptyList());
+        } else {
+            final var start = System.currentTimeMillis();
+            final var streetNames = new LinkedHashSet<String>();
+            final var placeNames = new LinkedHashSet<String>();
+            try (final var lines = Files.lines(Path.of(config.index()), StandardCharsets.UTF_8)) {
+                lines.filter(line -> !line.isBlank())
+                        .filter(line -> !line.startsWith("#"))
+                        .map(SEPARATOR::split)
+                        .forEach(columns -> {
+                            streetNames.add(columns[0]);
+                            if (columns.length > 1) {
+                                placeNames.add(columns[1]);
+                            }
+                        });
+            }
+            this.streets = AddressIndex.of(streetNames);
+            this.places = AddressIndex.of(placeNames);
+            logger.info("✅ Loaded " + streets.size() + " streets and " + places.size() + " places from " + config.index() + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Replaces street and location of the given operation with the closest known entries, if there are any.
+     */
+    public void correct(OperationDto operation) {
+        findStreet(operation.getStreet()).ifPresent(street -> {
+            if (!street.equals(operation.getStreet())) {
+                logger.debug("→ Corrected street \"" + operation.getStreet() + "\" to \"" + street + "\"");
+                operation.setStreet(street);
+            }
+        });
+        final var location = correctLocation(operation.getLocation());
+        if (location != null && !location.equals(operation.getLocation())) {
+            logger.debug("→ Corrected location \"" + operation.getLocation() + "\" to \"" + location + "\"");
+            operation.setLocation(location);
+        }
+    }
+
+    Optional<String> findStreet(String street) {
+        return streets.find(street, allowedDistance(street));
+    }
+
+    /**
+     * Locations usually consist of a postal code, the place and a district, e.g. <code>12345 Foo - Bar</code>.
+     * Only place and district are corrected, the postal code is kept as it is.
+     */
+    String correctLocation(String location) {
+        if (location == null || location.isBlank()) {
+            return location;
+        }
+        return Arrays.stream(location.split(LOCATION_PART_SEPARATOR))
+                .map(part -> {
+                    final var matcher = LOCATION_PART.matcher(part.strip());
+                    if (!matcher.matches()) {
+                        return part;
+                    }
+                    final var postalCode = Optional.ofNullable(matcher.group(1)).orElse("");
+                    final var place = matcher.group(2);
+                    return postalCode + places.find(place, allowedDistance(place)).orElse(place);
+                })
+                .collect(Collectors.joining(LOCATION_PART_SEPARATOR));
+    }
+
+    /**
+     * Short names must not be corrected as much as long ones, otherwise they would snap to unrelated entries.
+     */
+    private int allowedDistance(String name) {
+        return name == null ? 0 : Math.min(maxDistance, name.strip().length() / 4);
+    }
+}
@@ -38,6 +38,26 @@ class MittelfrankenSuedParser implements OperationParser {
         return parseFax(input);
     }
 
+    /**
+     * A known keyword is the strongest indicator for a correctly parsed fax, therefore it makes up half of the confidence.
+     * The other half is shared by the fields which are present on every fax of this ILS.
+     */
+    @Override
+    public float getConfidence(OperationDto dto) {
+        final var keyword = dto.getKeyword();
+        final float keywordScore = keyword == null || keyword.isBlank()
+                ? 0f
+                : OP_KEYWORDS.contains(keyword) ? 1f : .25f;
+        final var fields = List.of(
+                dto.getStreet() != null && !dto.getStreet().isBlank(),
+                dto.getLocation() != null && !dto.getLocation().isBlank(),
+                dto.getTags() != null && !dto.getTags().isEmpty(),
+                dto.getVehicles() != null && !dto.getVehicles().isEmpty()
+        );
+        final var fieldScore = (float) fields.stream().filter(Boolean::booleanValue).count() / fields.size();
+        return .5f * keywordScore + .5f * fieldScore;
+    }
+
     private OperationDto parseFax(String input) throws IllegalArgumentException {
         if (!isOperationFax(input)) {
             throw new IllegalArgumentException("The input seems not to be an operation fax.");
@@ -106,7 +126,7 @@ class MittelfrankenSuedParser implements OperationParser {
         return OP_FAX_END.stream().anyMatch(upper::contains);
     }
 
-    private String findKeyword(String[] lines) {
+    String findKeyword(String[] lines) {
         final var value = findValue("Stichwort", lines);
         // In case the found value contains any more unwanted characters
         final var upperValue = value.toUpperCase(Locale.ROOT);
@@ -140,7 +160,7 @@ class MittelfrankenSuedParser implements OperationParser {
         return String.join(" ", new LinkedHashSet<>(Arrays.asList(location.split(" "))));
     }
 
-    private List<String> findVehicles(String[] lines) {
+    List<String> findVehicles(String[] lines) {
         final var term = "NAME";
         return Arrays.stream(lines)
                 .map(this::trimSpecialCharacters)
@@ -156,7 +176,7 @@ class MittelfrankenSuedParser implements OperationParser {
                 .toList();
     }
 
-    private String findValue(String term, String[] lines) {
+    String findValue(String term, String[] lines) {
         final var upperTerm = term.toUpperCase(Locale.ROOT);
         for (var line : lines) {
             final var cleanedLine = trimSpecialCharacters(line);
@@ -168,7 +188,7 @@ class MittelfrankenSuedParser implements OperationParser {
         return "";
     }
 
-    private String trimSpecialCharacters(String value) {
+    String trimSpecialCharacters(String value) {
         while (value.length() > 0 && UNDESIRED_CHARACTERS.contains(value.charAt(0))) {
             value = value.substring(1).stripLeading();
         }
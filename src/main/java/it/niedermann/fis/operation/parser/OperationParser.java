@@ -4,4 +4,12 @@ import it.niedermann.fis.main.model.OperationDto;
 
 interface OperationParser {
     OperationDto parse(String input) throws IllegalArgumentException;
+
+    /**
+     * When more than one {@link OperationParser} is able to handle an input, the result with the highest confidence wins.
+     *
+     * @param dto a result previously returned by {@link #parse(String)} of this parser
+     * @return a value between <code>0</code> (nothing useful found) and <code>1</code> (all fields found and valid)
+     */
+    float getConfidence(OperationDto dto);
 }
@@ -1,52 +1,232 @@
 package it.niedermann.fis.operation.parser;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.operation.address.AddressRepository;
 import net.sourceforge.tess4j.ITesseract;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.*;
 
-import static it.niedermann.fis.operation.parser.OperationParserType.MITTELFRANKEN_SUED;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 @SuppressWarnings("SpellCheckingInspection")
 @Service
+@EnableConfigurationProperties(ParserConfiguration.class)
 public class OperationParserRepository {
 
     private final Logger logger = LoggerFactory.getLogger(OperationParserRepository.class);
 
     private final ITesseract tesseract;
-    private final OperationParser parser;
+    private final AddressRepository addressRepository;
+    private final Map<OperationParserType, OperationParser> parsers = new EnumMap<>(OperationParserType.class);
+    private final Map<OperationParserType, ParserStatistics> statistics = new EnumMap<>(OperationParserType.class);
+    private final long timeout;
+    private final Executor executor;
+    private final Timer ocrTimer;
+    private final Timer parseTimer;
+    private final Counter errorCounter;
+    private final Counter unrecognizedCounter;
+    private final Counter unavailableCounter;
 
     public OperationParserRepository(
-            TesseractConfiguration config,
+            TesseractConfiguration tesseractConfig,
+            ParserConfiguration parserConfig,
             OperationTesseractFactory tesseractFactory,
-            OperationParserFactory parserFactory
+            OperationParserFactory parserFactory,
+            AddressRepository addressRepository,
+            MeterRegistry meterRegistry,
+            @Qualifier("parserExecutor") Executor executor
     ) {
-        tesseract = tesseractFactory.createTesseract(config);
-        parser = parserFactory.createParser(MITTELFRANKEN_SUED);
+        tesseract = tesseractFactory.createTesseract(tesseractConfig);
+        this.addressRepository = addressRepository;
+        for (final var type : OperationParserType.values()) {
+            parsers.put(type, parserFactory.createParser(type));
+            statistics.put(type, new ParserStatistics());
+        }
+        timeout = parserConfig.timeout();
+        this.executor = executor;
+
+        ocrTimer = Timer.builder("fis.parser.ocr")
+                .description("Time to recognize the text of an operation fax")
+                .register(meterRegistry);
+        parseTimer = Timer.builder("fis.parser.parse")
+                .description("Time until the result of the most confident parser has been picked")
+                .register(meterRegistry);
+        errorCounter = Counter.builder("fis.parser.failures")
+                .description("Operation faxes which could not be parsed")
+                .tag("reason", "error")
+                .register(meterRegistry);
+        unrecognizedCounter = Counter.builder("fis.parser.failures")
+                .description("Operation faxes which could not be parsed")
+                .tag("reason", "unrecognized")
+                .register(meterRegistry);
+        unavailableCounter = Counter.builder("fis.parser.failures")
+                .description("Operation faxes which could not be parsed")
+                .tag("reason", "unavailable")
+                .register(meterRegistry);
+        statistics.forEach((type, stats) -> bindStatistics(meterRegistry, type, stats));
+    }
+
+    private void bindStatistics(MeterRegistry meterRegistry, OperationParserType type, ParserStatistics stats) {
+        final var tags = Tags.of("parser", type.name());
+        FunctionTimer.builder("fis.parser.runs", stats, ParserStatistics::getRuns, s -> s.getTotalTime().toNanos(), NANOSECONDS)
+                .description("Runs and total run time of a single parser")
+                .tags(tags)
+                .register(meterRegistry);
+        FunctionCounter.builder("fis.parser.wins", stats, ParserStatistics::getWins)
+                .description("Runs of a single parser whose result has been picked")
+                .tags(tags)
+                .register(meterRegistry);
+        FunctionCounter.builder("fis.parser.rejections", stats, ParserStatistics::getRejections)
+                .description("Runs of a single parser which did not recognize the input as operation fax")
+                .tags(tags)
+                .register(meterRegistry);
+        FunctionCounter.builder("fis.parser.timeouts", stats, ParserStatistics::getTimeouts)
+                .description("Runs of a single parser which have been cancelled because of the timeout")
+                .tags(tags)
+                .register(meterRegistry);
     }
 
     public Optional<OperationDto> parse(File source) {
         logger.info("Start parsing operation \"" + source.getName() + "\"…");
         try {
             logger.debug("→ Start OCR for \"" + source.getName());
+            final var ocrStart = System.nanoTime();
             final var ocrText = tesseract.doOCR(source);
+            ocrTimer.record(System.nanoTime() - ocrStart, NANOSECONDS);
             logger.debug("→ Finished OCR");
 
-            logger.debug("→ Start parsing with " + parser.getClass().getSimpleName() + "…");
-            final var dto = parser.parse(ocrText);
-            logger.debug("→ Finished parsing");
-
-            logger.info("Finished parsing operation \"" + dto.getKeyword() + " from \"" + source.getName() + "\"");
-            return Optional.of(dto);
-        } catch (IllegalArgumentException e) {
-            logger.info("The given file could not be validated as an operation fax.");
+            final var parseStart = System.nanoTime();
+            final var dto = parse(ocrText);
+            parseTimer.record(System.nanoTime() - parseStart, NANOSECONDS);
+            if (dto.isPresent()) {
+                logger.info("Finished parsing operation \"" + dto.get().getKeyword() + " from \"" + source.getName() + "\"");
+            } else {
+                logger.info("The given file could not be validated as an operation fax.");
+                unrecognizedCounter.increment();
+            }
+            return dto;
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while waiting for parsers", e);
+            Thread.currentThread().interrupt();
+        } catch (RejectedExecutionException e) {
+            logger.error("Could not parse \"" + source.getName() + "\": " + e.getMessage());
+            unavailableCounter.increment();
         } catch (Exception e) {
             logger.error(e.getClass().getSimpleName() + " while parsing", e);
+            errorCounter.increment();
         }
         return Optional.empty();
     }
+
+    /**
+     * Runs all known {@link OperationParser}s concurrently and picks the result with the highest confidence.
+     * Parsers which did not finish until the configured timeout are cancelled and their results are ignored.
+     * Parsers which can not be started, because the executor is occupied by parsers still stuck after their timeout,
+     * are skipped.
+     *
+     * @throws RejectedExecutionException if not a single parser could be started
+     */
+    private Optional<OperationDto> parse(String ocrText) throws InterruptedException {
+        final var deadline = System.nanoTime() + MILLISECONDS.toNanos(timeout);
+        final var completionService = new ExecutorCompletionService<ParserResult>(executor);
+        final var futures = new EnumMap<OperationParserType, Future<ParserResult>>(OperationParserType.class);
+        parsers.forEach((type, parser) -> {
+            try {
+                futures.put(type, completionService.submit(() -> runParser(type, parser, ocrText)));
+            } catch (RejectedExecutionException e) {
+                logger.warn("→ " + type + " is unavailable, all parser threads are busy");
+            }
+        });
+        if (futures.isEmpty()) {
+            throw new RejectedExecutionException("No parser available, all parser threads are busy");
+        }
+
+        ParserResult best = null;
+        var deadlineExceeded = false;
+        for (int i = 0; i < futures.size(); i++) {
+            final var future = completionService.poll(deadline - System.nanoTime(), NANOSECONDS);
+            if (future == null) {
+                deadlineExceeded = true;
+                break;
+            }
+            try {
+                final var result = future.get();
+                if (result.dto() != null && (best == null || result.confidence() > best.confidence())) {
+                    best = result;
+                }
+            } catch (ExecutionException e) {
+                logger.error("Unexpected error while parsing", e);
+            }
+            if (best != null && best.confidence() >= 1f) {
+                logger.trace("→ " + best.type() + " is fully confident, not waiting for other parsers");
+                break;
+            }
+        }
+
+        for (final var entry : futures.entrySet()) {
+            if (!entry.getValue().isDone()) {
+                entry.getValue().cancel(true);
+                if (deadlineExceeded) {
+                    logger.warn("→ " + entry.getKey() + " did not finish within " + timeout + "ms");
+                    statistics.get(entry.getKey()).recordTimeout();
+                }
+            }
+        }
+
+        if (best == null) {
+            return Optional.empty();
+        }
+        logger.debug("→ Picked result of " + best.type() + " with confidence " + best.confidence());
+        statistics.get(best.type()).recordWin();
+        statistics.forEach((type, stats) -> logger.trace("→ " + type + ": " + stats));
+        addressRepository.correct(best.dto());
+        return Optional.of(best.dto());
+    }
+
+    private ParserResult runParser(OperationParserType type, OperationParser parser, String input) {
+        final var stats = statistics.get(type);
+        final var start = System.nanoTime();
+        try {
+            logger.debug("→ Start parsing with " + parser.getClass().getSimpleName() + "…");
+            final var dto = parser.parse(input);
+            final var confidence = parser.getConfidence(dto);
+            logger.debug("→ Finished parsing with " + parser.getClass().getSimpleName() + " (confidence: " + confidence + ")");
+            return new ParserResult(type, dto, confidence);
+        } catch (IllegalArgumentException e) {
+            logger.debug("→ " + parser.getClass().getSimpleName() + " could not validate the input as an operation fax");
+            stats.recordRejection();
+        } catch (Exception e) {
+            logger.error(e.getClass().getSimpleName() + " while parsing with " + parser.getClass().getSimpleName(), e);
+            stats.recordRejection();
+        } finally {
+            stats.recordRun(System.nanoTime() - start);
+        }
+        return new ParserResult(type, null, 0f);
+    }
+
+    /**
+     * @return timing and win rate of each known parser, keyed by its type
+     */
+    public Map<String, ParserStatistics> getStatistics() {
+        final var result = new LinkedHashMap<String, ParserStatistics>();
+        statistics.forEach((type, stats) -> result.put(type.name(), stats));
+        return Collections.unmodifiableMap(result);
+    }
+
+    private record ParserResult(OperationParserType type, OperationDto dto, float confidence) {
+    }
 }
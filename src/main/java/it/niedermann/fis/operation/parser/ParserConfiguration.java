@@ -0,0 +1,13 @@
+package it.niedermann.fis.operation.parser;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.parser")
+@Validated
+public record ParserConfiguration(
+                @Min(100) long timeout) {
+}
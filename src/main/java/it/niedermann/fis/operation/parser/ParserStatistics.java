@@ -0,0 +1,75 @@
+package it.niedermann.fis.operation.parser;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects how often and how fast a single {@link OperationParser} has been run and how often its result has been
+ * chosen.
+ */
+public class ParserStatistics {
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    void recordRun(long nanos) {
+        runs.increment();
+        totalNanos.add(nanos);
+    }
+
+    void recordWin() {
+        wins.increment();
+    }
+
+    void recordRejection() {
+        rejections.increment();
+    }
+
+    void recordTimeout() {
+        timeouts.increment();
+    }
+
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    public long getWins() {
+        return wins.sum();
+    }
+
+    /**
+     * @return how often the parser stated that the input is not an operation fax or failed with an exception
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public Duration getTotalTime() {
+        return Duration.ofNanos(totalNanos.sum());
+    }
+
+    public Duration getAverageTime() {
+        final var runs = getRuns();
+        return runs == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos.sum() / runs);
+    }
+
+    /**
+     * @return the share of all finished runs whose result has been chosen, between <code>0</code> and <code>1</code>
+     */
+    public double getWinRate() {
+        final var runs = getRuns();
+        return runs == 0 ? 0d : (double) getWins() / runs;
+    }
+
+    @Override
+    public String toString() {
+        return "runs=" + getRuns() + ", wins=" + getWins() + ", rejections=" + getRejections() + ", timeouts=" + getTimeouts() + ", avg=" + getAverageTime().toMillis() + "ms";
+    }
+}
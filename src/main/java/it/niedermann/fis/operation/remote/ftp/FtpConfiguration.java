@@ -14,6 +14,7 @@ public record FtpConfiguration(
                 @NotBlank String username,
                 @NotBlank String password,
                 @NotBlank String host,
+                @Min(0) int port,
                 String path,
                 @NotNull String fileSuffix,
                 @Min(100) long pollInterval,
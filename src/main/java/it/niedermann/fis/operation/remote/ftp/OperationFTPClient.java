@@ -16,7 +16,11 @@ class OperationFTPClient extends FTPClient {
     public OperationFTPClient(
             FtpConfiguration config
     ) throws IOException {
-        connect(config.host());
+        if (config.port() > 0) {
+            connect(config.host(), config.port());
+        } else {
+            connect(config.host());
+        }
         if (!login(config.username(), config.password())) {
             throw new IllegalArgumentException("❌ Could not connect to FTP server + " + config.host() + ". Please check FTP credentials.");
         }
@@ -1,5 +1,9 @@
 package it.niedermann.fis.operation.remote.ftp;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
 import org.slf4j.Logger;
@@ -27,15 +31,50 @@ public class OperationFTPRepository {
     private final Collection<String> alreadyExistingFileNames = new LinkedList<>();
     private boolean firstPoll = true;
 
+    private final Timer pollTimer;
+    private final Counter listedFilesCounter;
+    private final Counter detectedFilesCounter;
+    private final Timer uploadTimer;
+    private final Timer downloadTimer;
+    private final DistributionSummary downloadSize;
+    private final Counter downloadErrorCounter;
+
     public OperationFTPRepository(
             FtpConfiguration config,
-            OperationFTPClient ftpClient
+            OperationFTPClient ftpClient,
+            MeterRegistry meterRegistry
     ) {
         this.config = config;
         this.ftpClient = ftpClient;
+        this.pollTimer = Timer.builder("fis.ftp.poll")
+                .description("Time to list the files at the FTP server")
+                .register(meterRegistry);
+        this.listedFilesCounter = Counter.builder("fis.ftp.files.listed")
+                .description("Files seen when listing the FTP server")
+                .register(meterRegistry);
+        this.detectedFilesCounter = Counter.builder("fis.ftp.files.detected")
+                .description("New operation files detected at the FTP server")
+                .register(meterRegistry);
+        this.uploadTimer = Timer.builder("fis.ftp.upload.wait")
+                .description("Time waiting for an operation file being uploaded completely")
+                .register(meterRegistry);
+        this.downloadTimer = Timer.builder("fis.ftp.download")
+                .description("Time to download an operation file")
+                .register(meterRegistry);
+        this.downloadSize = DistributionSummary.builder("fis.ftp.download.size")
+                .description("Size of downloaded operation files")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.downloadErrorCounter = Counter.builder("fis.ftp.download.errors")
+                .description("Failed downloads of operation files")
+                .register(meterRegistry);
     }
 
     public synchronized Optional<FTPFile> poll() {
+        return pollTimer.record(this::pollFiles);
+    }
+
+    private Optional<FTPFile> pollFiles() {
         if (alreadyExistingFileNames.size() == 0) {
             logger.debug("Checking FTP server for incoming operations");
         } else {
@@ -43,6 +82,7 @@ public class OperationFTPRepository {
         }
         try {
             final var files = ftpClient.listFiles(config.path());
+            listedFilesCounter.increment(files.length);
             Arrays.stream(files).forEach(file -> logger.trace("⇒ [" + file.getTimestamp().getTimeInMillis() + "] " + file.getName()));
             final var match = Arrays.stream(files)
                     .filter(FTPFile::isFile)
@@ -67,6 +107,7 @@ public class OperationFTPRepository {
                 );
                 return empty();
             }
+            match.ifPresent(ftpFile -> detectedFilesCounter.increment());
             match.ifPresentOrElse(
                     ftpFile -> logger.info("🚒 New incoming operation detected: " + ftpFile.getName()),
                     () -> logger.debug("→ No new file with suffix \"" + config.fileSuffix() + "\" is present at the server.")
@@ -79,6 +120,10 @@ public class OperationFTPRepository {
     }
 
     public Optional<FTPFile> awaitUploadCompletion(FTPFile ftpFile) {
+        return uploadTimer.record(() -> awaitUpload(ftpFile));
+    }
+
+    private Optional<FTPFile> awaitUpload(FTPFile ftpFile) {
         logger.debug("Waiting for " + ftpFile.getName() + " being uploaded completely");
         try {
             int attempt = 0;
@@ -115,6 +160,15 @@ public class OperationFTPRepository {
     }
 
     public Optional<File> download(FTPFile source) {
+        final var result = downloadTimer.record(() -> downloadFile(source));
+        result.ifPresentOrElse(
+                file -> downloadSize.record(file.length()),
+                downloadErrorCounter::increment
+        );
+        return result;
+    }
+
+    private Optional<File> downloadFile(FTPFile source) {
         logger.debug("Start downloading \"" + source.getName() + "\" into temporary file");
         final File target;
         try {
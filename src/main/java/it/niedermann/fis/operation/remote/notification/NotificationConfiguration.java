@@ -4,6 +4,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
 import javax.validation.constraints.Email;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import java.util.Collection;
 
@@ -14,8 +15,27 @@ public record NotificationConfiguration(
                 @NotBlank String senderName,
                 String senderMail,
                 String smsApiKey,
+                String smsProviderUrl,
                 int smsLimit,
                 boolean smsPriority,
+                @Min(0) long smsTimeout,
+                @Min(0) long mailTimeout,
+                @Min(0) int mailBatchSize,
+                @Min(0) int mailConnections,
+                @Min(10_000) long mailKeepAliveInterval,
                 Collection<@Email String> mail,
                 Collection<String> sms) {
-}
\ No newline at end of file
+
+    /**
+     * @param apiKey      falls back to {@link #smsApiKey()} if not present
+     * @param providerUrl the default URL of the provider is used if not present
+     * @return a copy for one of several SMS providers
+     */
+    public NotificationConfiguration withSmsProvider(String apiKey, String providerUrl) {
+        return new NotificationConfiguration(senderName, senderMail,
+                apiKey == null ? smsApiKey : apiKey,
+                providerUrl,
+                smsLimit, smsPriority, smsTimeout, mailTimeout, mailBatchSize, mailConnections, mailKeepAliveInterval,
+                mail, sms);
+    }
+}
@@ -0,0 +1,38 @@
+package it.niedermann.fis.operation.remote.notification;
+
+import it.niedermann.fis.main.model.OperationDto;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Notifies a channel, like SMS or mail, about an operation.
+ */
+public interface NotificationProvider extends Consumer<OperationDto> {
+
+    /**
+     * @return all recipients configured for this channel
+     */
+    Collection<String> getRecipients();
+
+    /**
+     * @return the given recipients in the form of {@link #getRecipients()}, without those invalid for this channel
+     */
+    Collection<String> normalizeRecipients(Collection<String> recipients);
+
+    /**
+     * Must not throw, failures are reported by the returned recipients.
+     *
+     * @param recipients a subset of {@link #getRecipients()}
+     * @return the recipients which could not be notified and should be tried again later
+     */
+    Collection<String> send(OperationDto operation, Collection<String> recipients);
+
+    /**
+     * Notifies all recipients once, without trying again in case of a failure.
+     */
+    @Override
+    default void accept(OperationDto operation) {
+        send(operation, getRecipients());
+    }
+}
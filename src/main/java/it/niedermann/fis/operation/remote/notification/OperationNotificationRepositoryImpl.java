@@ -1,61 +1,258 @@
 package it.niedermann.fis.operation.remote.notification;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.remote.notification.mail.MailProvider;
+import it.niedermann.fis.operation.remote.notification.outbox.NotificationOutbox;
+import it.niedermann.fis.operation.remote.notification.outbox.OutboxEntry;
+import it.niedermann.fis.operation.remote.notification.quota.NotificationQuota;
+import it.niedermann.fis.operation.remote.notification.routing.NotificationRouter;
+import it.niedermann.fis.operation.remote.notification.routing.Route;
 import it.niedermann.fis.operation.remote.notification.sms.SmsProviderFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.function.Consumer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
-import static it.niedermann.fis.operation.remote.notification.sms.SmsProviderType.SMSAPI;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+/**
+ * Sends the notifications of all channels in parallel, so that a slow channel does not delay the others.
+ * Each channel has its own thread pool and deadline, after which it is reported as timed out without waiting any
+ * longer. The send itself is not interrupted, so it may still succeed after the deadline.
+ * <p>
+ * Every notification is added to the {@link NotificationOutbox} before it is sent. The entries stay in flight until
+ * the send itself finished, also beyond the deadline, so that a slow send is never retried while it might still
+ * succeed. Recipients which could not be notified stay in the outbox and are tried again.
+ */
 @Service
 @EnableConfigurationProperties(NotificationConfiguration.class)
 public class OperationNotificationRepositoryImpl implements OperationNotificationRepository {
 
     private final Logger logger = LoggerFactory.getLogger(OperationNotificationRepositoryImpl.class);
 
-    private final Consumer<OperationDto> mailProvider;
-    private final Consumer<OperationDto> smsProvider;
-    private final int smsLimit;
-    private int smsCount = 0;
+    private final NotificationOutbox outbox;
+    private final NotificationChannel smsChannel;
+    private final NotificationChannel mailChannel;
+    private final Map<String, NotificationChannel> channels;
+    private final NotificationQuota quota;
+    private final NotificationRouter router;
+    private final Timer completedTimer;
 
     public OperationNotificationRepositoryImpl(
             NotificationConfiguration config,
             MailProvider mailProvider,
-            SmsProviderFactory smsProviderFactory
+            SmsProviderFactory smsProviderFactory,
+            NotificationOutbox outbox,
+            NotificationQuota quota,
+            NotificationRouter router,
+            MeterRegistry meterRegistry,
+            @Qualifier("smsExecutor") Executor smsExecutor,
+            @Qualifier("mailExecutor") Executor mailExecutor
     ) {
-        this.smsLimit = config.smsLimit();
-        if (smsLimit <= 0) {
-            this.logger.warn("Consider defining a limit for SMS notifications to avoid high costs by spammers.");
-        }
-        this.mailProvider = mailProvider;
-        this.smsProvider = smsProviderFactory.createSmsProvider(SMSAPI);
+        this.outbox = outbox;
+        this.quota = quota;
+        this.router = router;
+        this.smsChannel = new NotificationChannel("sms", smsProviderFactory.createSmsChannel(), config.smsTimeout(), smsExecutor, meterRegistry);
+        this.mailChannel = new NotificationChannel("mail", mailProvider, config.mailTimeout(), mailExecutor, meterRegistry);
+        this.channels = Map.of(smsChannel.name, smsChannel, mailChannel.name, mailChannel);
+        this.completedTimer = Timer.builder("fis.notification.completed")
+                .description("Time until all channels finished sending the notifications of an operation")
+                .register(meterRegistry);
     }
 
-    @Async
+    /**
+     * Starts sending the notifications to the recipients chosen by the {@link NotificationRouter} and returns
+     * immediately.
+     */
     @Override
     public void accept(OperationDto operation) {
-        if (smsLimit > 0 && smsCount < smsLimit) {
-            this.smsProvider.accept(operation);
-            this.smsCount++;
-            this.logger.debug("SMS limit: " + this.smsCount + " / " + this.smsLimit);
-        } else {
-            this.logger.warn("Skipped sending SMS notification because daily limit is exceeded");
-        }
+        final var start = System.nanoTime();
+        final var route = router.route(operation);
+        final var sms = smsChannel.enqueue(operation, route);
+        final var mail = mailChannel.enqueue(operation, route);
+        CompletableFuture.allOf(sms, mail).whenComplete((result, throwable) ->
+                completedTimer.record(System.nanoTime() - start, NANOSECONDS));
+    }
 
-        this.mailProvider.accept(operation);
+    /**
+     * Sends those notifications again whose backoff has elapsed, including the ones pending from before a restart.
+     */
+    @Scheduled(fixedDelayString = "${fis.outbox.drainInterval}")
+    public void retryPending() {
+        outbox.takeDue().stream()
+                .collect(Collectors.groupingBy(entry -> entry.channel() + "/" + entry.operationKey(), LinkedHashMap::new, Collectors.toList()))
+                .values()
+                .forEach(entries -> {
+                    final var channel = channels.get(entries.get(0).channel());
+                    if (channel == null) {
+                        logger.warn("Discarding " + entries.size() + " pending notifications of unknown channel \"" + entries.get(0).channel() + "\"");
+                        outbox.complete(entries);
+                    } else {
+                        channel.retry(entries);
+                    }
+                });
     }
 
-    @Scheduled(cron = "0 0 * * * ?")
+    /**
+     * Not scheduled, because the quota refills continuously
+     */
     @Override
     public void resetLimits() {
-        this.logger.info("Resetting sms count to " + this.smsLimit + " (was " + this.smsCount + ")");
-        this.smsCount = 0;
+        quota.reset();
+    }
+
+    private class NotificationChannel {
+
+        private final String name;
+        private final NotificationProvider provider;
+        /**
+         * Milliseconds until the channel is considered failed, <code>0</code> for no deadline
+         */
+        private final long timeout;
+        /**
+         * Owned by this channel alone, so that a slow provider only delays its own notifications
+         */
+        private final Executor executor;
+        /**
+         * Members of each routing group, validated once by the provider
+         */
+        private final Map<String, Collection<String>> groupRecipients;
+        private final Timer latencyTimer;
+        private final Counter timeoutCounter;
+
+        private NotificationChannel(String name, NotificationProvider provider, long timeout, Executor executor, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.provider = provider;
+            this.timeout = timeout;
+            this.executor = executor;
+            this.groupRecipients = router.getGroups().stream().collect(Collectors.toUnmodifiableMap(
+                    group -> group,
+                    group -> provider.normalizeRecipients(router.getMembers(group, name))));
+            this.latencyTimer = Timer.builder("fis.notification.latency")
+                    .description("Time to send the notifications of an operation")
+                    .tag("channel", name)
+                    .register(meterRegistry);
+            this.timeoutCounter = Counter.builder("fis.notification.timeouts")
+                    .description("Notifications which did not finish before the deadline of their channel")
+                    .tag("channel", name)
+                    .register(meterRegistry);
+        }
+
+        private CompletableFuture<Void> enqueue(OperationDto operation, Route route) {
+            final var recipients = getRecipients(route);
+            if (recipients.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            final var permitted = quota.acquire(name, recipients);
+            final var entries = outbox.add(name, operation, permitted);
+            if (entries.size() < permitted.size()) {
+                // Duplicates are not sent again and should therefore not count
+                final var added = entries.stream().map(OutboxEntry::recipient).collect(Collectors.toSet());
+                quota.release(name, permitted.stream().filter(recipient -> !added.contains(recipient)).toList());
+            }
+            return entries.isEmpty()
+                    ? CompletableFuture.completedFuture(null)
+                    : dispatch(entries);
+        }
+
+        private Collection<String> getRecipients(Route route) {
+            if (!route.includes(name)) {
+                return Collections.emptyList();
+            }
+            if (route.groups().isEmpty()) {
+                return provider.getRecipients();
+            }
+            return route.groups().stream()
+                    .flatMap(group -> groupRecipients.get(group).stream())
+                    .distinct()
+                    .toList();
+        }
+
+        /**
+         * A retry costs as much as the first attempt, so it needs quota as well. Entries without quota are postponed
+         * to the next attempt, because the quota refills meanwhile.
+         *
+         * @param entries of the same operation
+         */
+        private void retry(List<OutboxEntry> entries) {
+            final var permitted = new HashSet<>(quota.acquire(name, entries.stream().map(OutboxEntry::recipient).toList()));
+            outbox.fail(entries.stream().filter(entry -> !permitted.contains(entry.recipient())).toList());
+            final var permittedEntries = entries.stream().filter(entry -> permitted.contains(entry.recipient())).toList();
+            if (!permittedEntries.isEmpty()) {
+                dispatch(permittedEntries);
+            }
+        }
+
+        /**
+         * @param entries of the same operation
+         * @return a future which completes normally as soon as the provider finished, failed or missed the deadline
+         */
+        private CompletableFuture<Void> dispatch(List<OutboxEntry> entries) {
+            final var operation = entries.get(0).operation();
+            final var recipients = entries.stream().map(OutboxEntry::recipient).toList();
+            final var start = System.nanoTime();
+            CompletableFuture<Collection<String>> sending;
+            try {
+                sending = CompletableFuture.supplyAsync(() -> send(operation, recipients, start), executor);
+            } catch (RejectedExecutionException e) {
+                // The executor is saturated, the outbox tries again later
+                sending = CompletableFuture.failedFuture(e);
+            }
+            // Settled by the send itself, even if it missed the deadline, so that it is not retried while still running
+            final var settled = sending.whenComplete((failedRecipients, throwable) -> settle(entries, failedRecipients, throwable));
+            // orTimeout completes the future it is called on, the send itself keeps running
+            final var reported = timeout > 0 ? settled.copy().orTimeout(timeout, MILLISECONDS) : settled;
+            return reported.handle((failedRecipients, throwable) -> {
+                final var cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                if (cause instanceof TimeoutException) {
+                    logger.warn("⏱ Sending " + name + " notifications did not finish within " + timeout + "ms");
+                    timeoutCounter.increment();
+                }
+                return null;
+            });
+        }
+
+        /**
+         * @param start {@link System#nanoTime()} when the notifications have been dispatched
+         */
+        private Collection<String> send(OperationDto operation, List<String> recipients, long start) {
+            try {
+                return provider.send(operation, recipients);
+            } finally {
+                latencyTimer.record(System.nanoTime() - start, NANOSECONDS);
+            }
+        }
+
+        private void settle(List<OutboxEntry> entries, Collection<String> failedRecipients, Throwable throwable) {
+            final var cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause != null) {
+                logger.error("Could not send " + name + " notifications", cause);
+            }
+            // Without a result it is unknown who has been notified, so rather notify twice than not at all
+            final Collection<String> failed = cause == null
+                    ? new HashSet<>(failedRecipients)
+                    : entries.stream().map(OutboxEntry::recipient).toList();
+            outbox.complete(entries.stream().filter(entry -> !failed.contains(entry.recipient())).toList());
+            outbox.fail(entries.stream().filter(entry -> failed.contains(entry.recipient())).toList());
+        }
     }
 }
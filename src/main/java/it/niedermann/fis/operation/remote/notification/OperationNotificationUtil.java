@@ -5,65 +5,42 @@ import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.StringJoiner;
 
 import static java.net.URLEncoder.encode;
 
 @Service
 public class OperationNotificationUtil {
 
+    /**
+     * @return e.g. <code>Church, Foo Street 6b, Bar Village</code>, leaving out blank parts
+     */
     public Optional<String> getHumanReadableLocation(OperationDto operation) {
         final var street = operation.getStreet();
         final var number = operation.getNumber();
-        final var location = operation.getLocation();
-        final var obj = operation.getObj();
+        final var address = new StringJoiner(", ");
+        address.setEmptyValue("");
+        addIfPresent(address, operation.getObj());
+        if (isPresent(street) && isPresent(number)) {
+            address.add(street + " " + number);
+        } else {
+            addIfPresent(address, street);
+            addIfPresent(address, number);
+        }
+        addIfPresent(address, operation.getLocation());
+        return address.length() == 0
+                ? Optional.empty()
+                : Optional.of(address.toString());
+    }
 
-        if (street != null && !street.isBlank()) {
-            if (number != null && !number.isBlank()) {
-                if (location != null && !location.isBlank()) {
-                    if (obj != null && !obj.isBlank()) {
-                        return Optional.of(String.format("%s, %s %s, %s", obj, street, number, location));
-                    } else {
-                        return Optional.of(String.format("%s %s, %s", street, number, location));
-                    }
-                } else if (obj != null && !obj.isBlank()) {
-                    return Optional.of(String.format("%s, %s %s", obj, street, number));
-                } else {
-                    return Optional.of(String.format("%s %s", street, number));
-                }
-            } else if (location != null && !location.isBlank()) {
-                if (obj != null && !obj.isBlank()) {
-                    return Optional.of(String.format("%s, %s, %s", obj, street, location));
-                } else {
-                    return Optional.of(String.format("%s, %s", street, location));
-                }
-            } else if (obj != null && !obj.isBlank()) {
-                return Optional.of(String.format("%s, %s", obj, street));
-            } else {
-                return Optional.of(street);
-            }
-        } else if (number != null && !number.isBlank()) {
-            if (location != null && !location.isBlank()) {
-                if (obj != null && !obj.isBlank()) {
-                    return Optional.of(String.format("%s, %s, %s", obj, number, location));
-                } else {
-                    return Optional.of(String.format("%s, %s", number, location));
-                }
-            } else if (obj != null && !obj.isBlank()) {
-                return Optional.of(String.format("%s, %s", obj, number));
-            } else {
-                return Optional.of(number);
-            }
-        } else if (location != null && !location.isBlank()) {
-            if (obj != null && !obj.isBlank()) {
-                return Optional.of(String.format("%s, %s", obj, location));
-            } else {
-                return Optional.of(location);
-            }
-        } else if (obj != null && !obj.isBlank()) {
-            return Optional.of(obj);
+    private void addIfPresent(StringJoiner joiner, String value) {
+        if (isPresent(value)) {
+            joiner.add(value);
         }
+    }
 
-        return Optional.empty();
+    private boolean isPresent(String value) {
+        return value != null && !value.isBlank();
     }
 
     public String getGoogleMapsLink(OperationDto operation) {
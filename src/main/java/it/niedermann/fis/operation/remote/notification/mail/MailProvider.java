@@ -1,46 +1,78 @@
 package it.niedermann.fis.operation.remote.notification.mail;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
+import it.niedermann.fis.operation.remote.notification.NotificationProvider;
 import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates.MailPayload;
 import org.apache.commons.validator.routines.EmailValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Optional;
-import java.util.function.Consumer;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
 
 @Service
-public class MailProvider implements Consumer<OperationDto> {
+public class MailProvider implements NotificationProvider {
 
     private final Logger logger = LoggerFactory.getLogger(MailProvider.class);
 
     private final Optional<JavaMailSender> mailSender;
     private final OperationNotificationUtil notificationUtil;
+    private final NotificationTemplates templates;
+    private final SmtpTransportPool transportPool;
     private final String sender;
+    private final Optional<String> senderMail;
+    private final int batchSize;
     private final Optional<String> origin;
     private final Collection<String> recipients;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
 
     public MailProvider(
             NotificationConfiguration config,
             OperationNotificationUtil notificationUtil,
+            NotificationTemplates templates,
             Optional<JavaMailSender> mailSender,
-            Optional<String> origin
+            SmtpTransportPool transportPool,
+            Optional<String> origin,
+            MeterRegistry meterRegistry
     ) {
         this.mailSender = mailSender;
+        this.transportPool = transportPool;
         this.notificationUtil = notificationUtil;
-        this.sender = config.senderName() + Optional
-                .ofNullable(config.senderMail())
+        this.templates = templates;
+        this.senderMail = Optional.ofNullable(config.senderMail()).filter(mail -> !mail.isBlank());
+        this.sender = config.senderName() + senderMail
                 .map(mail -> String.format(" <%s>", mail))
                 .orElse("");
+        this.batchSize = config.mailBatchSize();
         this.origin = origin;
-        this.recipients = filterMailRecipients(config.mail());
+        this.recipients = normalizeRecipients(config.mail());
+        this.sentCounter = Counter.builder("fis.notification.sent")
+                .description("Notifications sent to a single recipient")
+                .tags("channel", "mail", "outcome", "success")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("fis.notification.sent")
+                .description("Notifications sent to a single recipient")
+                .tags("channel", "mail", "outcome", "failure")
+                .register(meterRegistry);
 
         if (mailSender.isPresent()) {
             logger.info("✅ Found SMTP configuration");
@@ -48,58 +80,143 @@ public class MailProvider implements Consumer<OperationDto> {
     }
 
     @Override
-    public void accept(OperationDto operation) {
-        mailSender.ifPresentOrElse(
-                mailSender -> {
-                    if (this.recipients.size() > 0) {
-                        final var messages = this.recipients
-                                .stream()
-                                .map(recipient -> createMessage(recipient, sender, origin, operation))
-                                .toArray(SimpleMailMessage[]::new);
-                        try {
-                            mailSender.send(messages);
-                            logger.info("✉ Successfully sent mail to " + recipients.size() + " notification");
-                        } catch (MailException e) {
-                            logger.error(e.getMessage(), e);
-                        }
-                    }
-                },
-                () -> this.logger.trace("✉️ Skipped sending mails because SMTP has not been configured.")
-        );
+    public Collection<String> getRecipients() {
+        return recipients;
     }
 
-    @SuppressWarnings("SpellCheckingInspection")
-    private SimpleMailMessage createMessage(String recipient, String sender, Optional<String> origin, OperationDto operation) {
+    @Override
+    public Collection<String> send(OperationDto operation, Collection<String> recipients) {
+        if (mailSender.isEmpty()) {
+            this.logger.trace("✉️ Skipped sending mails because SMTP has not been configured.");
+            return Collections.emptyList();
+        }
+        if (recipients.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final var payload = templates.renderMail(operation, origin.isPresent()
+                ? notificationUtil.getGoogleMapsLink(operation, origin.get())
+                : notificationUtil.getGoogleMapsLink(operation));
+        final var batches = partition(List.copyOf(recipients));
+        final var failed = transportPool.isAvailable()
+                ? sendViaPool(payload, batches)
+                : sendViaMailSender(payload, batches);
+        sentCounter.increment(recipients.size() - failed.size());
+        failedCounter.increment(failed.size());
+        if (failed.isEmpty()) {
+            logger.info("✉ Successfully sent mail to " + recipients.size() + " recipients in " + batches.size() + " batches");
+        }
+        return failed;
+    }
+
+    /**
+     * Sends all batches over a single pooled connection, one SMTP transaction per batch
+     *
+     * @return the recipients which did not receive the mail
+     */
+    private Collection<String> sendViaPool(MailPayload payload, List<List<String>> batches) {
+        final var failed = new ArrayList<String>();
+        Transport transport = null;
+        for (final var batch : batches) {
+            try {
+                if (transport == null) {
+                    transport = transportPool.borrow();
+                }
+                final var message = createMimeMessage(payload, batch);
+                transport.sendMessage(message, message.getRecipients(Message.RecipientType.BCC));
+            } catch (SendFailedException e) {
+                // The server rejected some recipients, the transaction has been reset and the connection is still usable
+                logger.error(e.getMessage(), e);
+                final var rejected = Stream.of(e.getInvalidAddresses(), e.getValidUnsentAddresses())
+                        .filter(Objects::nonNull)
+                        .flatMap(Arrays::stream)
+                        .map(address -> ((InternetAddress) address).getAddress())
+                        .toList();
+                failed.addAll(rejected.isEmpty() ? batch : rejected);
+            } catch (MessagingException e) {
+                logger.error(e.getMessage(), e);
+                failed.addAll(batch);
+                if (transport != null) {
+                    transportPool.invalidate(transport);
+                    transport = null;
+                }
+            }
+        }
+        if (transport != null) {
+            transportPool.release(transport);
+        }
+        return failed;
+    }
+
+    /**
+     * Fallback for a {@link JavaMailSender} which does not expose its connection settings
+     *
+     * @return the recipients which did not receive the mail
+     */
+    private Collection<String> sendViaMailSender(MailPayload payload, List<List<String>> batches) {
+        final var messages = batches.stream()
+                .map(batch -> createSimpleMessage(payload, batch))
+                .toArray(SimpleMailMessage[]::new);
+        try {
+            mailSender.get().send(messages);
+            return Collections.emptyList();
+        } catch (MailSendException e) {
+            logger.error(e.getMessage(), e);
+            // Without details, the connection failed before any message could be sent
+            return e.getFailedMessages().isEmpty()
+                    ? batches.stream().flatMap(Collection::stream).toList()
+                    : e.getFailedMessages().keySet().stream()
+                    .filter(SimpleMailMessage.class::isInstance)
+                    .map(message -> ((SimpleMailMessage) message).getBcc())
+                    .filter(Objects::nonNull)
+                    .flatMap(Arrays::stream)
+                    .toList();
+        } catch (MailException e) {
+            logger.error(e.getMessage(), e);
+            return batches.stream().flatMap(Collection::stream).toList();
+        }
+    }
+
+    /**
+     * Recipients are hidden from each other via BCC, the transport does not send the BCC header
+     */
+    private MimeMessage createMimeMessage(MailPayload payload, Collection<String> batch) throws MessagingException {
+        final var message = new MimeMessage(transportPool.getSession());
+        final var helper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
+        helper.setFrom(sender);
+        if (senderMail.isPresent()) {
+            helper.setTo(senderMail.get());
+        }
+        helper.setBcc(batch.toArray(String[]::new));
+        helper.setSubject(payload.subject());
+        helper.setText(payload.text());
+        helper.setSentDate(new Date());
+        message.saveChanges();
+        return message;
+    }
+
+    private SimpleMailMessage createSimpleMessage(MailPayload payload, Collection<String> batch) {
         final var message = new SimpleMailMessage();
         message.setFrom(sender);
-        message.setTo(recipient);
-        message.setSubject(String.format("%s, %s", operation.getKeyword(), String.join(", ", operation.getTags())));
-        message.setText(String.format("Einsatz: %s, %s %s, %s".stripIndent(),
-                operation.getKeyword(),
-                operation.getStreet(),
-                operation.getNumber(),
-                operation.getLocation()
-        ));
-        message.setText(String.format("""
-                            Schlagworte: %s (%s)
-                            Adresse: %s
-                            %s
-                            
-                            Notiz: %s
-                            Alarmiert: %s
-                        """.stripLeading(),
-                operation.getKeyword(),
-                String.join(", ", operation.getTags()),
-                notificationUtil.getHumanReadableLocation(operation),
-                origin.isPresent()
-                        ? notificationUtil.getGoogleMapsLink(operation, origin.get())
-                        : notificationUtil.getGoogleMapsLink(operation),
-                operation.getNote(),
-                String.join(", ", operation.getVehicles())));
+        senderMail.ifPresent(message::setTo);
+        message.setBcc(batch.toArray(String[]::new));
+        message.setSubject(payload.subject());
+        message.setText(payload.text());
         return message;
     }
 
-    private Collection<String> filterMailRecipients(Collection<String> recipients) {
+    private List<List<String>> partition(List<String> recipients) {
+        if (batchSize <= 0 || recipients.size() <= batchSize) {
+            return List.of(recipients);
+        }
+        final var batches = new ArrayList<List<String>>();
+        for (int i = 0; i < recipients.size(); i += batchSize) {
+            batches.add(recipients.subList(i, Math.min(i + batchSize, recipients.size())));
+        }
+        return batches;
+    }
+
+    @Override
+    public Collection<String> normalizeRecipients(Collection<String> recipients) {
         final var validator = EmailValidator.getInstance();
         return recipients == null
                 ? Collections.emptyList()
@@ -0,0 +1,191 @@
+package it.niedermann.fis.operation.remote.notification.mail;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Optional;
+
+/**
+ * Keeps authenticated SMTP connections open between alarms, so that sending a mail does not have to wait for TCP,
+ * TLS and <code>AUTH</code> first. Idle connections are kept alive with <code>NOOP</code>.
+ * <p>
+ * Only available if Spring Boot configured a {@link JavaMailSenderImpl}, because the connection settings are taken
+ * from it.
+ */
+@Component
+public class SmtpTransportPool {
+
+    private final Logger logger = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+    private final Optional<JavaMailSenderImpl> mailSender;
+    private final int maxIdle;
+    /**
+     * Connected transports which are currently not in use, guarded by itself
+     */
+    private final Deque<Transport> idle = new ArrayDeque<>();
+    private final Counter openedCounter;
+
+    public SmtpTransportPool(
+            NotificationConfiguration config,
+            Optional<JavaMailSender> mailSender,
+            MeterRegistry meterRegistry
+    ) {
+        this.maxIdle = config.mailConnections();
+        this.mailSender = mailSender
+                .filter(JavaMailSenderImpl.class::isInstance)
+                .map(JavaMailSenderImpl.class::cast)
+                .filter(sender -> maxIdle > 0);
+        this.openedCounter = Counter.builder("fis.notification.mail.connections.opened")
+                .description("SMTP connections opened, a high rate means they are not reused")
+                .register(meterRegistry);
+        Gauge.builder("fis.notification.mail.connections.idle", idle, connections -> {
+                    synchronized (connections) {
+                        return connections.size();
+                    }
+                })
+                .description("SMTP connections kept open for the next alarm")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return whether {@link #borrow()} can be used, otherwise mails must be sent via the {@link JavaMailSender}
+     */
+    public boolean isAvailable() {
+        return mailSender.isPresent();
+    }
+
+    /**
+     * @return the session the borrowed transports belong to, for creating messages
+     */
+    public Session getSession() {
+        return mailSender.orElseThrow(IllegalStateException::new).getSession();
+    }
+
+    /**
+     * @return an idle transport which is still connected or a newly connected one. Must be handed back via
+     * {@link #release(Transport)} or {@link #invalidate(Transport)}.
+     */
+    public Transport borrow() throws MessagingException {
+        Transport transport;
+        while ((transport = pollIdle()) != null) {
+            // Sends a NOOP, the server might have closed the connection in the meantime
+            if (transport.isConnected()) {
+                logger.trace("✉️ Reusing SMTP connection");
+                return transport;
+            }
+            close(transport);
+        }
+        return connect();
+    }
+
+    /**
+     * Keeps the transport for the next mail, or closes it if enough connections are idle already
+     */
+    public void release(Transport transport) {
+        synchronized (idle) {
+            if (idle.size() < maxIdle) {
+                idle.addFirst(transport);
+                return;
+            }
+        }
+        close(transport);
+    }
+
+    /**
+     * Closes a transport which failed, so that it is not reused
+     */
+    public void invalidate(Transport transport) {
+        close(transport);
+    }
+
+    /**
+     * Keeps idle connections open and establishes one if none is left, so that the next alarm does not have to
+     * connect first.
+     */
+    @Scheduled(fixedDelayString = "${fis.notification.mailKeepAliveInterval}")
+    public void keepAlive() {
+        if (!isAvailable()) {
+            return;
+        }
+        final var transports = new ArrayList<Transport>();
+        Transport transport;
+        while ((transport = pollIdle()) != null) {
+            transports.add(transport);
+        }
+        for (final var candidate : transports) {
+            if (candidate.isConnected()) {
+                release(candidate);
+            } else {
+                logger.debug("✉️ SMTP server closed idle connection");
+                close(candidate);
+            }
+        }
+        synchronized (idle) {
+            if (!idle.isEmpty()) {
+                return;
+            }
+        }
+        try {
+            release(connect());
+        } catch (MessagingException e) {
+            logger.debug("Could not warm up SMTP connection: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        Transport transport;
+        while ((transport = pollIdle()) != null) {
+            close(transport);
+        }
+    }
+
+    private Transport pollIdle() {
+        synchronized (idle) {
+            return idle.pollFirst();
+        }
+    }
+
+    /**
+     * Connects like {@link JavaMailSenderImpl} does, but keeps the connection open after sending
+     */
+    private Transport connect() throws MessagingException {
+        final var sender = mailSender.orElseThrow(IllegalStateException::new);
+        var username = sender.getUsername();
+        var password = sender.getPassword();
+        if ("".equals(username)) {
+            username = null;
+            if ("".equals(password)) {
+                password = null;
+            }
+        }
+        final var transport = sender.getSession().getTransport(sender.getProtocol() == null ? "smtp" : sender.getProtocol());
+        transport.connect(sender.getHost(), sender.getPort(), username, password);
+        openedCounter.increment();
+        logger.debug("✉️ Opened SMTP connection to " + sender.getHost());
+        return transport;
+    }
+
+    private void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            logger.trace("Could not close SMTP connection: " + e.getMessage());
+        }
+    }
+}
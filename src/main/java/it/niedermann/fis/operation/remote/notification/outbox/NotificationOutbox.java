@@ -0,0 +1,374 @@
+package it.niedermann.fis.operation.remote.notification.outbox;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.niedermann.fis.main.model.OperationDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Keeps every notification until it has been sent successfully, so that failed ones can be tried again with an
+ * exponential backoff, also after a restart.
+ * <p>
+ * Each change is appended to a log on disk as one JSON line before it becomes visible, so the cost of a change does not
+ * grow with the number of pending entries. Once the log contains considerably more changes than the current state, it
+ * is compacted into the current state, replacing the previous file atomically. A notification which has been sent but
+ * not yet marked as completed when the application stops is sent again.
+ */
+@Service
+@EnableConfigurationProperties(OutboxConfiguration.class)
+public class NotificationOutbox {
+
+    private final Logger logger = LoggerFactory.getLogger(NotificationOutbox.class);
+
+    /**
+     * Changes which are appended at least before the log is compacted, in addition to the size of the state
+     */
+    static final int COMPACTION_THRESHOLD = 1_000;
+
+    private final OutboxConfiguration config;
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    /**
+     * Writes each change as a single line
+     */
+    private final ObjectWriter changeWriter;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    /**
+     * Guarded by <code>this</code>, just like the other collections
+     */
+    private final Map<String, OutboxEntry> pending = new LinkedHashMap<>();
+    /**
+     * Time of completion by {@link OutboxEntry#key()}, kept for the deduplication window
+     */
+    private final Map<String, Instant> completed = new HashMap<>();
+    /**
+     * Keys of pending entries which are currently being sent
+     */
+    private final Set<String> inFlight = new HashSet<>();
+    /**
+     * Changes which have not been written yet
+     */
+    private final List<OutboxChange> changes = new ArrayList<>();
+    private FileChannel log;
+    private long changesSinceCompaction = 0;
+
+    @Autowired
+    public NotificationOutbox(OutboxConfiguration config, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this(config, objectMapper, meterRegistry, Clock.systemUTC());
+    }
+
+    NotificationOutbox(OutboxConfiguration config, ObjectMapper objectMapper, MeterRegistry meterRegistry, Clock clock) {
+        this.config = config;
+        this.path = config.path() == null || config.path().isBlank() ? null : Path.of(config.path());
+        this.objectMapper = objectMapper;
+        this.changeWriter = objectMapper.writerFor(OutboxChange.class).without(SerializationFeature.INDENT_OUTPUT);
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        if (path == null) {
+            logger.info("❌ Failed notifications will not be retried after a restart because no outbox path has been specified");
+        } else {
+            load();
+        }
+        Gauge.builder("fis.notification.outbox.depth", this, NotificationOutbox::size)
+                .description("Notifications which have not been sent successfully yet")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds a notification for each recipient, unless it is already pending or has recently been completed.
+     *
+     * @return the added entries, already marked as being sent by the caller
+     */
+    public synchronized List<OutboxEntry> add(String channel, OperationDto operation, Collection<String> recipients) {
+        final var operationKey = getOperationKey(operation);
+        final var now = clock.instant();
+        pruneCompleted(now);
+        final var added = new ArrayList<OutboxEntry>(recipients.size());
+        for (final var recipient : recipients) {
+            final var entry = new OutboxEntry(operationKey, channel, recipient, operation, 0, now);
+            if (pending.containsKey(entry.key()) || completed.containsKey(entry.key())) {
+                logger.debug("Skipped duplicate " + channel + " notification of \"" + operation.getKeyword() + "\"");
+                continue;
+            }
+            pending.put(entry.key(), entry);
+            changes.add(OutboxChange.put(entry));
+            inFlight.add(entry.key());
+            added.add(entry);
+        }
+        if (!added.isEmpty()) {
+            persist();
+        }
+        return added;
+    }
+
+    /**
+     * @return all entries whose backoff has elapsed, marked as being sent by the caller
+     */
+    public synchronized List<OutboxEntry> takeDue() {
+        final var now = clock.instant();
+        final var due = pending.values().stream()
+                .filter(entry -> !inFlight.contains(entry.key()))
+                .filter(entry -> !entry.nextAttempt().isAfter(now))
+                .toList();
+        due.forEach(entry -> inFlight.add(entry.key()));
+        return due;
+    }
+
+    public synchronized void complete(Collection<OutboxEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        final var now = clock.instant();
+        for (final var entry : entries) {
+            inFlight.remove(entry.key());
+            if (pending.remove(entry.key()) != null) {
+                if (config.deduplicationWindow() > 0) {
+                    completed.put(entry.key(), now);
+                    changes.add(OutboxChange.remove(entry.key(), now));
+                } else {
+                    changes.add(OutboxChange.remove(entry.key(), null));
+                }
+            }
+        }
+        persist();
+    }
+
+    /**
+     * Schedules the next attempt of the given entries, or gives up on them after the maximum count of attempts.
+     */
+    public synchronized void fail(Collection<OutboxEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        final var now = clock.instant();
+        for (final var failed : entries) {
+            inFlight.remove(failed.key());
+            // The given entry might be outdated, e.g. if it had been taken before a restart
+            final var entry = pending.get(failed.key());
+            if (entry == null) {
+                continue;
+            }
+            final var attempts = entry.attempts() + 1;
+            if (attempts >= config.maxAttempts()) {
+                pending.remove(entry.key());
+                changes.add(OutboxChange.remove(entry.key(), null));
+                logger.error("Giving up " + entry.channel() + " notification of \"" + entry.operation().getKeyword() + "\" to " + entry.recipient() + " after " + attempts + " attempts");
+                Counter.builder("fis.notification.outbox.dropped")
+                        .description("Notifications which could not be sent within the maximum count of attempts")
+                        .tag("channel", entry.channel())
+                        .register(meterRegistry)
+                        .increment();
+            } else {
+                final var backoff = getBackoff(attempts);
+                final var retry = new OutboxEntry(entry.operationKey(), entry.channel(), entry.recipient(), entry.operation(), attempts, now.plusMillis(backoff));
+                pending.put(entry.key(), retry);
+                changes.add(OutboxChange.put(retry));
+                logger.warn("Retrying " + entry.channel() + " notification to " + entry.recipient() + " in " + backoff + "ms (attempt " + (attempts + 1) + ")");
+                Counter.builder("fis.notification.outbox.retries")
+                        .description("Failed attempts to send a notification which will be tried again")
+                        .tag("channel", entry.channel())
+                        .register(meterRegistry)
+                        .increment();
+            }
+        }
+        persist();
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            logger.warn("Could not close " + path, e);
+        }
+        log = null;
+    }
+
+    /**
+     * Doubles with each attempt up to the maximum. Half of it is random, so that notifications which failed at the
+     * same time do not hit the provider again all at once.
+     *
+     * @param attempts failed attempts so far, at least <code>1</code>
+     * @return milliseconds until the next attempt
+     */
+    long getBackoff(int attempts) {
+        final var exponential = config.initialBackoff() << Math.min(attempts - 1, 30);
+        final var capped = exponential <= 0 ? config.maxBackoff() : Math.min(config.maxBackoff(), exponential);
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped - capped / 2 + 1);
+    }
+
+    /**
+     * Identifies an operation by its content, so that the same operation parsed again, e.g. after a restart, is
+     * recognized as duplicate.
+     */
+    private String getOperationKey(OperationDto operation) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(operation));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            logger.warn("Could not create key for operation, falling back to its hash code", e);
+            return Integer.toHexString(operation.hashCode());
+        }
+    }
+
+    /**
+     * Replays the log and compacts it, which also cuts off a line which has only partially been written
+     */
+    private synchronized void load() {
+        if (Files.exists(path)) {
+            try {
+                // Decoded leniently, because the last line might have been cut off within a character
+                for (final var line : new String(Files.readAllBytes(path), StandardCharsets.UTF_8).split("\n")) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        apply(objectMapper.readValue(line, OutboxChange.class));
+                    } catch (JsonProcessingException e) {
+                        logger.warn("Skipping invalid line of " + path + ": " + e.getOriginalMessage());
+                    }
+                }
+                pruneCompleted(clock.instant());
+                if (!pending.isEmpty()) {
+                    logger.info("📬 Restored " + pending.size() + " pending notifications from " + path);
+                }
+            } catch (IOException e) {
+                logger.error("Could not restore pending notifications from " + path, e);
+            }
+        }
+        compact();
+    }
+
+    private void apply(OutboxChange change) {
+        if (change.put() != null) {
+            pending.put(change.put().key(), change.put());
+        } else if (change.remove() != null) {
+            pending.remove(change.remove());
+            if (change.completed() != null) {
+                completed.put(change.remove(), change.completed());
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock
+     */
+    private void persist() {
+        pruneCompleted(clock.instant());
+        if (path == null || changes.isEmpty()) {
+            changes.clear();
+            return;
+        }
+        if (log == null || changesSinceCompaction + changes.size() > COMPACTION_THRESHOLD + pending.size() + completed.size()) {
+            compact();
+            return;
+        }
+        try {
+            log.write(ByteBuffer.wrap(serialize(changes)));
+            log.force(false);
+            changesSinceCompaction += changes.size();
+        } catch (IOException e) {
+            // Sending is more important than being able to retry
+            logger.error("Could not write pending notifications to " + path, e);
+            close();
+        } finally {
+            changes.clear();
+        }
+    }
+
+    /**
+     * Replaces the log by the current state. Must be called while holding the lock
+     */
+    private void compact() {
+        changes.clear();
+        close();
+        try {
+            final var directory = path.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            final var state = new ArrayList<OutboxChange>(pending.size() + completed.size());
+            completed.forEach((key, time) -> state.add(OutboxChange.remove(key, time)));
+            pending.values().forEach(entry -> state.add(OutboxChange.put(entry)));
+            final var temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (final var channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(serialize(state)));
+                channel.force(true);
+            }
+            Files.move(temp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+            log = FileChannel.open(path, WRITE, APPEND);
+            changesSinceCompaction = 0;
+        } catch (IOException e) {
+            // Sending is more important than being able to retry, the next change tries again
+            logger.error("Could not write pending notifications to " + path, e);
+        }
+    }
+
+    private byte[] serialize(List<OutboxChange> changes) throws JsonProcessingException {
+        final var bytes = new ByteArrayOutputStream(256 * changes.size());
+        for (final var change : changes) {
+            bytes.writeBytes(changeWriter.writeValueAsBytes(change));
+            bytes.write('\n');
+        }
+        return bytes.toByteArray();
+    }
+
+    private void pruneCompleted(Instant now) {
+        final var expired = now.minusMillis(config.deduplicationWindow());
+        completed.values().removeIf(time -> time.isBefore(expired));
+    }
+
+    /**
+     * A single line of the log, either adds or replaces a pending entry or removes it, remembering when it has been
+     * completed for the deduplication window
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record OutboxChange(OutboxEntry put, String remove, Instant completed) {
+
+        static OutboxChange put(OutboxEntry entry) {
+            return new OutboxChange(entry, null, null);
+        }
+
+        static OutboxChange remove(String key, Instant completed) {
+            return new OutboxChange(null, key, completed);
+        }
+    }
+}
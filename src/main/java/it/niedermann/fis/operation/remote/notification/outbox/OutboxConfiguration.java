@@ -0,0 +1,18 @@
+package it.niedermann.fis.operation.remote.notification.outbox;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.outbox")
+@Validated
+public record OutboxConfiguration(
+                String path,
+                @Min(1) long initialBackoff,
+                @Min(1) long maxBackoff,
+                @Min(1) int maxAttempts,
+                @Min(100) long drainInterval,
+                @Min(0) long deduplicationWindow) {
+}
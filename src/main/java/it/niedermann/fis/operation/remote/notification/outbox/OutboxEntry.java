@@ -0,0 +1,29 @@
+package it.niedermann.fis.operation.remote.notification.outbox;
+
+import it.niedermann.fis.main.model.OperationDto;
+
+import java.time.Instant;
+
+/**
+ * A notification of a single recipient which has not been sent successfully yet.
+ *
+ * @param operationKey identifies the operation independent of the instance, see {@link NotificationOutbox}
+ * @param attempts     failed attempts so far
+ * @param nextAttempt  not to be sent before this time
+ */
+public record OutboxEntry(
+        String operationKey,
+        String channel,
+        String recipient,
+        OperationDto operation,
+        int attempts,
+        Instant nextAttempt
+) {
+
+    /**
+     * @return identifies the notification for deduplication
+     */
+    public String key() {
+        return operationKey + "/" + channel + "/" + recipient;
+    }
+}
@@ -0,0 +1,300 @@
+package it.niedermann.fis.operation.remote.notification.quota;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Limits the notifications of costly channels per recipient and per channel within a sliding window, using a
+ * {@link TokenBucket} for each of them. Currently only SMS are limited.
+ * <p>
+ * The buckets are persisted, so that a restart does not reset the spending cap.
+ */
+@Component
+@EnableConfigurationProperties(QuotaConfiguration.class)
+public class NotificationQuota {
+
+    private final Logger logger = LoggerFactory.getLogger(NotificationQuota.class);
+
+    private static final TypeReference<Map<String, PersistedQuota>> PERSISTED_TYPE = new TypeReference<>() {
+    };
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final ExecutorService executor;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final Map<String, ChannelQuota> quotas;
+
+    @Autowired
+    public NotificationQuota(
+            QuotaConfiguration config,
+            NotificationConfiguration notificationConfig,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry
+    ) {
+        this(config, notificationConfig, objectMapper, meterRegistry, Clock.systemUTC(), Executors.newSingleThreadExecutor(runnable -> {
+            final var thread = new Thread(runnable, "quota-1");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    NotificationQuota(
+            QuotaConfiguration config,
+            NotificationConfiguration notificationConfig,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            Clock clock,
+            ExecutorService executor
+    ) {
+        this.path = config.path() == null || config.path().isBlank() ? null : Path.of(config.path());
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.executor = executor;
+        if (notificationConfig.smsLimit() <= 0) {
+            this.logger.warn("Consider defining a limit for SMS notifications to avoid high costs by spammers.");
+        }
+        final var persisted = load();
+        this.quotas = Map.of("sms", new ChannelQuota("sms",
+                notificationConfig.smsLimit(),
+                config.smsChannelLimit(),
+                config.window(),
+                persisted.get("sms"),
+                meterRegistry));
+    }
+
+    /**
+     * Takes one token of each recipient and of the channel.
+     *
+     * @return the recipients which may be notified, all of them if the channel is not limited
+     */
+    public Collection<String> acquire(String channel, Collection<String> recipients) {
+        final var quota = quotas.get(channel);
+        if (quota == null || recipients.isEmpty()) {
+            return recipients;
+        }
+        final var permitted = quota.acquire(recipients, clock.millis());
+        save();
+        return permitted;
+    }
+
+    /**
+     * Gives back the tokens of recipients which have been acquired but will not be notified
+     */
+    public void release(String channel, Collection<String> recipients) {
+        final var quota = quotas.get(channel);
+        if (quota == null || recipients.isEmpty()) {
+            return;
+        }
+        quota.release(recipients, clock.millis());
+        save();
+    }
+
+    /**
+     * Refills all buckets completely
+     */
+    public void reset() {
+        final var now = clock.millis();
+        quotas.values().forEach(quota -> quota.reset(now));
+        save();
+    }
+
+    private Map<String, PersistedQuota> load() {
+        if (path == null || !Files.exists(path)) {
+            return Collections.emptyMap();
+        }
+        try {
+            return objectMapper.readValue(path.toFile(), PERSISTED_TYPE);
+        } catch (IOException e) {
+            logger.error("Could not restore notification quota from " + path, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Writes asynchronously, coalescing changes which happen while a write is pending
+     */
+    private void save() {
+        if (path == null || !dirty.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the pending change is written by close()
+            logger.warn("Could not save notification quota during shutdown");
+        }
+    }
+
+    private void flush() {
+        dirty.set(false);
+        try {
+            write(quotas.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getState())));
+        } catch (IOException e) {
+            logger.error("Could not save notification quota to " + path, e);
+        }
+    }
+
+    /**
+     * Waits for the pending write and saves changes which happened meanwhile, so that a restart does not lose used quota
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Notification quota has not been saved within 10 seconds");
+            return;
+        }
+        if (path != null && dirty.get()) {
+            flush();
+        }
+    }
+
+    private void write(Map<String, PersistedQuota> state) throws IOException {
+        final var directory = path.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        final var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, objectMapper.writeValueAsBytes(state));
+        try (final var channel = FileChannel.open(temp, WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    record PersistedQuota(TokenBucket.State channel, Map<String, TokenBucket.State> recipients) {
+    }
+
+    private class ChannelQuota {
+
+        private final String name;
+        private final int recipientLimit;
+        private final long window;
+        /**
+         * <code>null</code> if only the recipients are limited
+         */
+        private final TokenBucket channelBucket;
+        private final Map<String, TokenBucket> recipientBuckets = new ConcurrentHashMap<>();
+        private final Counter skippedCounter;
+
+        private ChannelQuota(String name, int recipientLimit, int channelLimit, long window, PersistedQuota persisted, MeterRegistry meterRegistry) {
+            final var now = clock.millis();
+            this.name = name;
+            this.recipientLimit = Math.max(0, recipientLimit);
+            this.window = window;
+            this.channelBucket = channelLimit > 0
+                    ? new TokenBucket(channelLimit, window, persisted == null ? null : persisted.channel(), now)
+                    : null;
+            if (persisted != null && persisted.recipients() != null) {
+                persisted.recipients().forEach((recipient, state) -> recipientBuckets.put(recipient, new TokenBucket(this.recipientLimit, window, state, now)));
+            }
+            this.skippedCounter = Counter.builder("fis.notification." + name + ".skipped")
+                    .description("Notifications which have been skipped because the quota has been exceeded")
+                    .register(meterRegistry);
+            Gauge.builder("fis.notification." + name + ".quota.limit", this, quota -> quota.recipientLimit)
+                    .description("Maximum notifications per recipient within the quota window")
+                    .register(meterRegistry);
+            Gauge.builder("fis.notification." + name + ".quota.used", this, quota -> quota.recipientLimit - Math.floor(quota.getLowestRecipientTokens()))
+                    .description("Notifications sent within the quota window to the recipient who got the most")
+                    .register(meterRegistry);
+            Gauge.builder("fis.notification." + name + ".quota.remaining", this, ChannelQuota::getLowestRecipientTokens)
+                    .description("Remaining notifications within the quota window")
+                    .tag("scope", "recipient")
+                    .register(meterRegistry);
+            if (channelBucket != null) {
+                Gauge.builder("fis.notification." + name + ".quota.remaining", channelBucket, bucket -> bucket.getTokens(clock.millis()))
+                        .description("Remaining notifications within the quota window")
+                        .tag("scope", "channel")
+                        .register(meterRegistry);
+            }
+        }
+
+        private Collection<String> acquire(Collection<String> recipients, long now) {
+            final var permitted = new ArrayList<String>(recipients.size());
+            for (final var recipient : recipients) {
+                final var recipientBucket = getRecipientBucket(recipient, now);
+                if (!recipientBucket.tryTake(now)) {
+                    continue;
+                }
+                if (channelBucket != null && !channelBucket.tryTake(now)) {
+                    recipientBucket.give(now);
+                    continue;
+                }
+                permitted.add(recipient);
+            }
+            final var skipped = recipients.size() - permitted.size();
+            if (skipped > 0) {
+                logger.warn("Skipped sending " + name + " notification to " + skipped + " recipients because the quota is exceeded");
+                skippedCounter.increment(skipped);
+            }
+            return permitted;
+        }
+
+        private void release(Collection<String> recipients, long now) {
+            for (final var recipient : recipients) {
+                getRecipientBucket(recipient, now).give(now);
+                if (channelBucket != null) {
+                    channelBucket.give(now);
+                }
+            }
+        }
+
+        private void reset(long now) {
+            logger.info("Resetting " + name + " quota");
+            recipientBuckets.values().forEach(bucket -> bucket.reset(now));
+            if (channelBucket != null) {
+                channelBucket.reset(now);
+            }
+        }
+
+        private TokenBucket getRecipientBucket(String recipient, long now) {
+            return recipientBuckets.computeIfAbsent(recipient, key -> new TokenBucket(recipientLimit, window, null, now));
+        }
+
+        /**
+         * @return the full limit if no recipient has been notified yet
+         */
+        private double getLowestRecipientTokens() {
+            final var now = clock.millis();
+            return recipientBuckets.values().stream()
+                    .mapToDouble(bucket -> bucket.getTokens(now))
+                    .min()
+                    .orElse(recipientLimit);
+        }
+
+        private PersistedQuota getState() {
+            return new PersistedQuota(
+                    channelBucket == null ? null : channelBucket.getState(),
+                    recipientBuckets.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getState())));
+        }
+    }
+}
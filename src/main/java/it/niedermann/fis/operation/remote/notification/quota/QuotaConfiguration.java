@@ -0,0 +1,15 @@
+package it.niedermann.fis.operation.remote.notification.quota;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.quota")
+@Validated
+public record QuotaConfiguration(
+                String path,
+                @Min(60_000) long window,
+                @Min(0) int smsChannelLimit) {
+}
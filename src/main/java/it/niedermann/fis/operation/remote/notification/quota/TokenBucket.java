@@ -0,0 +1,70 @@
+package it.niedermann.fis.operation.remote.notification.quota;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free token bucket which refills continuously, so that at most its capacity can be taken within one window.
+ */
+class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerMillisecond;
+    private final AtomicReference<State> state;
+
+    /**
+     * @param window  milliseconds to refill from empty to full, <code>0</code> to never refill
+     * @param initial state restored from a previous run, full if <code>null</code>
+     */
+    TokenBucket(double capacity, long window, State initial, long now) {
+        this.capacity = capacity;
+        this.refillPerMillisecond = window > 0 ? capacity / window : 0;
+        this.state = new AtomicReference<>(initial == null ? new State(capacity, now) : initial);
+    }
+
+    boolean tryTake(long now) {
+        while (true) {
+            final var current = state.get();
+            final var tokens = getTokens(current, now);
+            if (tokens < 1) {
+                return false;
+            }
+            if (state.compareAndSet(current, new State(tokens - 1, Math.max(now, current.time())))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a token which has been taken but not used
+     */
+    void give(long now) {
+        state.updateAndGet(current -> new State(Math.min(capacity, getTokens(current, now) + 1), Math.max(now, current.time())));
+    }
+
+    void reset(long now) {
+        state.set(new State(capacity, now));
+    }
+
+    double getTokens(long now) {
+        return getTokens(state.get(), now);
+    }
+
+    double getCapacity() {
+        return capacity;
+    }
+
+    State getState() {
+        return state.get();
+    }
+
+    private double getTokens(State state, long now) {
+        // The capacity might have been lowered since the state has been persisted
+        return Math.min(capacity, state.tokens() + Math.max(0, now - state.time()) * refillPerMillisecond);
+    }
+
+    /**
+     * @param time epoch milliseconds at which the bucket contained the given tokens
+     */
+    record State(double tokens, long time) {
+    }
+}
@@ -0,0 +1,227 @@
+package it.niedermann.fis.operation.remote.notification.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.operation.remote.notification.routing.RoutingConfiguration.RecipientGroup;
+import it.niedermann.fis.operation.remote.notification.routing.RoutingConfiguration.RoutingRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which channels and recipient groups are notified about an operation, so that e.g. a test alarm does not
+ * use up the SMS quota. Rules are compiled once at startup and evaluated in order, the first matching rule wins.
+ * Operations matching no rule are sent to all recipients of all channels.
+ */
+@Component
+@EnableConfigurationProperties(RoutingConfiguration.class)
+public class NotificationRouter {
+
+    /**
+     * Known channels, see <code>OperationNotificationRepositoryImpl</code>
+     */
+    static final Set<String> CHANNELS = Set.of("mail", "sms");
+    private static final Pattern CATEGORY = Pattern.compile("^\\p{L}+");
+
+    private final Logger logger = LoggerFactory.getLogger(NotificationRouter.class);
+
+    private final Clock clock;
+    private final Map<String, RecipientGroup> groups;
+    private final List<CompiledRule> rules;
+    private final Counter defaultCounter;
+
+    @Autowired
+    public NotificationRouter(RoutingConfiguration config, MeterRegistry meterRegistry) {
+        this(config, meterRegistry, Clock.systemDefaultZone());
+    }
+
+    NotificationRouter(RoutingConfiguration config, MeterRegistry meterRegistry, Clock clock) {
+        this.clock = clock;
+        this.groups = config.groups() == null ? Collections.emptyMap() : Map.copyOf(config.groups());
+        final var configuredRules = config.rules() == null ? Collections.<RoutingRule>emptyList() : config.rules();
+        final var compiledRules = new ArrayList<CompiledRule>(configuredRules.size());
+        for (int i = 0; i < configuredRules.size(); i++) {
+            compiledRules.add(compile(configuredRules.get(i), i, meterRegistry));
+        }
+        this.rules = List.copyOf(compiledRules);
+        this.defaultCounter = createCounter(Route.DEFAULT.rule(), meterRegistry);
+        if (!rules.isEmpty()) {
+            logger.info("🔀 Compiled " + rules.size() + " notification routing rules");
+        }
+    }
+
+    public Route route(OperationDto operation) {
+        final var subject = new Subject(operation, LocalTime.now(clock));
+        for (final var rule : rules) {
+            if (rule.matches(subject)) {
+                rule.counter().increment();
+                logger.debug("🔀 Routing \"" + operation.getKeyword() + "\" via rule \"" + rule.route().rule() + "\"");
+                return rule.route();
+            }
+        }
+        defaultCounter.increment();
+        return Route.DEFAULT;
+    }
+
+    public Set<String> getGroups() {
+        return groups.keySet();
+    }
+
+    /**
+     * @return the members of the group as configured, not yet validated for the channel
+     */
+    public Collection<String> getMembers(String group, String channel) {
+        final var recipientGroup = groups.get(group);
+        if (recipientGroup == null) {
+            return Collections.emptyList();
+        }
+        final var members = switch (channel) {
+            case "mail" -> recipientGroup.mail();
+            case "sms" -> recipientGroup.sms();
+            default -> null;
+        };
+        return members == null ? Collections.emptyList() : members;
+    }
+
+    private CompiledRule compile(RoutingRule rule, int index, MeterRegistry meterRegistry) {
+        final var name = rule.name() == null || rule.name().isBlank() ? "rule-" + (index + 1) : rule.name();
+        final var ruleGroups = toSet(rule.groups(), false);
+        ruleGroups.stream()
+                .filter(group -> !groups.containsKey(group))
+                .findAny()
+                .ifPresent(group -> {
+                    throw new IllegalArgumentException("Routing rule \"" + name + "\" references unknown group \"" + group + "\"");
+                });
+        final var ruleChannels = toSet(rule.channels(), true);
+        ruleChannels.stream()
+                .filter(channel -> !CHANNELS.contains(channel))
+                .findAny()
+                .ifPresent(channel -> {
+                    throw new IllegalArgumentException("Routing rule \"" + name + "\" references unknown channel \"" + channel + "\"");
+                });
+        return new CompiledRule(
+                toSet(rule.categories(), false).stream().map(category -> category.toUpperCase(Locale.ROOT)).toList(),
+                rule.keyword() == null || rule.keyword().isBlank()
+                        ? null
+                        : Pattern.compile(rule.keyword(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
+                toSet(rule.tags(), true).stream().toList(),
+                toSet(rule.vehicles(), true).stream().toList(),
+                parseTime(name, rule.from()),
+                parseTime(name, rule.to()),
+                new Route(name, ruleChannels, ruleGroups),
+                createCounter(name, meterRegistry));
+    }
+
+    private static Set<String> toSet(Collection<String> values, boolean lowerCase) {
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        final var result = new LinkedHashSet<String>();
+        for (final var value : values) {
+            if (value != null && !value.isBlank()) {
+                result.add(lowerCase ? value.trim().toLowerCase(Locale.ROOT) : value.trim());
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private static LocalTime parseTime(String rule, String time) {
+        if (time == null || time.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalTime.parse(time.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Routing rule \"" + rule + "\" has invalid time \"" + time + "\", expected HH:mm", e);
+        }
+    }
+
+    private static Counter createCounter(String rule, MeterRegistry meterRegistry) {
+        return Counter.builder("fis.notification.routed")
+                .description("Operations routed by a rule")
+                .tag("rule", rule)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The properties of an operation rules are matched against, normalized once for all rules
+     */
+    private record Subject(String category, String keyword, List<String> tags, List<String> vehicles, LocalTime time) {
+
+        private Subject(OperationDto operation, LocalTime time) {
+            this(getCategory(operation.getKeyword()),
+                    operation.getKeyword() == null ? "" : operation.getKeyword(),
+                    toLowerCase(operation.getTags()),
+                    toLowerCase(operation.getVehicles()),
+                    time);
+        }
+
+        private static String getCategory(String keyword) {
+            if (keyword == null) {
+                return "";
+            }
+            final var matcher = CATEGORY.matcher(keyword.trim());
+            return matcher.find() ? matcher.group().toUpperCase(Locale.ROOT) : "";
+        }
+
+        private static List<String> toLowerCase(List<String> values) {
+            return values == null
+                    ? Collections.emptyList()
+                    : values.stream().filter(Objects::nonNull).map(value -> value.toLowerCase(Locale.ROOT)).toList();
+        }
+    }
+
+    private record CompiledRule(
+            List<String> categories,
+            Pattern keyword,
+            List<String> tags,
+            List<String> vehicles,
+            LocalTime from,
+            LocalTime to,
+            Route route,
+            Counter counter) {
+
+        private boolean matches(Subject subject) {
+            return (categories.isEmpty() || categories.contains(subject.category()))
+                    && (keyword == null || keyword.matcher(subject.keyword()).find())
+                    && (tags.isEmpty() || containsAny(subject.tags(), tags))
+                    && (vehicles.isEmpty() || containsAny(subject.vehicles(), vehicles))
+                    && isWithin(subject.time());
+        }
+
+        private static boolean containsAny(List<String> values, List<String> searched) {
+            for (final var value : values) {
+                for (final var term : searched) {
+                    if (value.contains(term)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean isWithin(LocalTime time) {
+            if (from == null && to == null) {
+                return true;
+            } else if (from == null) {
+                return time.isBefore(to);
+            } else if (to == null) {
+                return !time.isBefore(from);
+            } else if (from.isBefore(to)) {
+                return !time.isBefore(from) && time.isBefore(to);
+            } else {
+                // Spans midnight, e.g. from 22:00 to 06:00
+                return !time.isBefore(from) || time.isBefore(to);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package it.niedermann.fis.operation.remote.notification.routing;
+
+import java.util.Set;
+
+/**
+ * @param rule     the name of the matching rule, used for logs and metrics
+ * @param channels which should be notified, all channels if empty
+ * @param groups   which should be notified, all recipients of the channels if empty
+ */
+public record Route(String rule, Set<String> channels, Set<String> groups) {
+
+    /**
+     * For operations which match no rule, so that an unexpected keyword never goes unnoticed
+     */
+    public static final Route DEFAULT = new Route("default", Set.of(), Set.of());
+
+    public boolean includes(String channel) {
+        return channels.isEmpty() || channels.contains(channel);
+    }
+}
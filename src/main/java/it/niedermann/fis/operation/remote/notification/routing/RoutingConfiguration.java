@@ -0,0 +1,47 @@
+package it.niedermann.fis.operation.remote.notification.routing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Email;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.routing")
+@Validated
+public record RoutingConfiguration(
+                Map<String, @Valid RecipientGroup> groups,
+                List<@Valid RoutingRule> rules) {
+
+    public record RecipientGroup(
+                    Collection<@Email String> mail,
+                    Collection<String> sms) {
+    }
+
+    /**
+     * Criteria which are not set match every operation
+     *
+     * @param categories leading letters of the keyword, like <code>B</code> for <code>B 3 PERSON</code>
+     * @param keyword    regular expression searched in the keyword, ignoring case
+     * @param tags       at least one of them must be contained in a tag of the operation, ignoring case
+     * @param vehicles   at least one of them must be contained in a vehicle of the operation, ignoring case
+     * @param from       local time as <code>HH:mm</code>, may be after <code>to</code> for a period spanning midnight
+     * @param to         local time as <code>HH:mm</code>, exclusive
+     * @param groups     which receive matching operations, all recipients of the channels if not set
+     * @param channels   which are notified about matching operations, all channels if not set
+     */
+    public record RoutingRule(
+                    String name,
+                    Collection<String> categories,
+                    String keyword,
+                    Collection<String> tags,
+                    Collection<String> vehicles,
+                    String from,
+                    String to,
+                    Collection<String> groups,
+                    Collection<String> channels) {
+    }
+}
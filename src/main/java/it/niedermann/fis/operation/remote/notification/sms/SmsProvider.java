@@ -1,47 +1,75 @@
 package it.niedermann.fis.operation.remote.notification.sms;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
+import it.niedermann.fis.operation.remote.notification.NotificationProvider;
 import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Optional;
-import java.util.function.Consumer;
 
 @Service
-public abstract class SmsProvider implements Consumer<OperationDto> {
+public abstract class SmsProvider implements NotificationProvider {
 
     protected final Optional<String> apiKey;
     protected final Collection<String> recipients;
     protected final String senderName;
     protected final OperationNotificationUtil notificationUtil;
+    protected final NotificationTemplates templates;
     protected final boolean priority;
+    /**
+     * Count of successfully sent SMS, one per recipient
+     */
+    protected final Counter sentCounter;
+    /**
+     * Count of SMS which could not be sent, one per recipient
+     */
+    protected final Counter failedCounter;
 
     public SmsProvider(
             NotificationConfiguration config,
-            OperationNotificationUtil notificationUtil) {
+            OperationNotificationUtil notificationUtil,
+            NotificationTemplates templates,
+            MeterRegistry meterRegistry) {
         this.notificationUtil = notificationUtil;
+        this.templates = templates;
         this.apiKey = Optional.ofNullable(config.smsApiKey());
         this.senderName = config.senderName();
-        this.recipients = filterPhoneRecipients(config.sms());
+        this.recipients = normalizeRecipients(config.sms());
         this.priority = config.smsPriority();
+        this.sentCounter = Counter.builder("fis.notification.sent")
+                .description("Notifications sent to a single recipient")
+                .tags("channel", "sms", "outcome", "success")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("fis.notification.sent")
+                .description("Notifications sent to a single recipient")
+                .tags("channel", "sms", "outcome", "failure")
+                .register(meterRegistry);
     }
 
+    @Override
+    public Collection<String> getRecipients() {
+        return recipients;
+    }
+
+    /**
+     * @return the message for all recipients of the given operation
+     */
     protected String getMessage(OperationDto operation) {
-        final var address = notificationUtil.getHumanReadableLocation(operation);
-        return address.isPresent()
-                ? String.format("Einsatz: %s, %s",
-                        operation.getKeyword(),
-                        String.join(", ", operation.getTags()))
-                : String.format("Einsatz: %s, Karte: %s, Adresse: %s",
-                        operation.getKeyword(),
-                        notificationUtil.getGoogleMapsLink(operation),
-                        address);
+        return templates.renderSms(operation, getMapLink(operation));
+    }
+
+    protected String getMapLink(OperationDto operation) {
+        return notificationUtil.getGoogleMapsLink(operation);
     }
 
-    private Collection<String> filterPhoneRecipients(Collection<String> recipients) {
+    @Override
+    public Collection<String> normalizeRecipients(Collection<String> recipients) {
         return recipients == null
                 ? Collections.emptyList()
                 : recipients
@@ -1,35 +1,85 @@
 package it.niedermann.fis.operation.remote.notification.sms;
 
-import it.niedermann.fis.main.model.OperationDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.niedermann.fis.http.OutboundHttpClient;
 import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
+import it.niedermann.fis.operation.remote.notification.NotificationProvider;
 import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
 import it.niedermann.fis.operation.remote.notification.sms.com.smsapi.SmsApiProvider;
+import it.niedermann.fis.operation.remote.notification.sms.failover.FailoverSmsProvider;
+import it.niedermann.fis.operation.remote.notification.sms.failover.SmsFailoverConfiguration;
 import it.niedermann.fis.operation.remote.notification.sms.io.sms77.Sms77Provider;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
 
 import org.apache.commons.lang3.NotImplementedException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Service;
 
-import java.util.function.Consumer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.Executor;
 
 @Service
+@EnableConfigurationProperties(SmsFailoverConfiguration.class)
 public class SmsProviderFactory {
 
     private final NotificationConfiguration config;
+    private final SmsFailoverConfiguration failoverConfig;
     private final OperationNotificationUtil notificationUtil;
+    private final NotificationTemplates templates;
+    private final OutboundHttpClient httpClient;
+    private final MeterRegistry meterRegistry;
+    private final Executor failoverExecutor;
 
     public SmsProviderFactory(
             NotificationConfiguration config,
-            OperationNotificationUtil notificationUtil
+            SmsFailoverConfiguration failoverConfig,
+            OperationNotificationUtil notificationUtil,
+            NotificationTemplates templates,
+            OutboundHttpClient httpClient,
+            MeterRegistry meterRegistry,
+            @Qualifier("smsFailoverExecutor") Executor failoverExecutor
     ) {
         this.config = config;
+        this.failoverConfig = failoverConfig;
         this.notificationUtil = notificationUtil;
+        this.templates = templates;
+        this.httpClient = httpClient;
+        this.meterRegistry = meterRegistry;
+        this.failoverExecutor = failoverExecutor;
+    }
+
+    /**
+     * @return the provider configured in <code>fis.sms.providers</code>, a chain failing over between them if there are
+     * several, or smsapi.com if none is configured
+     */
+    public NotificationProvider createSmsChannel() {
+        final var providers = failoverConfig.providers();
+        if (providers == null || providers.isEmpty()) {
+            return createSmsProvider(SmsProviderType.SMSAPI);
+        }
+        if (providers.size() == 1) {
+            return createSmsProvider(providers.get(0).type(), config.withSmsProvider(providers.get(0).apiKey(), providers.get(0).url()));
+        }
+        final var chain = new LinkedHashMap<String, SmsProvider>();
+        for (final var provider : providers) {
+            final var type = provider.type().name().toLowerCase(Locale.ROOT);
+            final var name = chain.containsKey(type) ? type + "-" + (chain.size() + 1) : type;
+            chain.put(name, createSmsProvider(provider.type(), config.withSmsProvider(provider.apiKey(), provider.url())));
+        }
+        return new FailoverSmsProvider(failoverConfig, chain, meterRegistry, failoverExecutor);
+    }
+
+    public SmsProvider createSmsProvider(SmsProviderType type) {
+        return createSmsProvider(type, config);
     }
 
     @SuppressWarnings({"UnnecessaryDefault"})
-    public Consumer<OperationDto> createSmsProvider(SmsProviderType type) {
+    private SmsProvider createSmsProvider(SmsProviderType type, NotificationConfiguration config) {
         return switch (type) {
-            case SMS77 -> new Sms77Provider(config, notificationUtil);
-            case SMSAPI -> new SmsApiProvider(config, notificationUtil);
+            case SMS77 -> new Sms77Provider(config, notificationUtil, templates, httpClient, meterRegistry);
+            case SMSAPI -> new SmsApiProvider(config, notificationUtil, templates, httpClient, meterRegistry);
             default -> throw new NotImplementedException("Could not find a " + SmsProvider.class.getSimpleName() + " for type \"" + type + "\"");
         };
     }
@@ -1,55 +1,78 @@
 package it.niedermann.fis.operation.remote.notification.sms.com.smsapi;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import it.niedermann.fis.http.OutboundHttpClient;
 import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
 import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
 import it.niedermann.fis.operation.remote.notification.sms.SmsProvider;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
 
 public class SmsApiProvider extends SmsProvider {
 
     private final Logger logger = LoggerFactory.getLogger(SmsApiProvider.class);
 
-    private final SmsApiService service = new Retrofit.Builder()
-            .baseUrl("https://api.smsapi.com/")
-            .addConverterFactory(GsonConverterFactory.create())
-            .build()
-            .create(SmsApiService.class);
+    private final OutboundHttpClient httpClient;
+    private final SmsApiService service;
 
     public SmsApiProvider(
             NotificationConfiguration config,
-            OperationNotificationUtil notificationUtil) {
-        super(config, notificationUtil);
+            OperationNotificationUtil notificationUtil,
+            NotificationTemplates templates,
+            OutboundHttpClient httpClient,
+            MeterRegistry meterRegistry) {
+        super(config, notificationUtil, templates, meterRegistry);
+        this.httpClient = httpClient;
+        final var baseUrl = Optional.ofNullable(config.smsProviderUrl()).orElse("https://api.smsapi.com/");
+        service = httpClient.createService(baseUrl, SmsApiService.class);
+        if (apiKey.isPresent() && !recipients.isEmpty()) {
+            httpClient.warmUp(baseUrl);
+        }
     }
 
+    /**
+     * Sends one request for all recipients, so they either all succeed or all fail.
+     */
     @Override
-    public void accept(OperationDto operation) {
-        apiKey.ifPresentOrElse(
-                apiKey -> {
-                    if (recipients.size() > 0) {
-                        try {
-                            final var response = service
-                                    .sendSms("Bearer " + apiKey,
-                                            senderName,
-                                            String.join(",", recipients),
-                                            getMessage(operation),
-                                            priority ? 1 : null)
-                                    .execute();
-                            logger.debug("HTTP Response code: " + response.code());
-                            logger.trace("HTTP Response body: " + response.body().string());
-                        } catch (IOException e) {
-                            logger.error(e.getMessage(), e);
-                        }
-                    } else {
-                        logger.trace("No recipients for SMS");
-                    }
-                },
-                () -> this.logger.trace("✉️ Skipped sending SMS because API key has not been provided."));
+    public Collection<String> send(OperationDto operation, Collection<String> recipients) {
+        if (apiKey.isEmpty()) {
+            this.logger.trace("✉️ Skipped sending SMS because API key has not been provided.");
+            return Collections.emptyList();
+        }
+        if (recipients.isEmpty()) {
+            logger.trace("No recipients for SMS");
+            return Collections.emptyList();
+        }
+        try {
+            final var response = httpClient.send(service
+                            .sendSms("Bearer " + apiKey.get(),
+                                    senderName,
+                                    String.join(",", recipients),
+                                    getMessage(operation),
+                                    priority ? 1 : null))
+                    .join();
+            logger.debug("HTTP Response code: " + response.code());
+            if (response.body() != null) {
+                logger.trace("HTTP Response body: " + response.body().string());
+            }
+            if (response.isSuccessful()) {
+                sentCounter.increment(recipients.size());
+                return Collections.emptyList();
+            }
+        } catch (IOException | CompletionException e) {
+            final var cause = e instanceof CompletionException ? e.getCause() : e;
+            logger.error(cause.getMessage(), cause);
+        }
+        failedCounter.increment(recipients.size());
+        return recipients;
     }
 
     /**
@@ -58,15 +81,7 @@ public class SmsApiProvider extends SmsProvider {
      * service</a> for sending the maps link
      */
     @Override
-    protected String getMessage(OperationDto operation) {
-        final var address = notificationUtil.getHumanReadableLocation(operation);
-        return address.isPresent()
-                ? String.format("Einsatz: %s, %s",
-                        operation.getKeyword(),
-                        String.join(", ", operation.getTags()))
-                : String.format("Einsatz: %s, Karte: %s, Adresse: %s",
-                        operation.getKeyword(),
-                        "[%goto:" + notificationUtil.getGoogleMapsLink(operation) + "%]",
-                        address);
+    protected String getMapLink(OperationDto operation) {
+        return "[%goto:" + super.getMapLink(operation) + "%]";
     }
 }
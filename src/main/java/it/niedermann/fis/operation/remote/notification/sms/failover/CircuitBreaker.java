@@ -0,0 +1,146 @@
+package it.niedermann.fis.operation.remote.notification.sms.failover;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Keeps the outcome and latency of the last sends of a provider. If too many of them failed, the provider is skipped
+ * for a while. Afterwards, the outcome of a single probe decides whether it is used regularly again, while the probe
+ * is running the provider is treated as open.
+ * <p>
+ * Thread safe, all methods are synchronized because sends are rare.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final Clock clock;
+    private final int minimumCalls;
+    private final int failureRate;
+    private final Duration openDuration;
+    /**
+     * Ring buffers of the last sends
+     */
+    private final boolean[] failures;
+    private final long[] latencies;
+    private int calls = 0;
+    private int next = 0;
+    private State state = State.CLOSED;
+    private Instant openUntil = Instant.MIN;
+    /**
+     * Whether the single send which decides about a {@link State#HALF_OPEN} breaker is running
+     */
+    private boolean probing = false;
+
+    /**
+     * @param window       count of the last sends which are considered
+     * @param minimumCalls before the breaker may open
+     * @param failureRate  percentage of failed sends within the window which opens the breaker
+     */
+    CircuitBreaker(int window, int minimumCalls, int failureRate, Duration openDuration, Clock clock) {
+        this.clock = clock;
+        this.minimumCalls = minimumCalls;
+        this.failureRate = failureRate;
+        this.openDuration = openDuration;
+        this.failures = new boolean[window];
+        this.latencies = new long[window];
+    }
+
+    /**
+     * @return whether the provider may currently be used, without acquiring a permit
+     */
+    synchronized boolean isAvailable() {
+        return switch (getState()) {
+            case CLOSED -> true;
+            case HALF_OPEN -> !probing;
+            case OPEN -> false;
+        };
+    }
+
+    /**
+     * Must be called right before a send. If the breaker is {@link State#HALF_OPEN}, only the first caller becomes the
+     * probe, until its outcome is {@link #record(boolean, Duration) recorded} or it is {@link #release() released}.
+     *
+     * @return whether the send may be made
+     */
+    synchronized boolean tryAcquire() {
+        if (getState() != State.HALF_OPEN) {
+            return state == State.CLOSED;
+        }
+        if (probing) {
+            return false;
+        }
+        probing = true;
+        return true;
+    }
+
+    /**
+     * Gives back a permit whose send has not been made
+     */
+    synchronized void release() {
+        probing = false;
+    }
+
+    synchronized void record(boolean success, Duration latency) {
+        if (getState() == State.HALF_OPEN) {
+            // The probe after the break decides
+            probing = false;
+            if (success) {
+                state = State.CLOSED;
+                calls = 0;
+                next = 0;
+            } else {
+                open();
+                return;
+            }
+        }
+        failures[next] = !success;
+        latencies[next] = latency.toNanos();
+        next = (next + 1) % failures.length;
+        calls = Math.min(calls + 1, failures.length);
+        if (state == State.CLOSED && calls >= minimumCalls && countFailures() * 100 >= failureRate * calls) {
+            open();
+        }
+    }
+
+    synchronized State getState() {
+        if (state == State.OPEN && !clock.instant().isBefore(openUntil)) {
+            state = State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * @return the mean latency of the sends within the window, {@link Duration#ZERO} if there were none yet
+     */
+    synchronized Duration getAverageLatency() {
+        if (calls == 0) {
+            return Duration.ZERO;
+        }
+        long sum = 0;
+        for (int i = 0; i < calls; i++) {
+            sum += latencies[i];
+        }
+        return Duration.ofNanos(sum / calls);
+    }
+
+    private int countFailures() {
+        int count = 0;
+        for (int i = 0; i < calls; i++) {
+            if (failures[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = clock.instant().plus(openDuration);
+    }
+}
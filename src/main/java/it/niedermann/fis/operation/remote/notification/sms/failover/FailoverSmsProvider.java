@@ -0,0 +1,205 @@
+package it.niedermann.fis.operation.remote.notification.sms.failover;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.operation.remote.notification.NotificationProvider;
+import it.niedermann.fis.operation.remote.notification.sms.SmsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Sends SMS via a chain of providers, so that an outage of a single provider does not keep the crew from being
+ * alarmed.
+ * <ul>
+ *     <li>Recipients which could not be notified by a provider are passed on to the next one.</li>
+ *     <li>If a provider did not finish within the hedge delay, the next one is started in parallel. Recipients may
+ *     then receive the SMS twice, which is preferred over receiving it late.</li>
+ *     <li>Each provider has a {@link CircuitBreaker}, so that a provider which is down is skipped instead of
+ *     delaying every alarm by the hedge delay. Providers which are usually slower than the hedge delay are tried
+ *     after the faster ones.</li>
+ * </ul>
+ */
+public class FailoverSmsProvider implements NotificationProvider {
+
+    private final Logger logger = LoggerFactory.getLogger(FailoverSmsProvider.class);
+
+    private final List<Member> members;
+    private final Duration hedgeDelay;
+    private final Executor executor;
+
+    /**
+     * @param providers by their name, in the order of preference
+     * @param executor  runs the attempts of all providers, attempts it rejects count as failed without affecting the
+     *                  {@link CircuitBreaker} of the provider
+     */
+    public FailoverSmsProvider(
+            SmsFailoverConfiguration config,
+            Map<String, SmsProvider> providers,
+            MeterRegistry meterRegistry,
+            Executor executor
+    ) {
+        this(config, providers, meterRegistry, Clock.systemUTC(), executor);
+    }
+
+    FailoverSmsProvider(
+            SmsFailoverConfiguration config,
+            Map<String, SmsProvider> providers,
+            MeterRegistry meterRegistry,
+            Clock clock,
+            Executor executor
+    ) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("At least one SMS provider is required");
+        }
+        this.hedgeDelay = Duration.ofMillis(config.hedgeDelay());
+        this.executor = executor;
+        this.members = providers.entrySet().stream()
+                .map(entry -> Member.create(entry.getKey(), entry.getValue(),
+                        new CircuitBreaker(config.window(), config.minimumCalls(), config.failureRate(), Duration.ofMillis(config.openDuration()), clock),
+                        meterRegistry))
+                .toList();
+        logger.info("📱 Sending SMS via " + String.join(", ", providers.keySet()));
+    }
+
+    @Override
+    public Collection<String> getRecipients() {
+        return members.get(0).provider().getRecipients();
+    }
+
+    @Override
+    public Collection<String> normalizeRecipients(Collection<String> recipients) {
+        return members.get(0).provider().normalizeRecipients(recipients);
+    }
+
+    @Override
+    public Collection<String> send(OperationDto operation, Collection<String> recipients) {
+        if (recipients.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final var remaining = new LinkedHashSet<>(recipients);
+        final var available = getAvailable();
+        // If all providers are failing, they are tried anyway, regardless of their circuit breakers
+        final var forced = available.isEmpty();
+        if (forced) {
+            logger.warn("All SMS providers are failing, trying them anyway");
+        }
+        final var chain = forced ? members : available;
+        final var completions = new LinkedBlockingQueue<Attempt>();
+        var next = 0;
+        var running = 0;
+        start(chain.get(next++), operation, remaining, completions, "primary", forced);
+        running++;
+        try {
+            while (true) {
+                final var canHedge = next < chain.size();
+                final var attempt = canHedge
+                        ? completions.poll(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS)
+                        : completions.take();
+                if (attempt == null) {
+                    logger.warn("⏱ " + chain.get(next - 1).name() + " did not send SMS within " + hedgeDelay.toMillis() + "ms, additionally trying " + chain.get(next).name());
+                    start(chain.get(next++), operation, remaining, completions, "hedge", forced);
+                    running++;
+                    continue;
+                }
+                running--;
+                remaining.retainAll(attempt.failed());
+                if (remaining.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                if (running == 0) {
+                    if (next >= chain.size()) {
+                        return List.copyOf(remaining);
+                    }
+                    logger.warn("Could not send SMS to " + remaining.size() + " recipients via " + attempt.member().name() + ", trying " + chain.get(next).name());
+                    start(chain.get(next++), operation, remaining, completions, "failure", forced);
+                    running++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.copyOf(remaining);
+        }
+    }
+
+    /**
+     * @return providers which are usually faster than the hedge delay first, otherwise in the order of preference.
+     * Providers whose circuit breaker is open or whose probe is running are not part of the chain.
+     */
+    private List<Member> getAvailable() {
+        return members.stream()
+                .filter(member -> member.breaker().isAvailable())
+                .sorted(Comparator.comparing(member -> member.breaker().getAverageLatency().compareTo(hedgeDelay) > 0))
+                .toList();
+    }
+
+    /**
+     * @param forced whether the attempt is made even if the circuit breaker of the provider does not permit it
+     */
+    private void start(Member member, OperationDto operation, Collection<String> recipients, BlockingQueue<Attempt> completions, String reason, boolean forced) {
+        final var snapshot = List.copyOf(recipients);
+        final var permitted = member.breaker().tryAcquire();
+        if (!permitted && !forced) {
+            // Another send became the probe of the provider meanwhile, so it is treated as open
+            logger.info("Circuit breaker of " + member.name() + " does not permit sending SMS");
+            completions.add(new Attempt(member, new HashSet<>(snapshot)));
+            return;
+        }
+        try {
+            executor.execute(() -> attempt(member, operation, snapshot, completions));
+        } catch (RejectedExecutionException e) {
+            logger.warn("SMS failover executor is busy, could not try " + member.name());
+            if (permitted) {
+                member.breaker().release();
+            }
+            completions.add(new Attempt(member, new HashSet<>(snapshot)));
+            return;
+        }
+        member.attemptCounter(reason).increment();
+    }
+
+    private void attempt(Member member, OperationDto operation, List<String> snapshot, BlockingQueue<Attempt> completions) {
+        final var start = System.nanoTime();
+        Collection<String> failed;
+        try {
+            failed = member.provider().send(operation, snapshot);
+        } catch (RuntimeException e) {
+            logger.error("Could not send SMS via " + member.name(), e);
+            failed = snapshot;
+        }
+        // Single rejected numbers are no sign of an outage of the provider
+        member.breaker().record(failed.size() < snapshot.size(), Duration.ofNanos(System.nanoTime() - start));
+        completions.add(new Attempt(member, new HashSet<>(failed)));
+    }
+
+    private record Attempt(Member member, Set<String> failed) {
+    }
+
+    private record Member(String name, SmsProvider provider, CircuitBreaker breaker, Map<String, Counter> attemptCounters) {
+
+        private static Member create(String name, SmsProvider provider, CircuitBreaker breaker, MeterRegistry meterRegistry) {
+            Gauge.builder("fis.notification.sms.breaker.state", breaker, b -> b.getState().ordinal())
+                    .description("State of the circuit breaker of an SMS provider, 0 closed, 1 half open, 2 open")
+                    .tag("provider", name)
+                    .register(meterRegistry);
+            final var counters = new HashMap<String, Counter>();
+            for (final var reason : List.of("primary", "hedge", "failure")) {
+                counters.put(reason, Counter.builder("fis.notification.sms.attempts")
+                        .description("Sends via an SMS provider, by the reason it has been chosen")
+                        .tags("provider", name, "reason", reason)
+                        .register(meterRegistry));
+            }
+            return new Member(name, provider, breaker, Map.copyOf(counters));
+        }
+
+        private Counter attemptCounter(String reason) {
+            return attemptCounters.get(reason);
+        }
+    }
+}
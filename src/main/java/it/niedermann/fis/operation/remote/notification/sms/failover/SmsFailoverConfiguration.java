@@ -0,0 +1,33 @@
+package it.niedermann.fis.operation.remote.notification.sms.failover;
+
+import it.niedermann.fis.operation.remote.notification.sms.SmsProviderType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.sms")
+@Validated
+public record SmsFailoverConfiguration(
+                List<@Valid Provider> providers,
+                @Min(0) long hedgeDelay,
+                @Min(1) int window,
+                @Min(1) int minimumCalls,
+                @Min(1) @Max(100) int failureRate,
+                @Min(0) long openDuration) {
+
+    /**
+     * @param apiKey falls back to <code>fis.notification.smsApiKey</code>
+     * @param url    overrides the API URL of the provider, e.g. for a proxy
+     */
+    public record Provider(
+                    @NotNull SmsProviderType type,
+                    String apiKey,
+                    String url) {
+    }
+}
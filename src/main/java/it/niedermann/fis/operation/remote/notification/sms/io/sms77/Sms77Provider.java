@@ -1,47 +1,120 @@
 package it.niedermann.fis.operation.remote.notification.sms.io.sms77;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import it.niedermann.fis.http.OutboundHttpClient;
 import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
 import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
 import it.niedermann.fis.operation.remote.notification.sms.SmsProvider;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.Response;
 
-import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
 
 public class Sms77Provider extends SmsProvider {
 
     private final Logger logger = LoggerFactory.getLogger(Sms77Provider.class);
 
-    private final Sms77Service service = new Retrofit.Builder()
-            .baseUrl("https://gateway.sms77.io/api/")
-            .addConverterFactory(GsonConverterFactory.create())
-            .build()
-            .create(Sms77Service.class);
+    /**
+     * Keeps the requests small enough for the gateway, while a typical crew still fits into a single one
+     */
+    private static final int MAX_RECIPIENTS_PER_REQUEST = 100;
+
+    private final OutboundHttpClient httpClient;
+    private final Sms77Service service;
+    private final int chunkSize;
 
     public Sms77Provider(
             NotificationConfiguration config,
-            OperationNotificationUtil notificationUtil
+            OperationNotificationUtil notificationUtil,
+            NotificationTemplates templates,
+            OutboundHttpClient httpClient,
+            MeterRegistry meterRegistry
+    ) {
+        this(config, notificationUtil, templates, httpClient, meterRegistry, MAX_RECIPIENTS_PER_REQUEST);
+    }
+
+    Sms77Provider(
+            NotificationConfiguration config,
+            OperationNotificationUtil notificationUtil,
+            NotificationTemplates templates,
+            OutboundHttpClient httpClient,
+            MeterRegistry meterRegistry,
+            int chunkSize
     ) {
-        super(config, notificationUtil);
+        super(config, notificationUtil, templates, meterRegistry);
+        this.httpClient = httpClient;
+        this.chunkSize = chunkSize;
+        final var baseUrl = Optional.ofNullable(config.smsProviderUrl()).orElse("https://gateway.sms77.io/api/");
+        service = httpClient.createService(baseUrl, Sms77Service.class);
+        if (apiKey.isPresent() && !recipients.isEmpty()) {
+            httpClient.warmUp(baseUrl);
+        }
         logger.warn("⚠️ This SMS provider has not been tested. Use at your own risk!");
     }
 
+    /**
+     * Sends one request per chunk of recipients, all chunks in parallel.
+     */
     @Override
-    public void accept(OperationDto operation) {
-        apiKey.ifPresentOrElse(
-                apiKey -> recipients.forEach(recipient -> {
-                    try {
-                        final var response = service.sendSms(apiKey, recipient, getMessage(operation)).execute();
-                        logger.debug("HTTP Response code: " + response.code());
-                        logger.trace("HTTP Response body: " + response.body().string());
-                    } catch (IOException e) {
-                        logger.error(e.getMessage(), e);
-                    }
-                }),
-                () -> this.logger.trace("✉️ Skipped sending SMS because API key has not been provided.")
-        );
+    public Collection<String> send(OperationDto operation, Collection<String> recipients) {
+        if (apiKey.isEmpty()) {
+            this.logger.trace("✉️ Skipped sending SMS because API key has not been provided.");
+            return Collections.emptyList();
+        }
+        final var message = getMessage(operation);
+        final var failed = new ConcurrentLinkedQueue<String>();
+        CompletableFuture.allOf(partition(List.copyOf(recipients)).stream()
+                .map(chunk -> httpClient.send(service.sendSms(apiKey.get(), String.join(",", chunk), message))
+                        .handle((response, throwable) -> failed.addAll(getFailedRecipients(chunk, response, throwable))))
+                .toArray(CompletableFuture[]::new)).join();
+        sentCounter.increment(recipients.size() - failed.size());
+        failedCounter.increment(failed.size());
+        return List.copyOf(failed);
+    }
+
+    private List<List<String>> partition(List<String> recipients) {
+        return IntStream.range(0, (recipients.size() + chunkSize - 1) / chunkSize)
+                .mapToObj(i -> recipients.subList(i * chunkSize, Math.min(recipients.size(), (i + 1) * chunkSize)))
+                .toList();
+    }
+
+    private Collection<String> getFailedRecipients(List<String> chunk, Response<Sms77ResponseDto> response, Throwable throwable) {
+        if (throwable != null) {
+            logger.error(throwable.getMessage(), throwable);
+            return chunk;
+        }
+        logger.debug("HTTP Response code: " + response.code());
+        final var body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            logger.error("Could not send SMS to " + chunk.size() + " recipients, HTTP Response code: " + response.code());
+            return chunk;
+        }
+        if (body.messages == null) {
+            // Without details, the overall result applies to all recipients
+            return "100".equals(body.success) ? Collections.emptyList() : chunk;
+        }
+        return chunk.stream()
+                .filter(recipient -> Arrays.stream(body.messages).noneMatch(sms -> sms.success && isSameNumber(recipient, sms.recipient)))
+                .peek(recipient -> logger.warn("Could not send SMS to " + recipient + ": " + Arrays.stream(body.messages)
+                        .filter(sms -> isSameNumber(recipient, sms.recipient))
+                        .map(sms -> sms.errorText)
+                        .filter(Objects::nonNull)
+                        .findFirst()
+                        .orElse("missing in response")))
+                .toList();
+    }
+
+    /**
+     * @param reported by the gateway in international format, e.g. <code>49123456789</code> for
+     *                 <code>0123456789</code>
+     */
+    private boolean isSameNumber(String recipient, String reported) {
+        return reported != null && sanitizePhoneNumber(reported).endsWith(recipient.replaceFirst("^0+", ""));
     }
 }
@@ -0,0 +1,22 @@
+package it.niedermann.fis.operation.remote.notification.sms.io.sms77;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Response of the <code>sms</code> endpoint with <code>json=1</code>
+ */
+class Sms77ResponseDto {
+
+    /**
+     * <code>100</code> if all messages have been accepted
+     */
+    String success;
+    Message[] messages;
+
+    static class Message {
+        String recipient;
+        boolean success;
+        @SerializedName("error_text")
+        String errorText;
+    }
+}
@@ -1,15 +1,20 @@
 package it.niedermann.fis.operation.remote.notification.sms.io.sms77;
 
-import okhttp3.ResponseBody;
 import retrofit2.Call;
-import retrofit2.http.GET;
-import retrofit2.http.Query;
+import retrofit2.http.Field;
+import retrofit2.http.FormUrlEncoded;
+import retrofit2.http.POST;
 
 interface Sms77Service {
-    @GET("sms?debug=1&return_msg_id=1")
-    Call<ResponseBody> sendSms(
-            @Query("p") String apiKey,
-            @Query("to") String to,
-            @Query("text") String text
+
+    /**
+     * @param to comma separated list of recipients, sent as form field because the list can get longer than an URL
+     */
+    @FormUrlEncoded
+    @POST("sms?debug=1&return_msg_id=1&json=1")
+    Call<Sms77ResponseDto> sendSms(
+            @Field("p") String apiKey,
+            @Field("to") String to,
+            @Field("text") String text
     );
 }
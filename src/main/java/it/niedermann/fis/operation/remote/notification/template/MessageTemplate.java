@@ -0,0 +1,134 @@
+package it.niedermann.fis.operation.remote.notification.template;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template like <code>Einsatz: {keyword}, Karte: {map}</code>, parsed once into literal and variable segments so
+ * that rendering is a plain concatenation. Literal braces are written as <code>{{</code> and <code>}}</code>.
+ */
+public final class MessageTemplate {
+
+    /**
+     * Not "…", because it is not part of the GSM 03.38 alphabet and would turn the whole SMS into UCS-2 with only 70
+     * characters per part
+     */
+    private static final String ELLIPSIS = "...";
+
+    /**
+     * Shortened first when a message gets too long. Links are never shortened because they would not work anymore.
+     */
+    private static final List<TemplateVariable> TRUNCATION_ORDER = List.of(
+            TemplateVariable.NOTE,
+            TemplateVariable.VEHICLES,
+            TemplateVariable.TAGS,
+            TemplateVariable.ADDRESS,
+            TemplateVariable.KEYWORD);
+
+    /**
+     * Either a {@link String} or a {@link TemplateVariable}
+     */
+    private final List<Object> segments;
+    private final int literalLength;
+
+    private MessageTemplate(List<Object> segments) {
+        this.segments = List.copyOf(segments);
+        this.literalLength = segments.stream()
+                .filter(String.class::isInstance)
+                .mapToInt(segment -> ((String) segment).length())
+                .sum();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the template contains an unknown or unclosed placeholder
+     */
+    public static MessageTemplate compile(String source) {
+        final var segments = new ArrayList<>();
+        final var literal = new StringBuilder();
+        for (int i = 0; i < source.length(); i++) {
+            final var c = source.charAt(i);
+            if ((c == '{' || c == '}') && i + 1 < source.length() && source.charAt(i + 1) == c) {
+                literal.append(c);
+                i++;
+            } else if (c == '{') {
+                final var end = source.indexOf('}', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed placeholder at position " + i + " of template \"" + source + "\"");
+                }
+                final var placeholder = source.substring(i + 1, end).trim();
+                final var variable = TemplateVariable.fromPlaceholder(placeholder).orElseThrow(() ->
+                        new IllegalArgumentException("Unknown placeholder {" + placeholder + "} in template \"" + source + "\""));
+                if (literal.length() > 0) {
+                    segments.add(literal.toString());
+                    literal.setLength(0);
+                }
+                segments.add(variable);
+                i = end;
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            segments.add(literal.toString());
+        }
+        return new MessageTemplate(segments);
+    }
+
+    /**
+     * @param values missing variables are rendered as empty string
+     */
+    public String render(Map<TemplateVariable, String> values) {
+        final var result = new StringBuilder(literalLength + 64 * segments.size());
+        for (final var segment : segments) {
+            if (segment instanceof TemplateVariable variable) {
+                result.append(values.getOrDefault(variable, ""));
+            } else {
+                result.append((String) segment);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Shortens the variables in {@link #TRUNCATION_ORDER} until the message fits, and cuts the message itself only
+     * if that is not enough.
+     */
+    public String render(Map<TemplateVariable, String> values, int maxLength) {
+        var result = render(values);
+        if (result.length() <= maxLength) {
+            return result;
+        }
+        final var shortened = new EnumMap<TemplateVariable, String>(TemplateVariable.class);
+        shortened.putAll(values);
+        for (final var variable : TRUNCATION_ORDER) {
+            final var occurrences = segments.stream().filter(variable::equals).count();
+            final var value = shortened.getOrDefault(variable, "");
+            if (occurrences == 0 || value.isEmpty()) {
+                continue;
+            }
+            final var overflow = result.length() - maxLength;
+            shortened.put(variable, truncate(value, value.length() - (int) ((overflow + occurrences - 1) / occurrences)));
+            result = render(shortened);
+            if (result.length() <= maxLength) {
+                return result;
+            }
+        }
+        return truncate(result, maxLength);
+    }
+
+    /**
+     * @return the value cut to the given length including the ellipsis, or empty if nothing useful would remain
+     */
+    private static String truncate(String value, int length) {
+        var keep = length - ELLIPSIS.length();
+        if (keep <= 0) {
+            return "";
+        }
+        if (Character.isHighSurrogate(value.charAt(keep - 1))) {
+            keep--;
+        }
+        return value.substring(0, keep) + ELLIPSIS;
+    }
+}
@@ -0,0 +1,67 @@
+package it.niedermann.fis.operation.remote.notification.template;
+
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compiles the configured templates of all channels once at startup, so that an invalid template fails early.
+ */
+@Component
+@EnableConfigurationProperties(TemplateConfiguration.class)
+public class NotificationTemplates {
+
+    private final OperationNotificationUtil notificationUtil;
+    private final MessageTemplate sms;
+    private final int smsMaxLength;
+    private final MessageTemplate mailSubject;
+    private final MessageTemplate mailBody;
+
+    public NotificationTemplates(TemplateConfiguration config, OperationNotificationUtil notificationUtil) {
+        this.notificationUtil = notificationUtil;
+        this.sms = MessageTemplate.compile(config.sms());
+        this.smsMaxLength = config.smsMaxLength();
+        this.mailSubject = MessageTemplate.compile(config.mailSubject());
+        this.mailBody = MessageTemplate.compile(config.mailBody());
+    }
+
+    /**
+     * @param mapLink the link to be used for <code>{map}</code>, e.g. decorated for a short URL service
+     * @return the message for all recipients, shortened to the maximum SMS length
+     */
+    public String renderSms(OperationDto operation, String mapLink) {
+        return sms.render(getValues(operation, mapLink), smsMaxLength);
+    }
+
+    /**
+     * @return subject and body for all recipients
+     */
+    public MailPayload renderMail(OperationDto operation, String mapLink) {
+        final var values = getValues(operation, mapLink);
+        return new MailPayload(mailSubject.render(values), mailBody.render(values));
+    }
+
+    private Map<TemplateVariable, String> getValues(OperationDto operation, String mapLink) {
+        final var values = new EnumMap<TemplateVariable, String>(TemplateVariable.class);
+        values.put(TemplateVariable.KEYWORD, Optional.ofNullable(operation.getKeyword()).orElse(""));
+        values.put(TemplateVariable.TAGS, join(operation.getTags()));
+        values.put(TemplateVariable.VEHICLES, join(operation.getVehicles()));
+        values.put(TemplateVariable.NOTE, Optional.ofNullable(operation.getNote()).orElse(""));
+        values.put(TemplateVariable.ADDRESS, notificationUtil.getHumanReadableLocation(operation).orElse(""));
+        values.put(TemplateVariable.MAP, Optional.ofNullable(mapLink).orElse(""));
+        return values;
+    }
+
+    private String join(Collection<String> values) {
+        return values == null ? "" : String.join(", ", values);
+    }
+
+    public record MailPayload(String subject, String text) {
+    }
+}
@@ -0,0 +1,17 @@
+package it.niedermann.fis.operation.remote.notification.template;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+
+@SuppressWarnings("SpellCheckingInspection")
+@ConfigurationProperties("fis.template")
+@Validated
+public record TemplateConfiguration(
+                @NotBlank String sms,
+                @Min(70) int smsMaxLength,
+                @NotBlank String mailSubject,
+                @NotBlank String mailBody) {
+}
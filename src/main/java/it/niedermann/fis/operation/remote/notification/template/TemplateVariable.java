@@ -0,0 +1,27 @@
+package it.niedermann.fis.operation.remote.notification.template;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Placeholders available in notification templates, e.g. <code>{keyword}</code>
+ */
+public enum TemplateVariable {
+    KEYWORD,
+    TAGS,
+    VEHICLES,
+    NOTE,
+    ADDRESS,
+    MAP;
+
+    public String getPlaceholder() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static Optional<TemplateVariable> fromPlaceholder(String placeholder) {
+        return Arrays.stream(values())
+                .filter(variable -> variable.getPlaceholder().equals(placeholder))
+                .findFirst();
+    }
+}
@@ -1,24 +1,56 @@
 package it.niedermann.fis.parameter;
 
 import it.niedermann.fis.FisConfiguration;
+import it.niedermann.fis.VersionedETag;
+import it.niedermann.fis.cache.ResponseBodyCache;
+import it.niedermann.fis.event.EventTopic;
+import it.niedermann.fis.event.StateChangedEvent;
 import it.niedermann.fis.main.api.ParameterApi;
 import it.niedermann.fis.main.model.ClientConfigurationDto;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import java.util.concurrent.CompletableFuture;
+
 @Controller
 @RequestMapping("/api")
 public class ParameterApiImpl implements ParameterApi {
 
     private final ClientConfigurationDto dto;
+    private final ApplicationEventPublisher eventPublisher;
+    /**
+     * Never incremented because parameters do not change at runtime
+     */
+    private final VersionedETag eTag = new VersionedETag("parameter");
 
-    public ParameterApiImpl(FisConfiguration config) {
+    public ParameterApiImpl(
+            FisConfiguration config,
+            ApplicationEventPublisher eventPublisher,
+            ResponseBodyCache responseBodyCache
+    ) {
         this.dto = config.client();
+        this.eventPublisher = eventPublisher;
+        responseBodyCache.put(dto);
+    }
+
+    /**
+     * Parameters do not change at runtime, so they only need to be published once for clients of the event stream
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void publishParameter() {
+        eventPublisher.publishEvent(new StateChangedEvent(EventTopic.PARAMETER, dto));
     }
 
     @Override
-    public ResponseEntity<ClientConfigurationDto> getParameter(String ifNoneMatch) {
-        return ResponseEntity.ok(dto);
+    public CompletableFuture<ResponseEntity<ClientConfigurationDto>> getParameter(String ifNoneMatch) {
+        if (eTag.matches(ifNoneMatch)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag.get()).build());
+        }
+        return CompletableFuture.completedFuture(ResponseEntity.ok().eTag(eTag.get()).body(dto));
     }
 }
@@ -1,5 +1,9 @@
 package it.niedermann.fis.weather;
 
+import it.niedermann.fis.VersionedETag;
+import it.niedermann.fis.cache.ResponseBodyCache;
+import it.niedermann.fis.event.EventTopic;
+import it.niedermann.fis.event.StateChangedEvent;
 import it.niedermann.fis.main.api.WeatherApi;
 import it.niedermann.fis.main.model.WeatherDto;
 import it.niedermann.fis.weather.provider.WeatherProvider;
@@ -9,13 +13,17 @@ import it.niedermann.fis.weather.provider.WeatherProviderType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 @RequestMapping("/api")
@@ -25,11 +33,18 @@ public class WeatherApiImpl implements WeatherApi {
     private final Logger logger = LoggerFactory.getLogger(WeatherApiImpl.class);
 
     private final WeatherProvider weatherProvider;
-    private WeatherDto weather;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ResponseBodyCache responseBodyCache;
+    private final VersionedETag eTag = new VersionedETag("weather");
+    private volatile WeatherDto weather;
 
     public WeatherApiImpl(
             WeatherConfiguration config,
-            WeatherProviderFactory weatherProviderFactory) {
+            WeatherProviderFactory weatherProviderFactory,
+            ApplicationEventPublisher eventPublisher,
+            ResponseBodyCache responseBodyCache) {
+        this.eventPublisher = eventPublisher;
+        this.responseBodyCache = responseBodyCache;
         if (config.apiKey() == null) {
             weatherProvider = null;
             logger.info("❌ Weather information is not available because no API key has been specified");
@@ -39,21 +54,27 @@ public class WeatherApiImpl implements WeatherApi {
     }
 
     @Override
-    public ResponseEntity<WeatherDto> getWeather(String ifNoneMatch) {
+    public CompletableFuture<ResponseEntity<WeatherDto>> getWeather(String ifNoneMatch) {
         if (weatherProvider == null) {
-            return ResponseEntity.notFound().build();
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
         }
         try {
             if (weather == null) {
                 pollWeather();
             }
-            return ResponseEntity.ok(weather);
+            // Read the ETag first, so that a concurrent change can at most cause a stale ETag with a newer body
+            final var currentETag = eTag.get();
+            if (VersionedETag.matches(ifNoneMatch, currentETag)) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(currentETag).build());
+            }
+            return CompletableFuture.completedFuture(ResponseEntity.ok().eTag(currentETag).body(weather));
         } catch (IOException e) {
             logger.error(e.getMessage(), e);
-            return ResponseEntity.internalServerError().build();
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError().build());
         }
     }
 
+    @Async("weatherExecutor")
     @Scheduled(fixedDelayString = "${fis.weather.pollInterval}")
     public void pollWeather() throws IOException {
         if (weatherProvider == null) {
@@ -65,8 +86,12 @@ public class WeatherApiImpl implements WeatherApi {
         if (Objects.equals(newWeatherInformation, weather)) {
             logger.debug("Skip weather broadcast because it didn't change.");
         } else {
+            responseBodyCache.put(newWeatherInformation);
+            responseBodyCache.evict(weather);
             weather = newWeatherInformation;
+            eTag.increment();
             logger.info("⛅ Broadcast weather information: " + weather.getTemperature() + "°");
+            eventPublisher.publishEvent(new StateChangedEvent(EventTopic.WEATHER, weather));
         }
     }
 }
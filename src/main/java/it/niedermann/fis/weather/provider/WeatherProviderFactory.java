@@ -1,5 +1,6 @@
 package it.niedermann.fis.weather.provider;
 
+import it.niedermann.fis.http.OutboundHttpClient;
 import it.niedermann.fis.weather.WeatherConfiguration;
 import it.niedermann.fis.weather.provider.org.openweathermap.OpenWeatherMapProvider;
 
@@ -10,9 +11,11 @@ import org.springframework.stereotype.Service;
 public class WeatherProviderFactory {
 
     private final WeatherConfiguration config;
+    private final OutboundHttpClient httpClient;
 
-    public WeatherProviderFactory(WeatherConfiguration config) {
+    public WeatherProviderFactory(WeatherConfiguration config, OutboundHttpClient httpClient) {
         this.config = config;
+        this.httpClient = httpClient;
     }
 
     @SuppressWarnings({ "UnnecessaryDefault" })
@@ -21,7 +24,8 @@ public class WeatherProviderFactory {
             case OPENWEATHERMAP -> new OpenWeatherMapProvider(config.lang(),
                     config.location(),
                     config.units(),
-                    config.apiKey());
+                    config.apiKey(),
+                    httpClient);
             default -> throw new NotImplementedException(
                     String.format("Could not find a %s for type \"%s\"", WeatherProvider.class.getSimpleName(), type));
         };
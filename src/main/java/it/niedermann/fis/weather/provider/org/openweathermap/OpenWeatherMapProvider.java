@@ -1,11 +1,10 @@
 package it.niedermann.fis.weather.provider.org.openweathermap;
 
+import it.niedermann.fis.http.OutboundHttpClient;
 import it.niedermann.fis.main.model.WeatherDto;
 import it.niedermann.fis.weather.provider.WeatherProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 import java.io.IOException;
 import java.time.Instant;
@@ -18,18 +17,16 @@ public class OpenWeatherMapProvider implements WeatherProvider {
     private final String location;
     private final String units;
     private final String key;
+    private final OpenWeatherMapService service;
 
-    private final Retrofit retrofit = new Retrofit.Builder()
-            .baseUrl("https://api.openweathermap.org/data/")
-            .addConverterFactory(GsonConverterFactory.create())
-            .build();
-    private final OpenWeatherMapService service = retrofit.create(OpenWeatherMapService.class);
-
-    public OpenWeatherMapProvider(String lang, String location, String units, String apiKey) {
+    public OpenWeatherMapProvider(String lang, String location, String units, String apiKey, OutboundHttpClient httpClient) {
         this.lang = lang;
         this.location = location;
         this.units = units;
         this.key = apiKey;
+        final var baseUrl = "https://api.openweathermap.org/data/";
+        this.service = httpClient.createService(baseUrl, OpenWeatherMapService.class);
+        httpClient.warmUp(baseUrl);
     }
 
     @Override
@@ -0,0 +1,364 @@
+package it.niedermann.fis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetup;
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.operation.parser.OperationParserRepository;
+import it.niedermann.fis.operation.parser.TextOcrConfiguration;
+import it.niedermann.fis.operation.remote.ftp.OperationFTPRepository;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import static it.niedermann.fis.operation.TestUtil.getOperationSamples;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Replays the recorded faxes from <code>src/test/resources/samples</code> through the whole alarm pipeline and reports
+ * the latency of each stage from the upload to the FTP server until the operation is available at
+ * <code>/api/operations</code> and has been sent via mail.
+ * <p>
+ * FTP server, SMTP server and SMS provider are replaced by local stand-ins, the OCR by {@link TextOcrConfiguration}.
+ * A unique marker is added to the note of each fax to correlate the stages. The load can be configured with the
+ * system properties <code>replay.count</code>, <code>replay.burst</code>, <code>replay.interval</code> and
+ * <code>replay.smsDelay</code>, see the <code>replay</code> task in <code>build.gradle</code>.
+ */
+@SuppressWarnings("SpellCheckingInspection")
+@Tag("replay")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import({TextOcrConfiguration.class, AlarmReplayTest.RecorderConfiguration.class})
+public class AlarmReplayTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlarmReplayTest.class);
+
+    private static final int COUNT = Integer.getInteger("replay.count", 12);
+    private static final int BURST = Integer.getInteger("replay.burst", 1);
+    private static final long INTERVAL = Long.getLong("replay.interval", 1_000L);
+    private static final long SMS_DELAY = Long.getLong("replay.smsDelay", 150L);
+    private static final long TIMEOUT = 60_000L;
+    private static final Pattern MARKER = Pattern.compile("replay-(\\d+)");
+
+    private static final Map<Integer, Map<Stage, Long>> timestamps = new ConcurrentHashMap<>();
+
+    private static Path ftpRoot;
+    private static Path historyRoot;
+    private static FtpServer ftpServer;
+    private static GreenMail greenMail;
+    private static MockWebServer smsServer;
+
+    @LocalServerPort
+    private int port;
+
+    enum Stage {
+        UPLOADED,
+        DETECTED,
+        UPLOAD_COMPLETED,
+        DOWNLOADED,
+        PARSED,
+        VISIBLE,
+        NOTIFIED
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws Exception {
+        ftpRoot = Files.createTempDirectory("replay-ftp");
+        historyRoot = Files.createTempDirectory("replay-history");
+        Files.createDirectories(ftpRoot.resolve("inbox"));
+        final var ftpPort = findFreePort();
+        startFtpServer(ftpPort);
+
+        greenMail = new GreenMail(new ServerSetup(findFreePort(), null, ServerSetup.PROTOCOL_SMTP));
+        greenMail.start();
+
+        smsServer = new MockWebServer();
+        smsServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                Thread.sleep(SMS_DELAY);
+                return new MockResponse().setBody("{\"count\": 1}");
+            }
+        });
+        smsServer.start();
+
+        registry.add("fis.ftp.host", () -> "localhost");
+        registry.add("fis.ftp.port", () -> ftpPort);
+        registry.add("fis.ftp.username", () -> "replay");
+        registry.add("fis.ftp.password", () -> "replay");
+        registry.add("fis.ftp.path", () -> "/inbox");
+        registry.add("fis.ftp.pollInterval", () -> 100);
+        registry.add("fis.ftp.checkUploadCompleteInterval", () -> 100);
+        registry.add("fis.operation.duration", () -> TIMEOUT);
+        registry.add("fis.history.path", () -> historyRoot.toString());
+        registry.add("fis.operation.snapshot", () -> historyRoot.resolve("active.json").toString());
+        registry.add("fis.outbox.path", () -> historyRoot.resolve("outbox.log").toString());
+        registry.add("fis.quota.path", () -> historyRoot.resolve("quota.json").toString());
+        registry.add("fis.notification.smsApiKey", () -> "replay");
+        registry.add("fis.notification.smsProviderUrl", () -> smsServer.url("/").toString());
+        registry.add("fis.notification.smsLimit", () -> Integer.MAX_VALUE);
+        registry.add("fis.notification.sms", () -> "0123456789");
+        registry.add("fis.notification.mail", () -> "replay@example.com");
+        registry.add("spring.mail.host", () -> "localhost");
+        registry.add("spring.mail.port", () -> greenMail.getSmtp().getPort());
+    }
+
+    @AfterAll
+    static void stopStandIns() throws IOException {
+        ftpServer.stop();
+        greenMail.stop();
+        smsServer.shutdown();
+    }
+
+    @Test
+    public void replay() throws Exception {
+        final var samples = getOperationSamples("mittelfranken-sued")
+                .values()
+                .stream()
+                .map(sample -> sample.input())
+                .toList();
+        final var observer = new Thread(this::observe, "replay-observer");
+        observer.setDaemon(true);
+        observer.start();
+
+        // The first poll ignores files which are already present
+        Thread.sleep(1_000);
+
+        logger.info("Replaying " + COUNT + " faxes in bursts of " + BURST + " every " + INTERVAL + "ms");
+        for (int id = 0; id < COUNT; id++) {
+            upload(id, samples.get(id % samples.size()));
+            if ((id + 1) % BURST == 0) {
+                Thread.sleep(INTERVAL);
+            }
+        }
+
+        final var deadline = System.currentTimeMillis() + TIMEOUT;
+        while (countNotified() < COUNT && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        observer.interrupt();
+
+        report();
+        assertEquals(COUNT, countNotified(), "Expected all replayed faxes to be notified");
+    }
+
+    /**
+     * Writes the fax to a temporary file first and moves it afterwards, so it appears completely uploaded at once
+     */
+    private void upload(int id, String sample) throws IOException {
+        final var lines = new ArrayList<>(Arrays.asList(sample.split("\n")));
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).toUpperCase(Locale.ROOT).contains("BEMERKUNG")) {
+                lines.add(i + 1, "replay-" + id);
+                break;
+            }
+        }
+        final var temp = ftpRoot.resolve("replay-" + id + ".tmp");
+        Files.writeString(temp, String.join("\n", lines), StandardCharsets.UTF_8);
+        Files.move(temp, ftpRoot.resolve("inbox").resolve("replay-" + id + ".pdf"), StandardCopyOption.ATOMIC_MOVE);
+        record(id, Stage.UPLOADED);
+    }
+
+    /**
+     * Polls the API like a display does and checks the received mails. Lists all active operations, because a burst
+     * replaces the current operation faster than the poll interval.
+     */
+    private void observe() {
+        final var client = HttpClient.newHttpClient();
+        final var objectMapper = new ObjectMapper();
+        final var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/operations")).build();
+        var knownMails = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                final var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    for (final var operation : objectMapper.readValue(response.body(), OperationDto[].class)) {
+                        findId(operation.getNote()).ifPresent(id -> record(id, Stage.VISIBLE));
+                    }
+                }
+                final var mails = greenMail.getReceivedMessages();
+                for (; knownMails < mails.length; knownMails++) {
+                    findId(GreenMailUtil.getBody(mails[knownMails])).ifPresent(id -> record(id, Stage.NOTIFIED));
+                }
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                logger.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void report() throws IOException {
+        final var report = new StringBuilder()
+                .append("Replayed ").append(COUNT).append(" faxes in bursts of ").append(BURST)
+                .append(" every ").append(INTERVAL).append("ms, SMS delay ").append(SMS_DELAY).append("ms\n\n")
+                .append(String.format("%-22s %6s %8s %8s %8s %8s%n", "Stage [ms]", "n", "p50", "p95", "p99", "max"));
+        final var stages = Stage.values();
+        for (int i = 1; i < stages.length; i++) {
+            report.append(formatLatencies(stages[i - 1] + " → " + stages[i], stages[i - 1], stages[i]));
+        }
+        report.append(formatLatencies("End to end (API)", Stage.UPLOADED, Stage.VISIBLE));
+        report.append(formatLatencies("End to end (notified)", Stage.UPLOADED, Stage.NOTIFIED));
+
+        logger.info("\n" + report);
+        final var target = Path.of("build", "reports", "replay", "latency.txt");
+        Files.createDirectories(target.getParent());
+        Files.writeString(target, report, StandardCharsets.UTF_8);
+    }
+
+    private String formatLatencies(String label, Stage from, Stage to) {
+        final var latencies = timestamps.values().stream()
+                .filter(stages -> stages.containsKey(from) && stages.containsKey(to))
+                .map(stages -> stages.get(to) - stages.get(from))
+                .sorted()
+                .toList();
+        return String.format("%-22s %6d %8d %8d %8d %8d%n", label, latencies.size(),
+                percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                latencies.isEmpty() ? 0 : latencies.get(latencies.size() - 1));
+    }
+
+    /**
+     * Nearest rank method on a sorted list
+     */
+    private static long percentile(List<Long> sortedValues, int percentile) {
+        if (sortedValues.isEmpty()) {
+            return 0;
+        }
+        final var rank = (int) Math.ceil(percentile / 100d * sortedValues.size());
+        return sortedValues.get(Math.max(0, rank - 1));
+    }
+
+    private static long countNotified() {
+        return timestamps.values().stream().filter(stages -> stages.containsKey(Stage.NOTIFIED)).count();
+    }
+
+    private static void record(int id, Stage stage) {
+        timestamps.computeIfAbsent(id, key -> new ConcurrentHashMap<>()).putIfAbsent(stage, System.currentTimeMillis());
+    }
+
+    private static Optional<Integer> findId(String text) {
+        if (text == null) {
+            return Optional.empty();
+        }
+        final var matcher = MARKER.matcher(text);
+        return matcher.find() ? Optional.of(Integer.parseInt(matcher.group(1))) : Optional.empty();
+    }
+
+    private static void startFtpServer(int port) throws Exception {
+        final var userFile = Files.createTempFile("replay-ftp-users", ".properties").toFile();
+        final var userManagerFactory = new PropertiesUserManagerFactory();
+        userManagerFactory.setFile(userFile);
+        final var userManager = userManagerFactory.createUserManager();
+        final var user = new BaseUser();
+        user.setName("replay");
+        user.setPassword("replay");
+        user.setHomeDirectory(ftpRoot.toString());
+        user.setAuthorities(List.of(new WritePermission(), new ConcurrentLoginPermission(0, 0)));
+        userManager.save(user);
+
+        final var listenerFactory = new ListenerFactory();
+        listenerFactory.setPort(port);
+        final var serverFactory = new FtpServerFactory();
+        serverFactory.addListener("default", listenerFactory.createListener());
+        serverFactory.setUserManager(userManager);
+        ftpServer = serverFactory.createServer();
+        ftpServer.start();
+    }
+
+    private static int findFreePort() throws IOException {
+        try (final var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Records when a fax passes the stages of {@link OperationFTPRepository} and {@link OperationParserRepository}
+     * by wrapping them before they are injected and before the first poll is scheduled.
+     */
+    @TestConfiguration
+    static class RecorderConfiguration {
+
+        @Bean
+        static BeanPostProcessor replayRecorder() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof OperationFTPRepository || bean instanceof OperationParserRepository) {
+                        return mock(bean.getClass(), withSettings()
+                                .spiedInstance(bean)
+                                .defaultAnswer(RecorderConfiguration::recordAndCallRealMethod));
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        private static Object recordAndCallRealMethod(InvocationOnMock invocation) throws Throwable {
+            final var result = invocation.callRealMethod();
+            switch (invocation.getMethod().getName()) {
+                case "poll" -> ((Optional<?>) result)
+                        .flatMap(file -> findId(((FTPFile) file).getName()))
+                        .ifPresent(id -> record(id, Stage.DETECTED));
+                case "awaitUploadCompletion" -> ((Optional<?>) result)
+                        .flatMap(file -> findId(((FTPFile) file).getName()))
+                        .ifPresent(id -> record(id, Stage.UPLOAD_COMPLETED));
+                case "download" -> {
+                    if (((Optional<?>) result).isPresent()) {
+                        findId(((FTPFile) invocation.getArgument(0)).getName()).ifPresent(id -> record(id, Stage.DOWNLOADED));
+                    }
+                }
+                case "parse" -> {
+                    if (invocation.getArgument(0) instanceof File) {
+                        ((Optional<?>) result)
+                                .flatMap(dto -> findId(((OperationDto) dto).getNote()))
+                                .ifPresent(id -> record(id, Stage.PARSED));
+                    }
+                }
+                default -> {
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package it.niedermann.fis;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VersionedETagTest {
+
+    @Test
+    public void shouldChangeOnIncrement() {
+        final var eTag = new VersionedETag("foo");
+        final var initial = eTag.get();
+
+        final var incremented = eTag.increment();
+
+        assertNotEquals(initial, incremented);
+        assertEquals(incremented, eTag.get());
+        assertTrue(incremented.startsWith("\"") && incremented.endsWith("\""), "Should be a quoted strong ETag");
+    }
+
+    @Test
+    public void shouldDistinguishResources() {
+        assertNotEquals(new VersionedETag("foo").get(), new VersionedETag("bar").get());
+    }
+
+    @Test
+    public void shouldMatchIfNoneMatchHeaders() {
+        final var eTag = new VersionedETag("foo");
+        final var current = eTag.get();
+
+        assertTrue(eTag.matches(current));
+        assertTrue(eTag.matches("W/" + current), "Weak comparison is sufficient for If-None-Match");
+        assertTrue(eTag.matches("\"other\", " + current));
+        assertTrue(eTag.matches("*"));
+        assertFalse(eTag.matches(null));
+        assertFalse(eTag.matches(""));
+        assertFalse(eTag.matches("\"other\""));
+
+        eTag.increment();
+
+        assertFalse(eTag.matches(current), "Should not match after the state changed");
+    }
+
+    @Test
+    public void shouldMatchGzipVariant() {
+        final var eTag = new VersionedETag("foo");
+        final var current = eTag.get();
+        final var gzip = VersionedETag.gzip(current);
+
+        assertNotEquals(current, gzip);
+        assertTrue(gzip.startsWith("\"") && gzip.endsWith("-gzip\""), "Should be a quoted strong ETag");
+        assertTrue(eTag.matches(gzip));
+        assertTrue(eTag.matches("W/" + gzip));
+
+        eTag.increment();
+
+        assertFalse(eTag.matches(gzip), "Should not match after the state changed");
+    }
+}
@@ -0,0 +1,163 @@
+package it.niedermann.fis.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.niedermann.fis.VersionedETag;
+import it.niedermann.fis.main.model.OperationDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachedBodyHttpMessageConverterTest {
+
+    private ObjectMapper objectMapper;
+    private ResponseBodyCache cache;
+    private CachedBodyHttpMessageConverter converter;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    public void setup() {
+        objectMapper = new ObjectMapper();
+        cache = new ResponseBodyCache(objectMapper);
+        converter = new CachedBodyHttpMessageConverter(cache);
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void shouldOnlyWriteCachedTypes() {
+        assertFalse(converter.canWrite(OperationDto.class, MediaType.APPLICATION_JSON));
+
+        cache.put(createOperation());
+
+        assertTrue(converter.canWrite(OperationDto.class, MediaType.APPLICATION_JSON));
+        assertTrue(converter.canWrite(OperationDto.class, null));
+        assertFalse(converter.canWrite(OperationDto.class, MediaType.APPLICATION_XML));
+        assertFalse(converter.canRead(OperationDto.class, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void shouldWriteSameJsonAsJackson() throws IOException {
+        final var operation = createOperation();
+        cache.put(operation);
+
+        final var output = new MockHttpOutputMessage();
+        converter.write(operation, MediaType.APPLICATION_JSON, output);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(operation), output.getBodyAsBytes());
+        assertEquals(output.getBodyAsBytes().length, output.getHeaders().getContentLength());
+        assertEquals(MediaType.APPLICATION_JSON, output.getHeaders().getContentType());
+        assertNull(output.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void shouldWriteGzipVariant_whenAccepted() throws IOException {
+        final var operation = createOperation();
+        cache.put(operation);
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8");
+
+        final var output = new MockHttpOutputMessage();
+        converter.write(operation, MediaType.APPLICATION_JSON, output);
+
+        assertEquals("gzip", output.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNull(output.getHeaders().getETag());
+        assertEquals(output.getBodyAsBytes().length, output.getHeaders().getContentLength());
+        try (final var gzip = new GZIPInputStream(new ByteArrayInputStream(output.getBodyAsBytes()))) {
+            assertArrayEquals(objectMapper.writeValueAsBytes(operation), gzip.readAllBytes());
+        }
+    }
+
+    @Test
+    public void shouldNotWriteGzipVariant_whenRejected() throws IOException {
+        final var operation = createOperation();
+        cache.put(operation);
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0");
+
+        final var output = new MockHttpOutputMessage();
+        converter.write(operation, MediaType.APPLICATION_JSON, output);
+
+        assertNull(output.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(objectMapper.writeValueAsBytes(operation), output.getBodyAsBytes());
+    }
+
+    @Test
+    public void shouldUseDistinctStrongETagForGzipVariant() throws IOException {
+        final var operation = createOperation();
+        cache.put(operation);
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        final var eTag = new VersionedETag("operation");
+
+        final var gzipOutput = new MockHttpOutputMessage();
+        gzipOutput.getHeaders().setETag(eTag.get());
+        converter.write(operation, MediaType.APPLICATION_JSON, gzipOutput);
+
+        assertEquals(VersionedETag.gzip(eTag.get()), gzipOutput.getHeaders().getETag());
+        assertTrue(eTag.matches(gzipOutput.getHeaders().getETag()));
+
+        final var weakOutput = new MockHttpOutputMessage();
+        weakOutput.getHeaders().setETag("W/\"weak\"");
+        converter.write(operation, MediaType.APPLICATION_JSON, weakOutput);
+
+        assertEquals("W/\"weak\"", weakOutput.getHeaders().getETag());
+    }
+
+    @Test
+    public void shouldCacheEachInstanceUntilEvicted() throws IOException {
+        final var first = createOperation();
+        final var second = createOperation();
+        second.setKeyword("THL 1");
+        cache.put(first);
+        cache.put(second);
+
+        assertTrue(cache.get(first).isPresent());
+        assertTrue(cache.get(second).isPresent());
+        assertArrayEquals(objectMapper.writeValueAsBytes(first), cache.get(first).get().json());
+
+        cache.evict(first);
+        cache.evict(null);
+
+        assertTrue(cache.get(first).isEmpty());
+        assertTrue(cache.get(second).isPresent());
+        assertTrue(converter.canWrite(OperationDto.class, MediaType.APPLICATION_JSON), "Evicted instances are still serialized on demand");
+    }
+
+    @Test
+    public void shouldSerializeOnDemand_whenInstanceIsNotCached() throws IOException {
+        cache.put(createOperation());
+        final var other = createOperation();
+        other.setKeyword("THL 1");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        final var output = new MockHttpOutputMessage();
+        converter.write(other, MediaType.APPLICATION_JSON, output);
+
+        assertNull(output.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(objectMapper.writeValueAsBytes(other), output.getBodyAsBytes());
+    }
+
+    private OperationDto createOperation() {
+        final var operation = new OperationDto();
+        operation.setKeyword("B 3");
+        operation.setStreet("Musterstraße");
+        operation.setNumber("1");
+        operation.setLocation("Musterstadt");
+        operation.setNote("Brand im Dachstuhl, Brand im Dachstuhl, Brand im Dachstuhl, Brand im Dachstuhl, Brand im Dachstuhl");
+        return operation;
+    }
+}
@@ -0,0 +1,94 @@
+package it.niedermann.fis.dashboard;
+
+import it.niedermann.fis.FisConfiguration;
+import it.niedermann.fis.cache.ResponseBodyCache;
+import it.niedermann.fis.event.EventTopic;
+import it.niedermann.fis.event.StateChangedEvent;
+import it.niedermann.fis.main.model.ClientConfigurationDto;
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.main.model.WeatherDto;
+import it.niedermann.fis.operation.OperationConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DashboardApiImplTest {
+
+    private DashboardApiImpl api;
+    private ClientConfigurationDto parameter;
+    private ResponseBodyCache responseBodyCache;
+
+    @BeforeEach
+    public void setup() {
+        parameter = new ClientConfigurationDto().highlight("Foo");
+        final var fisConfig = mock(FisConfiguration.class);
+        when(fisConfig.client()).thenReturn(parameter);
+        final var config = mock(OperationConfiguration.class);
+        when(config.maxWait()).thenReturn(5_000L);
+        responseBodyCache = mock(ResponseBodyCache.class);
+        api = new DashboardApiImpl(fisConfig, config, responseBodyCache);
+    }
+
+    @Test
+    public void shouldContainParameterInitially() {
+        final var resp = api.getDashboard(null, null).join();
+
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertEquals(parameter, Objects.requireNonNull(resp.getBody()).getParameter());
+        assertFalse(resp.getBody().getProcessing());
+        assertNull(resp.getBody().getOperation());
+        assertNull(resp.getBody().getWeather());
+    }
+
+    @Test
+    public void shouldCombineAllTopicsWithOneETag() {
+        final var eTag = api.getDashboard(null, null).join().getHeaders().getETag();
+        final var operation = new OperationDto().keyword("B 3");
+        final var weather = new WeatherDto().temperature(21f);
+
+        api.onStateChanged(new StateChangedEvent(EventTopic.PROCESSING, true));
+        api.onStateChanged(new StateChangedEvent(EventTopic.OPERATION, operation));
+        api.onStateChanged(new StateChangedEvent(EventTopic.WEATHER, weather));
+        api.onStateChanged(new StateChangedEvent(EventTopic.EXPIRED, operation));
+
+        final var resp = api.getDashboard(eTag, null).join();
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertNotEquals(eTag, resp.getHeaders().getETag());
+        assertTrue(Objects.requireNonNull(resp.getBody()).getProcessing());
+        assertEquals(operation, resp.getBody().getOperation());
+        assertEquals(weather, resp.getBody().getWeather());
+        assertEquals(parameter, resp.getBody().getParameter());
+        verify(responseBodyCache).put(resp.getBody());
+
+        assertEquals(HttpStatus.NOT_MODIFIED, api.getDashboard(resp.getHeaders().getETag(), null).join().getStatusCode());
+    }
+
+    @Test
+    public void shouldKeepETag_whenNothingChanged() {
+        final var eTag = api.getDashboard(null, null).join().getHeaders().getETag();
+
+        api.onStateChanged(new StateChangedEvent(EventTopic.PROCESSING, false));
+        api.onStateChanged(new StateChangedEvent(EventTopic.PARAMETER, parameter));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, api.getDashboard(eTag, null).join().getStatusCode());
+    }
+
+    @Test
+    public void shouldParkLongPollingRequests_untilAnyTopicChanges() {
+        final var eTag = api.getDashboard(null, null).join().getHeaders().getETag();
+
+        final var resp = api.getDashboard(eTag, "wait=10");
+        assertFalse(resp.isDone(), "Should park request while nothing changed");
+
+        api.onStateChanged(new StateChangedEvent(EventTopic.WEATHER, new WeatherDto().temperature(5f)));
+
+        assertTrue(resp.isDone(), "Should release request as soon as any topic changes");
+        assertEquals(HttpStatus.OK, resp.join().getStatusCode());
+        assertEquals(5f, Objects.requireNonNull(resp.join().getBody()).getWeather().getTemperature());
+    }
+}
@@ -0,0 +1,117 @@
+package it.niedermann.fis.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.main.model.WeatherDto;
+import it.niedermann.fis.main.model.WeatherIconDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+public class EventApiImplTest {
+
+    private EventApiImpl api;
+    private MockMvc mvc;
+
+    @BeforeEach
+    public void setup() {
+        final var config = mock(EventConfiguration.class);
+        when(config.timeout()).thenReturn(60_000L);
+        when(config.replaySize()).thenReturn(16);
+        when(config.bufferSize()).thenReturn(16);
+        when(config.sendTimeout()).thenReturn(5_000L);
+        api = new EventApiImpl(config, new ObjectMapper(), new SimpleMeterRegistry(), Executors.newCachedThreadPool());
+        mvc = MockMvcBuilders.standaloneSetup(api).build();
+    }
+
+    @Test
+    public void shouldSendCurrentStateWhenConnecting() throws Exception {
+        final var response = connect(null);
+        awaitContent(response, "event:processing");
+        assertTrue(response.getContentAsString().contains("event:operation\ndata:null\n"));
+        assertTrue(response.getContentAsString().contains("event:processing\ndata:false\n"));
+    }
+
+    @Test
+    public void shouldPushStateChanges() throws Exception {
+        final var response = connect(null);
+
+        api.onStateChanged(new StateChangedEvent(EventTopic.WEATHER, createWeather(21.5f)));
+
+        awaitContent(response, "event:weather");
+        assertTrue(response.getContentAsString().contains("\"temperature\":21.5"));
+    }
+
+    @Test
+    public void shouldOnlySendMissedEventsWhenReconnecting() throws Exception {
+        final var first = connect(null);
+        api.onStateChanged(new StateChangedEvent(EventTopic.WEATHER, createWeather(1f)));
+        awaitContent(first, "event:weather");
+        final var matcher = Pattern.compile("id:(\\S+-1)\n").matcher(first.getContentAsString());
+        assertTrue(matcher.find());
+        final var lastEventId = matcher.group(1);
+
+        api.onStateChanged(new StateChangedEvent(EventTopic.WEATHER, createWeather(2f)));
+        api.onStateChanged(new StateChangedEvent(EventTopic.WEATHER, createWeather(3f)));
+
+        final var second = connect(lastEventId);
+        awaitContent(second, "\"temperature\":3.0");
+        final var content = second.getContentAsString();
+        assertTrue(content.contains("\"temperature\":2.0"));
+        assertFalse(content.contains("\"temperature\":1.0"), "Already received events must not be sent again");
+        assertFalse(content.contains("event:operation"), "Already received state must not be sent again");
+    }
+
+    @Test
+    public void shouldSendCurrentStateWhenReconnectingWithUnknownId() throws Exception {
+        api.onStateChanged(new StateChangedEvent(EventTopic.WEATHER, createWeather(1f)));
+
+        final var response = connect("previous-instance-42");
+
+        awaitContent(response, "event:weather");
+        assertTrue(response.getContentAsString().contains("event:operation"));
+    }
+
+    private MockHttpServletResponse connect(String lastEventId) throws Exception {
+        final var request = get("/api/events");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        return mvc.perform(request)
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+    }
+
+    /**
+     * Events are sent asynchronously
+     */
+    private void awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        final var deadline = System.currentTimeMillis() + 5_000;
+        while (!response.getContentAsString().contains(expected)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Expected \"" + expected + "\" in " + response.getContentAsString());
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private WeatherDto createWeather(float temperature) {
+        final var weather = new WeatherDto();
+        weather.setTemperature(temperature);
+        weather.setIcon(WeatherIconDto.DAY_CLEAR);
+        weather.setIsDay(true);
+        return weather;
+    }
+}
@@ -0,0 +1,79 @@
+package it.niedermann.fis.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.main.model.OperationDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class EventWebSocketHandlerTest {
+
+    private EventWebSocketHandler handler;
+
+    @BeforeEach
+    public void setup() {
+        final var config = mock(EventConfiguration.class);
+        when(config.sendTimeout()).thenReturn(5_000L);
+        handler = new EventWebSocketHandler(config, new ObjectMapper(), new SimpleMeterRegistry(), Executors.newCachedThreadPool());
+    }
+
+    @Test
+    public void shouldSendCurrentStateWhenConnecting() throws Exception {
+        final var session = connect();
+
+        verify(session, timeout(1_000)).sendMessage(new TextMessage("{\"topic\":\"operation\",\"data\":null}"));
+        verify(session, timeout(1_000)).sendMessage(new TextMessage("{\"topic\":\"processing\",\"data\":false}"));
+    }
+
+    @Test
+    public void shouldSendTheSameFrameToAllSessions() throws Exception {
+        final var first = connect();
+        final var second = connect();
+        // Otherwise the pending initial state might be replaced by the change
+        verify(first, timeout(1_000).times(2)).sendMessage(any());
+        verify(second, timeout(1_000).times(2)).sendMessage(any());
+        final var operation = new OperationDto();
+        operation.setKeyword("B 3");
+
+        handler.onStateChanged(new StateChangedEvent(EventTopic.OPERATION, operation));
+
+        final var firstCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        final var secondCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(first, timeout(1_000).times(3)).sendMessage(firstCaptor.capture());
+        verify(second, timeout(1_000).times(3)).sendMessage(secondCaptor.capture());
+        final var frame = firstCaptor.getAllValues().get(2);
+        assertSame(frame, secondCaptor.getAllValues().get(2), "Frame should be serialized only once");
+        assertTrue(frame.getPayload().startsWith("{\"topic\":\"operation\",\"data\":{\"keyword\":\"B 3\""));
+    }
+
+    @Test
+    public void shouldNotSendToClosedSessions() throws Exception {
+        final var session = connect();
+        verify(session, timeout(1_000).times(2)).sendMessage(any());
+
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        handler.onStateChanged(new StateChangedEvent(EventTopic.PROCESSING, true));
+
+        Thread.sleep(100);
+        verify(session, times(2)).sendMessage(any());
+    }
+
+    private WebSocketSession connect() {
+        final var session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(UUID.randomUUID().toString());
+        when(session.isOpen()).thenReturn(true);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+}
@@ -0,0 +1,119 @@
+package it.niedermann.fis.event;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SseClientTest {
+
+    @Test
+    public void shouldCloseClientWhenBufferIsExceeded() throws Exception {
+        final var emitter = mock(SseEmitter.class);
+        final var sending = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return null;
+        }).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+        final var completed = awaitCompletion(emitter);
+        final var closed = new AtomicBoolean(false);
+        final var client = new SseClient(emitter, 2, 5_000L, Executors.newSingleThreadExecutor(), c -> closed.set(true));
+
+        assertTrue(client.offer(SseEmitter.event().data("1")));
+        sending.await();
+        assertTrue(client.offer(SseEmitter.event().data("2")));
+        assertTrue(client.offer(SseEmitter.event().data("3")));
+        assertFalse(client.offer(SseEmitter.event().data("4")), "Slow client should be closed when buffer is exceeded");
+        release.countDown();
+
+        assertTrue(closed.get());
+        assertTrue(completed.await(1, TimeUnit.SECONDS));
+        assertFalse(client.offer(SseEmitter.event().data("5")), "Closed client should not accept any more events");
+    }
+
+    @Test
+    public void shouldSendEventsInOrder() throws Exception {
+        final var emitter = mock(SseEmitter.class);
+        final var client = new SseClient(emitter, 8, 5_000L, Runnable::run, c -> {
+        });
+        final var first = SseEmitter.event().data("1");
+        final var second = SseEmitter.event().data("2");
+
+        client.offer(first);
+        client.offer(second);
+
+        final var inOrder = inOrder(emitter);
+        inOrder.verify(emitter).send(first);
+        inOrder.verify(emitter).send(second);
+    }
+
+    @Test
+    public void shouldCloseStalledClientWithoutWaitingForIt() throws Exception {
+        final var emitter = mock(SseEmitter.class);
+        final var sending = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return null;
+        }).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+        final var completed = awaitCompletion(emitter);
+        final var closed = new AtomicBoolean(false);
+        final var client = new SseClient(emitter, 8, 100L, Executors.newSingleThreadExecutor(), c -> closed.set(true));
+
+        client.offer(SseEmitter.event().data("1"));
+        sending.await();
+        Thread.sleep(200);
+
+        assertFalse(client.offer(SseEmitter.event().data("2")), "Stalled client should be closed");
+        assertTrue(closed.get());
+        assertEquals(1, completed.getCount(), "Closing should not wait for the stalled send");
+
+        release.countDown();
+        assertTrue(completed.await(1, TimeUnit.SECONDS));
+        verify(emitter, times(1)).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    public void shouldNotQueueHeartbeats() throws Exception {
+        final var emitter = mock(SseEmitter.class);
+        final Queue<Runnable> pendingTasks = new LinkedList<>();
+        final var closed = new AtomicBoolean(false);
+        final var client = new SseClient(emitter, 4, 5_000L, pendingTasks::add, c -> closed.set(true));
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(client.offer(SseEmitter.event().data(Integer.toString(i))));
+        }
+        client.heartbeat();
+        client.heartbeat();
+        pendingTasks.forEach(Runnable::run);
+
+        assertFalse(closed.get(), "Heartbeats should not count against the buffer");
+        verify(emitter, times(5)).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    /**
+     * {@link SseEmitter#complete()} is synchronized, verifying it with a timeout would block the client while polling
+     */
+    private static CountDownLatch awaitCompletion(SseEmitter emitter) {
+        final var completed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            completed.countDown();
+            return null;
+        }).when(emitter).complete();
+        return completed;
+    }
+}
@@ -0,0 +1,165 @@
+package it.niedermann.fis.event;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class WebSocketClientTest {
+
+    @Test
+    public void shouldKeepOnlyTheNewestPendingMessageOfEachTopic() throws Exception {
+        final var session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        final Queue<Runnable> pendingTasks = new LinkedList<>();
+        final var client = new WebSocketClient(session, 5_000L, pendingTasks::add);
+        final var operation = new TextMessage("operation");
+        final var outdatedWeather = new TextMessage("weather 1");
+        final var processing = new TextMessage("processing");
+        final var weather = new TextMessage("weather 2");
+
+        assertTrue(client.offer(EventTopic.OPERATION, operation));
+        assertTrue(client.offer(EventTopic.WEATHER, outdatedWeather));
+        assertTrue(client.offer(EventTopic.PROCESSING, processing));
+        assertFalse(client.offer(EventTopic.WEATHER, weather), "Should report replacing the pending message");
+        pendingTasks.forEach(Runnable::run);
+
+        verify(session, never()).sendMessage(outdatedWeather);
+        final var inOrder = inOrder(session);
+        inOrder.verify(session).sendMessage(operation);
+        inOrder.verify(session).sendMessage(processing);
+        inOrder.verify(session).sendMessage(weather);
+    }
+
+    @Test
+    public void shouldNotEvictOtherTopicsByABurstOfOneTopic() throws Exception {
+        final var session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        final Queue<Runnable> pendingTasks = new LinkedList<>();
+        final var client = new WebSocketClient(session, 5_000L, pendingTasks::add);
+        final var operation = new TextMessage("operation");
+
+        client.offer(EventTopic.OPERATION, operation);
+        for (int i = 0; i < 100; i++) {
+            client.offer(EventTopic.WEATHER, new TextMessage("weather " + i));
+        }
+        pendingTasks.forEach(Runnable::run);
+
+        verify(session).sendMessage(operation);
+        verify(session).sendMessage(new TextMessage("weather 99"));
+        verify(session, times(2)).sendMessage(any());
+    }
+
+    @Test
+    public void shouldKeepAllPendingMessagesOfTopicsWhichAreNotRetained() throws Exception {
+        final var session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        final Queue<Runnable> pendingTasks = new LinkedList<>();
+        final var client = new WebSocketClient(session, 5_000L, pendingTasks::add);
+        final var operation = new TextMessage("operation");
+        final var first = new TextMessage("expired 1");
+        final var second = new TextMessage("expired 2");
+
+        assertTrue(client.offer(EventTopic.EXPIRED, first));
+        assertTrue(client.offer(EventTopic.OPERATION, operation));
+        assertTrue(client.offer(EventTopic.EXPIRED, second), "Should not replace a message which is not retained");
+        pendingTasks.forEach(Runnable::run);
+
+        final var inOrder = inOrder(session);
+        inOrder.verify(session).sendMessage(first);
+        inOrder.verify(session).sendMessage(operation);
+        inOrder.verify(session).sendMessage(second);
+    }
+
+    @Test
+    public void shouldDropOldestPendingMessagesOfTopicsWhichAreNotRetained() throws Exception {
+        final var session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        final Queue<Runnable> pendingTasks = new LinkedList<>();
+        final var client = new WebSocketClient(session, 5_000L, pendingTasks::add);
+        final var operation = new TextMessage("operation");
+
+        client.offer(EventTopic.OPERATION, operation);
+        for (int i = 0; i < WebSocketClient.MAX_PENDING_NOTIFICATIONS; i++) {
+            assertTrue(client.offer(EventTopic.EXPIRED, new TextMessage("expired " + i)));
+        }
+        assertFalse(client.offer(EventTopic.EXPIRED, new TextMessage("expired " + WebSocketClient.MAX_PENDING_NOTIFICATIONS)), "Should report dropping the oldest message");
+        pendingTasks.forEach(Runnable::run);
+
+        verify(session).sendMessage(operation);
+        verify(session, never()).sendMessage(new TextMessage("expired 0"));
+        verify(session).sendMessage(new TextMessage("expired " + WebSocketClient.MAX_PENDING_NOTIFICATIONS));
+        verify(session, times(WebSocketClient.MAX_PENDING_NOTIFICATIONS + 1)).sendMessage(any());
+    }
+
+    @Test
+    public void shouldCloseSessionWhenSendingFails() throws Exception {
+        final var session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        doThrow(new IOException("Broken pipe")).when(session).sendMessage(any());
+        final var client = new WebSocketClient(session, 5_000L, Runnable::run);
+
+        client.offer(EventTopic.OPERATION, new TextMessage("1"));
+
+        verify(session).close(any());
+    }
+
+    @Test
+    public void shouldNotDropMessagesForPings() throws Exception {
+        final var session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        final Queue<Runnable> pendingTasks = new LinkedList<>();
+        final var client = new WebSocketClient(session, 5_000L, pendingTasks::add);
+        final var first = new TextMessage("1");
+        final var second = new TextMessage("2");
+
+        assertTrue(client.offer(EventTopic.OPERATION, first));
+        client.ping();
+        assertTrue(client.offer(EventTopic.PROCESSING, second));
+        client.ping();
+        pendingTasks.forEach(Runnable::run);
+
+        final var inOrder = inOrder(session);
+        inOrder.verify(session).sendMessage(first);
+        inOrder.verify(session).sendMessage(second);
+        inOrder.verify(session).sendMessage(any(PingMessage.class));
+        verify(session, times(3)).sendMessage(any());
+    }
+
+    @Test
+    public void shouldCloseStalledSessionOnceTheSendReturned() throws Exception {
+        final var session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        final var sending = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return null;
+        }).when(session).sendMessage(any());
+        final var client = new WebSocketClient(session, 100L, Executors.newSingleThreadExecutor());
+
+        client.offer(EventTopic.OPERATION, new TextMessage("1"));
+        sending.await();
+        Thread.sleep(200);
+
+        assertFalse(client.offer(EventTopic.OPERATION, new TextMessage("2")), "Stalled session should not accept any more messages");
+        verify(session, never()).close(any());
+
+        release.countDown();
+        verify(session, timeout(1_000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(session, times(1)).sendMessage(any());
+    }
+}
@@ -0,0 +1,99 @@
+package it.niedermann.fis.executor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.executor.ExecutorConfiguration.Pool;
+import it.niedermann.fis.executor.ExecutorConfiguration.RejectionPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedExecutorsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CountDownLatch release;
+    private ThreadPoolExecutor executor;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    public void teardown() {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldNameDaemonThreads() throws Exception {
+        executor = BoundedExecutors.create("ingest", new Pool(1, 1, 0, RejectionPolicy.ABORT), meterRegistry);
+
+        final var thread = CompletableFuture.supplyAsync(Thread::currentThread, executor).get(1, TimeUnit.SECONDS);
+
+        assertEquals("ingest-1", thread.getName());
+        assertTrue(thread.isDaemon());
+    }
+
+    @Test
+    public void shouldDiscardAndCountTasksWhileBusy() throws Exception {
+        executor = BoundedExecutors.create("weather", new Pool(1, 1, 0, RejectionPolicy.DISCARD), meterRegistry);
+        final var started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        final var discardedRan = new AtomicBoolean();
+        executor.execute(() -> discardedRan.set(true));
+
+        assertEquals(1, meterRegistry.get("fis.executor.rejected").tag("name", "weather").counter().count());
+        assertEquals(1, meterRegistry.get("executor.active").tag("name", "weather").gauge().value());
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertFalse(discardedRan.get());
+    }
+
+    @Test
+    public void shouldQueueUpToCapacityBeforeApplyingRejectionPolicy() {
+        executor = BoundedExecutors.create("sms", new Pool(1, 1, 1, RejectionPolicy.ABORT), meterRegistry);
+        executor.execute(() -> await(release));
+        executor.execute(() -> await(release));
+
+        assertEquals(1, meterRegistry.get("executor.queued").tag("name", "sms").gauge().value());
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> await(release)));
+        assertEquals(1, meterRegistry.get("fis.executor.rejected").tag("name", "sms").counter().count());
+    }
+
+    @Test
+    public void shouldRunOnCallerIfSaturated() {
+        executor = BoundedExecutors.create("parser", new Pool(1, 1, 0, RejectionPolicy.CALLER_RUNS), meterRegistry);
+        executor.execute(() -> await(release));
+
+        final var caller = new Thread[1];
+        executor.execute(() -> caller[0] = Thread.currentThread());
+
+        assertSame(Thread.currentThread(), caller[0]);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
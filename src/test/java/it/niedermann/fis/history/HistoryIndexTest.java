@@ -0,0 +1,90 @@
+package it.niedermann.fis.history;
+
+import it.niedermann.fis.main.model.OperationDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryIndexTest {
+
+    @Test
+    public void shouldReturnPagesLatestFirst() {
+        final var index = createIndex(5);
+
+        final var page0 = index.query(null, null, null, 0, 2);
+        final var page2 = index.query(null, null, null, 2, 2);
+        final var page3 = index.query(null, null, null, 3, 2);
+
+        assertEquals(List.of(5L, 4L), ids(page0));
+        assertEquals(List.of(1L), ids(page2));
+        assertEquals(List.of(), ids(page3));
+        assertEquals(5, page0.total());
+        assertEquals(5, page3.total());
+    }
+
+    @Test
+    public void shouldFilterByKeywordCaseInsensitive() {
+        final var index = createIndex(5);
+
+        final var page = index.query(" b 1 ", null, null, 0, 10);
+
+        assertEquals(List.of(5L, 3L, 1L), ids(page));
+        assertEquals(3, page.total());
+        assertEquals(0, index.query("Unknown", null, null, 0, 10).total());
+    }
+
+    @Test
+    public void shouldFilterByTime() {
+        final var index = createIndex(5);
+
+        final var page = index.query(null, Instant.ofEpochMilli(2_000), Instant.ofEpochMilli(4_000), 0, 10);
+
+        assertEquals(List.of(3L, 2L), ids(page), "Should include the lower and exclude the upper limit");
+        assertEquals(List.of(5L, 3L), ids(index.query("B 1", Instant.ofEpochMilli(3_000), null, 0, 10)), "Should combine keyword and time");
+    }
+
+    @Test
+    public void shouldNotModifyExistingIndex() {
+        final var index = createIndex(2);
+
+        final var added = index.with(createEntry(3));
+        final var retained = added.retainAfter(Instant.ofEpochMilli(2_000));
+
+        assertEquals(2, index.size());
+        assertEquals(3, added.size());
+        assertEquals(List.of(3L, 2L), ids(retained.query(null, null, null, 0, 10)));
+    }
+
+    @Test
+    public void shouldKeepEntriesOrderedByTimeWhenAdding() {
+        final var index = createIndex(2)
+                .with(createEntry(4))
+                .with(new HistoryEntry(3, Instant.ofEpochMilli(1_500), new OperationDto().keyword("B 1")));
+
+        assertEquals(List.of(4L, 2L, 3L, 1L), ids(index.query(null, null, null, 0, 10)));
+        assertEquals(List.of(3L, 1L), ids(index.query("B 1", null, Instant.ofEpochMilli(2_000), 0, 10)));
+    }
+
+    private static HistoryIndex createIndex(int count) {
+        final var entries = new ArrayList<HistoryEntry>();
+        for (int i = count; i > 0; i--) {
+            entries.add(createEntry(i));
+        }
+        return HistoryIndex.of(entries);
+    }
+
+    /**
+     * Alternates the keywords <code>B 1</code> and <code>THL 1</code>
+     */
+    private static HistoryEntry createEntry(long id) {
+        return new HistoryEntry(id, Instant.ofEpochMilli(id * 1_000), new OperationDto().keyword(id % 2 == 1 ? "B 1" : "THL 1"));
+    }
+
+    private static List<Long> ids(HistoryIndex.HistoryPage page) {
+        return page.entries().stream().map(HistoryEntry::id).toList();
+    }
+}
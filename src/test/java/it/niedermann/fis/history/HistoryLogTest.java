@@ -0,0 +1,149 @@
+package it.niedermann.fis.history;
+
+import it.niedermann.fis.main.model.OperationDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldReadAppendedEntriesAfterReopening() throws IOException {
+        final var entry1 = createEntry(1, Instant.ofEpochMilli(1_000), "B 3");
+        final var entry2 = createEntry(2, Instant.ofEpochMilli(2_000), "THL 1");
+        try (final var log = new HistoryLog(directory, 1024)) {
+            assertEquals(List.of(), log.open());
+            log.append(entry1);
+            log.append(entry2);
+        }
+
+        try (final var log = new HistoryLog(directory, 1024)) {
+            assertEquals(List.of(entry1, entry2), log.open());
+        }
+    }
+
+    @Test
+    public void shouldCutOffTornWrites() throws IOException {
+        final var entry = createEntry(1, Instant.ofEpochMilli(1_000), "B 3");
+        try (final var log = new HistoryLog(directory, 1024)) {
+            log.open();
+            log.append(entry);
+        }
+        final var segment = directory.resolve("0000000000.log");
+        final var validSize = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        try (final var log = new HistoryLog(directory, 1024)) {
+            assertEquals(List.of(entry), log.open());
+            assertEquals(validSize, Files.size(segment), "Should truncate the incomplete frame");
+            final var next = createEntry(2, Instant.ofEpochMilli(2_000), "THL 1");
+            log.append(next);
+        }
+
+        try (final var log = new HistoryLog(directory, 1024)) {
+            assertEquals(2, log.open().size(), "Should append after the last valid frame");
+        }
+    }
+
+    @Test
+    public void shouldRollSegmentsAndCompactThem() throws IOException {
+        try (final var log = new HistoryLog(directory, 1024)) {
+            log.open();
+            for (int i = 1; i <= 50; i++) {
+                log.append(createEntry(i, Instant.ofEpochMilli(i * 1_000L), "B " + i));
+            }
+            final var segments = countSegments();
+            assertTrue(segments > 2, "Should start new segments when exceeding the segment size");
+
+            final var dropped = log.compact(Instant.ofEpochMilli(10_000));
+
+            assertEquals(9, dropped, "Should drop entries older than the retention");
+            assertEquals(2, countSegments(), "Should merge all but the active segment");
+            log.append(createEntry(51, Instant.ofEpochMilli(51_000), "B 51"));
+        }
+
+        try (final var log = new HistoryLog(directory, 1024)) {
+            final var entries = log.open();
+            assertEquals(42, entries.size());
+            assertEquals(10, entries.get(0).id());
+            assertEquals(51, entries.get(entries.size() - 1).id());
+        }
+    }
+
+    @Test
+    public void shouldSkipLeftoversOfInterruptedCompaction() throws IOException {
+        final var entry1 = createEntry(1, Instant.ofEpochMilli(1_000), "B 3");
+        final var entry2 = createEntry(2, Instant.ofEpochMilli(2_000), "THL 1");
+        try (final var log = new HistoryLog(directory, 1)) {
+            log.open();
+            log.append(entry1);
+            log.append(entry2);
+        }
+        // Simulates a crash after the compacted segment has been written, but before the old ones have been deleted
+        Files.write(directory.resolve("0000000000.log"), Files.readAllBytes(directory.resolve("0000000001.log")), StandardOpenOption.APPEND);
+
+        try (final var log = new HistoryLog(directory, 1)) {
+            assertEquals(List.of(entry1, entry2), log.open());
+        }
+    }
+
+    @Test
+    public void shouldSkipEntriesWhichCanNotBeDecoded() throws IOException {
+        final var entry1 = createEntry(1, Instant.ofEpochMilli(1_000), "B 3");
+        final var entry2 = createEntry(2, Instant.ofEpochMilli(2_000), "THL 1");
+        try (final var log = new HistoryLog(directory, 1024)) {
+            log.open();
+            log.append(entry1);
+        }
+        // Intact frame of an entry written by a newer version
+        final var data = HistoryCodec.encode(createEntry(42, Instant.ofEpochMilli(1_500), "B 4"));
+        data[0] = HistoryCodec.VERSION + 1;
+        final var crc = new CRC32();
+        crc.update(data);
+        Files.write(directory.resolve("0000000000.log"), ByteBuffer.allocate(Integer.BYTES * 2 + data.length)
+                .putInt(data.length)
+                .putInt((int) crc.getValue())
+                .put(data)
+                .array(), StandardOpenOption.APPEND);
+
+        try (final var log = new HistoryLog(directory, 1024)) {
+            assertEquals(List.of(entry1), log.open(), "Should skip the undecodable entry");
+            log.append(entry2);
+        }
+
+        try (final var log = new HistoryLog(directory, 1024)) {
+            assertEquals(List.of(entry1, entry2), log.open(), "Should read the entries after the undecodable one");
+        }
+    }
+
+    private long countSegments() throws IOException {
+        try (final var files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static HistoryEntry createEntry(long id, Instant time, String keyword) {
+        return new HistoryEntry(id, time, new OperationDto()
+                .keyword(keyword)
+                .tags(List.of("Foo", "Bar"))
+                .vehicles(List.of())
+                .note("Brand im Dachstuhl ⚠")
+                .street("Musterstraße")
+                .number("1")
+                .location("12345 Musterstadt")
+                .obj(null));
+    }
+}
@@ -0,0 +1,90 @@
+package it.niedermann.fis.http;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import retrofit2.Call;
+import retrofit2.http.GET;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OutboundHttpClientTest {
+
+    private MockWebServer server;
+    private OutboundHttpClient client;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        final var config = mock(HttpConfiguration.class);
+        when(config.connectTimeout()).thenReturn(1_000L);
+        when(config.readTimeout()).thenReturn(1_000L);
+        when(config.callTimeout()).thenReturn(2_000L);
+        when(config.maxIdleConnections()).thenReturn(4);
+        when(config.keepAlive()).thenReturn(60_000L);
+        when(config.maxRequestsPerHost()).thenReturn(4);
+        client = new OutboundHttpClient(config, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void shouldSendCallsAsynchronously() throws IOException {
+        server.enqueue(new MockResponse().setBody("pong"));
+        final var service = client.createService(server.url("/").toString(), PingService.class);
+
+        final var response = client.send(service.ping()).join();
+
+        assertTrue(response.isSuccessful());
+        assertEquals("pong", response.body().string());
+    }
+
+    @Test
+    public void shouldFailWhenTheServerDoesNotRespondInTime() {
+        server.enqueue(new MockResponse().setBody("pong").setHeadersDelay(5, TimeUnit.SECONDS));
+        final var service = client.createService(server.url("/").toString(), PingService.class);
+
+        final var exception = assertThrows(CompletionException.class, () -> client.send(service.ping()).join());
+        assertInstanceOf(IOException.class, exception.getCause());
+    }
+
+    @Test
+    public void shouldReuseWarmedUpConnection() throws Exception {
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse().setBody("pong"));
+        final var baseUrl = server.url("/").toString();
+
+        client.warmUp(baseUrl);
+        assertEquals("HEAD", server.takeRequest(1, TimeUnit.SECONDS).getMethod());
+        // The connection is only released to the pool after the warm up response has been closed
+        for (int i = 0; i < 50 && client.getIdleConnectionCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+
+        client.send(client.createService(baseUrl, PingService.class).ping()).join().body().close();
+
+        final var request = server.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals("GET", request.getMethod());
+        assertEquals(1, request.getSequenceNumber(), "Request should reuse the warmed up connection");
+        assertEquals(1, client.getConnectionCount());
+    }
+
+    interface PingService {
+        @GET("ping")
+        Call<ResponseBody> ping();
+    }
+}
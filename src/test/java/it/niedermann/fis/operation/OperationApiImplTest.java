@@ -1,5 +1,10 @@
 package it.niedermann.fis.operation;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.cache.ResponseBodyCache;
+import it.niedermann.fis.event.EventTopic;
+import it.niedermann.fis.event.StateChangedEvent;
+import it.niedermann.fis.history.OperationHistoryRepository;
 import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.parser.OperationParserRepository;
 import it.niedermann.fis.operation.remote.ftp.OperationFTPRepository;
@@ -7,9 +12,12 @@ import it.niedermann.fis.operation.remote.notification.OperationNotificationRepo
 import org.apache.commons.net.ftp.FTPFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 
 import java.io.File;
+import java.time.Instant;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -26,25 +34,39 @@ public class OperationApiImplTest {
     private OperationFTPRepository operationFTPRepository;
     private OperationNotificationRepository operationNotificationRepository;
     private OperationParserRepository operationParserRepository;
+    private OperationSnapshotRepository snapshotRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     public void setup() {
         config = mock(OperationConfiguration.class);
         when(config.duration()).thenReturn(500L);
+        when(config.maxWait()).thenReturn(5_000L);
         operationFTPRepository = mock(OperationFTPRepository.class);
         operationNotificationRepository = mock(OperationNotificationRepository.class);
         operationParserRepository = mock(OperationParserRepository.class);
+        snapshotRepository = mock(OperationSnapshotRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        meterRegistry = new SimpleMeterRegistry();
         this.api = new OperationApiImpl(
                 config,
                 operationFTPRepository,
                 operationNotificationRepository,
-                operationParserRepository
+                operationParserRepository,
+                mock(OperationHistoryRepository.class),
+                new OperationStateStore(),
+                new OperationExpiryScheduler(),
+                snapshotRepository,
+                eventPublisher,
+                mock(ResponseBodyCache.class),
+                meterRegistry
         );
     }
 
     @Test
     public void shouldNotHaveAnyActiveOperationsBeforePolling() {
-        final var resp = api.getOperation("");
+        final var resp = api.getOperation("", null).join();
         assertEquals("Asserting no active operation by default", HttpStatus.NO_CONTENT, resp.getStatusCode());
         assertNull("Asserting no active operation by default", resp.getBody());
     }
@@ -55,7 +77,7 @@ public class OperationApiImplTest {
 
         api.pollOperations();
 
-        final var resp = api.getOperation("");
+        final var resp = api.getOperation("", null).join();
         assertEquals("Should have no active operation when no FTP file is present", HttpStatus.NO_CONTENT, resp.getStatusCode());
         assertNull("Should have no active operation when no FTP file is present", resp.getBody());
     }
@@ -67,7 +89,7 @@ public class OperationApiImplTest {
 
         api.pollOperations();
 
-        final var resp = api.getOperation("");
+        final var resp = api.getOperation("", null).join();
         assertEquals("Should have no active operation when FTP download fails", HttpStatus.NO_CONTENT, resp.getStatusCode());
         assertNull("Should have no active operation when FTP download fails", resp.getBody());
     }
@@ -80,7 +102,7 @@ public class OperationApiImplTest {
 
         api.pollOperations();
 
-        final var resp = api.getOperation("");
+        final var resp = api.getOperation("", null).join();
         assertEquals("Should have no active operation when parsing fails", HttpStatus.NO_CONTENT, resp.getStatusCode());
         assertNull("Should have no active operation when parsing fails", resp.getBody());
     }
@@ -94,7 +116,7 @@ public class OperationApiImplTest {
 
         api.pollOperations();
 
-        final var operation = api.getOperation("");
+        final var operation = api.getOperation("", null).join();
         assertEquals("Should return an active operation when available", HttpStatus.OK, operation.getStatusCode());
         assertNotNull("Should return an active operation when available", operation.getBody());
     }
@@ -115,6 +137,82 @@ public class OperationApiImplTest {
         verify(operationNotificationRepository, times(2)).accept(any(OperationDto.class));
     }
 
+    @Test
+    public void shouldRecordMetrics_whenOperationAvailable() {
+        when(operationFTPRepository.poll()).thenReturn(Optional.of(createFTPFile("Foo.pdf", now())));
+        when(operationFTPRepository.awaitUploadCompletion(any())).thenReturn(Optional.of(mock(FTPFile.class)));
+        when(operationFTPRepository.download(any())).thenReturn(Optional.of(mock(File.class)));
+        when(operationParserRepository.parse(any())).thenReturn(Optional.of(mock(OperationDto.class)));
+
+        assertEquals("Should have no active operation before polling", 0d, meterRegistry.get("fis.operation.active").gauge().value());
+
+        api.pollOperations();
+
+        assertEquals("Should measure the alarm latency", 1L, meterRegistry.get("fis.operation.alarm").timer().count());
+        assertEquals("Should count the published operation", 1d, meterRegistry.get("fis.operation.published").counter().count());
+        assertEquals("Should have an active operation after polling", 1d, meterRegistry.get("fis.operation.active").gauge().value());
+    }
+
+    @Test
+    public void shouldRespondNotModifiedImmediately_whenETagMatchesWithoutWaiting() {
+        final var eTag = api.getOperation(null, null).join().getHeaders().getETag();
+
+        final var resp = api.getOperation(eTag, null);
+
+        assertTrue("Should not park requests without Prefer header", resp.isDone());
+        assertEquals("Should respond with not modified", HttpStatus.NOT_MODIFIED, resp.join().getStatusCode());
+    }
+
+    @Test
+    public void shouldParkLongPollingRequests_untilStateChanges() {
+        when(operationFTPRepository.poll()).thenReturn(Optional.of(createFTPFile("Foo.pdf", now())));
+        when(operationFTPRepository.awaitUploadCompletion(any())).thenReturn(Optional.of(mock(FTPFile.class)));
+        when(operationFTPRepository.download(any())).thenReturn(Optional.of(mock(File.class)));
+        when(operationParserRepository.parse(any())).thenReturn(Optional.of(mock(OperationDto.class)));
+        final var eTag = api.getOperation(null, null).join().getHeaders().getETag();
+
+        final var resp = api.getOperation(eTag, "wait=10");
+        assertFalse("Should park request while nothing changed", resp.isDone());
+
+        api.pollOperations();
+
+        assertTrue("Should release request as soon as the state changes", resp.isDone());
+        assertEquals("Should respond with the new state", HttpStatus.ACCEPTED, resp.join().getStatusCode());
+        assertNotEquals("Should respond with a new ETag", eTag, resp.join().getHeaders().getETag());
+    }
+
+    @Test
+    public void shouldRespondNotModified_whenLongPollingTimesOut() {
+        when(config.maxWait()).thenReturn(100L);
+        final var eTag = api.getOperation(null, null).join().getHeaders().getETag();
+
+        final var resp = api.getOperation(eTag, "wait=10");
+
+        assertEquals("Should respond with not modified after the maximum wait time", HttpStatus.NOT_MODIFIED, resp.join().getStatusCode());
+        assertEquals("Should respond with the same ETag", eTag, resp.join().getHeaders().getETag());
+    }
+
+    @Test
+    public void shouldPublishStateChanges() throws InterruptedException {
+        final var operation = mock(OperationDto.class);
+        when(operationFTPRepository.poll()).thenReturn(Optional.of(createFTPFile("Foo.pdf", now())));
+        when(operationFTPRepository.awaitUploadCompletion(any())).thenReturn(Optional.of(mock(FTPFile.class)));
+        when(operationFTPRepository.download(any())).thenReturn(Optional.of(mock(File.class)));
+        when(operationParserRepository.parse(any())).thenReturn(Optional.of(operation));
+
+        api.pollOperations();
+
+        final var inOrder = inOrder(eventPublisher);
+        inOrder.verify(eventPublisher).publishEvent(new StateChangedEvent(EventTopic.PROCESSING, true));
+        inOrder.verify(eventPublisher).publishEvent(new StateChangedEvent(EventTopic.OPERATION, operation));
+        inOrder.verify(eventPublisher).publishEvent(new StateChangedEvent(EventTopic.PROCESSING, false));
+
+        Thread.sleep(config.duration() + 500L);
+
+        verify(eventPublisher).publishEvent(new StateChangedEvent(EventTopic.OPERATION, null));
+        verify(eventPublisher).publishEvent(new StateChangedEvent(EventTopic.EXPIRED, operation));
+    }
+
     @Test
     public void shouldResetActiveOperations_afterGivenTime() throws InterruptedException {
         when(operationFTPRepository.poll()).thenReturn(Optional.of(createFTPFile("Foo.pdf", now())));
@@ -124,13 +222,13 @@ public class OperationApiImplTest {
 
         api.pollOperations();
 
-        final var resp1 = api.getOperation("");
+        final var resp1 = api.getOperation("", null).join();
         assertEquals("Should return an active operation when available", HttpStatus.OK, resp1.getStatusCode());
         assertNotNull("Should return an active operation when available", resp1.getBody());
 
         Thread.sleep(config.duration() + 500L);
 
-        final var resp2 = api.getOperation("");
+        final var resp2 = api.getOperation("", null).join();
         assertEquals("Should return an active operation when available", HttpStatus.NO_CONTENT, resp2.getStatusCode());
         assertNull("Should return an active operation when available", resp2.getBody());
     }
@@ -150,7 +248,7 @@ public class OperationApiImplTest {
 
         api.pollOperations();
 
-        final var resp1 = api.getOperation("");
+        final var resp1 = api.getOperation("", null).join();
         assertEquals("Should return an active operation when available", HttpStatus.OK, resp1.getStatusCode());
         assertEquals("Should return an active operation when available", "Foo", Objects.requireNonNull(resp1.getBody()).getKeyword());
 
@@ -158,8 +256,76 @@ public class OperationApiImplTest {
 
         api.pollOperations();
 
-        final var resp2 = api.getOperation("");
+        final var resp2 = api.getOperation("", null).join();
         assertEquals("Should return an active operation when available", HttpStatus.OK, resp2.getStatusCode());
         assertEquals("Should return an active operation when available", "Bar", Objects.requireNonNull(resp2.getBody()).getKeyword());
     }
+
+    @Test
+    public void shouldListAllActiveOperations() {
+        final var operation1 = mock(OperationDto.class);
+        final var operation2 = mock(OperationDto.class);
+        when(operationFTPRepository.poll()).thenReturn(Optional.of(createFTPFile("Foo.pdf", now())));
+        when(operationFTPRepository.awaitUploadCompletion(any())).thenReturn(Optional.of(mock(FTPFile.class)));
+        when(operationFTPRepository.download(any())).thenReturn(Optional.of(mock(File.class)));
+        when(operationParserRepository.parse(any())).thenReturn(Optional.of(operation1))
+                .thenReturn(Optional.of(operation2));
+
+        assertEquals("Should list no operations before polling", List.of(), api.getOperations(null).join().getBody());
+
+        api.pollOperations();
+        api.pollOperations();
+
+        final var resp = api.getOperations(null).join();
+        assertEquals("Should list all active operations", HttpStatus.OK, resp.getStatusCode());
+        assertEquals("Should list all active operations, the latest last", List.of(operation1, operation2), resp.getBody());
+        assertEquals("Should share the ETag with the current operation", api.getOperation(null, null).join().getHeaders().getETag(), resp.getHeaders().getETag());
+        assertEquals("Should respond with not modified", HttpStatus.NOT_MODIFIED, api.getOperations(resp.getHeaders().getETag()).join().getStatusCode());
+        assertEquals("Should count all active operations", 2d, meterRegistry.get("fis.operation.active").gauge().value());
+    }
+
+    @Test
+    public void shouldSaveSnapshot_whenOperationsChange() {
+        final var operation = mock(OperationDto.class);
+        when(operationFTPRepository.poll()).thenReturn(Optional.of(createFTPFile("Foo.pdf", now())));
+        when(operationFTPRepository.awaitUploadCompletion(any())).thenReturn(Optional.of(mock(FTPFile.class)));
+        when(operationFTPRepository.download(any())).thenReturn(Optional.of(mock(File.class)));
+        when(operationParserRepository.parse(any())).thenReturn(Optional.of(operation));
+
+        api.pollOperations();
+
+        verify(snapshotRepository).save(argThat(state -> state.current().orElse(null) == operation));
+    }
+
+    @Test
+    public void shouldRestoreSnapshot_whenStarting() {
+        final var active = mock(OperationDto.class);
+        when(active.getKeyword()).thenReturn("Foo");
+        final var expired = mock(OperationDto.class);
+        final var expiry = Instant.now().plusMillis(config.duration());
+        when(snapshotRepository.load()).thenReturn(List.of(
+                new ActiveOperation(expired, Instant.now().minusSeconds(1)),
+                new ActiveOperation(active, expiry)
+        ));
+
+        final var restoredApi = new OperationApiImpl(
+                config,
+                operationFTPRepository,
+                operationNotificationRepository,
+                operationParserRepository,
+                mock(OperationHistoryRepository.class),
+                new OperationStateStore(),
+                new OperationExpiryScheduler(),
+                snapshotRepository,
+                eventPublisher,
+                mock(ResponseBodyCache.class),
+                new SimpleMeterRegistry()
+        );
+
+        assertEquals("Should restore only operations which did not expire yet", List.of(active), restoredApi.getOperations(null).join().getBody());
+        assertEquals("Should restore the current operation", "Foo", Objects.requireNonNull(restoredApi.getOperation(null, null).join().getBody()).getKeyword());
+
+        restoredApi.publishRestoredSnapshot();
+        verify(eventPublisher).publishEvent(new StateChangedEvent(EventTopic.OPERATION, active));
+    }
 }
@@ -0,0 +1,75 @@
+package it.niedermann.fis.operation;
+
+import it.niedermann.fis.main.model.OperationDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OperationExpirySchedulerTest {
+
+    private OperationExpiryScheduler scheduler;
+
+    @BeforeEach
+    public void setup() {
+        scheduler = new OperationExpiryScheduler();
+    }
+
+    @Test
+    public void shouldExpireManyOperationsIndependently() throws InterruptedException {
+        final var count = 100;
+        final var latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            scheduler.schedule(new OperationDto(), Instant.now().plusMillis(i), latch::countDown);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "Should expire all operations");
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void shouldNotExpire_whenCancelled() throws InterruptedException {
+        final var operation = new OperationDto();
+        final var expired = new AtomicInteger();
+        scheduler.schedule(operation, Instant.now().plusMillis(100), expired::incrementAndGet);
+
+        assertTrue(scheduler.cancel(operation));
+        assertFalse(scheduler.cancel(operation), "Should report nothing to cancel");
+        Thread.sleep(300);
+
+        assertEquals(0, expired.get());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void shouldReplacePendingDeadline_whenExtended() throws InterruptedException {
+        final var operation = new OperationDto();
+        final var expired = new AtomicInteger();
+        final var latch = new CountDownLatch(1);
+        scheduler.schedule(operation, Instant.now().plusMillis(100), expired::incrementAndGet);
+
+        scheduler.schedule(operation, Instant.now().plusMillis(400), () -> {
+            expired.incrementAndGet();
+            latch.countDown();
+        });
+        Thread.sleep(200);
+        assertEquals(0, expired.get(), "Should not expire at the original deadline");
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "Should expire at the extended deadline");
+        assertEquals(1, expired.get());
+    }
+
+    @Test
+    public void shouldDistinguishEqualOperations() throws InterruptedException {
+        final var latch = new CountDownLatch(2);
+        scheduler.schedule(new OperationDto(), Instant.now().plusMillis(50), latch::countDown);
+        scheduler.schedule(new OperationDto(), Instant.now().plusMillis(50), latch::countDown);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "Should not replace the deadline of an equal but different operation");
+    }
+}
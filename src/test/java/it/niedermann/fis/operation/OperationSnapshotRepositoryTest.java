@@ -0,0 +1,86 @@
+package it.niedermann.fis.operation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.niedermann.fis.main.model.OperationDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OperationSnapshotRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private Path snapshot;
+    private OperationSnapshotRepository repository;
+
+    @BeforeEach
+    public void setup() {
+        snapshot = directory.resolve("state").resolve("active.json");
+        final var config = mock(OperationConfiguration.class);
+        when(config.snapshot()).thenReturn(snapshot.toString());
+        repository = new OperationSnapshotRepository(config, new ObjectMapper().findAndRegisterModules(), Executors.newSingleThreadExecutor());
+    }
+
+    @Test
+    public void shouldRestoreSavedOperations() throws InterruptedException {
+        final var operation = new OperationDto().keyword("B 3").tags(List.of("Foo")).street("Musterstraße");
+        final var expiry = Instant.ofEpochMilli(1_234_567_890L);
+
+        repository.save(new OperationState(1, false, List.of(new ActiveOperation(operation, expiry))));
+        repository.close();
+
+        assertEquals(List.of(new ActiveOperation(operation, expiry)), repository.load());
+    }
+
+    @Test
+    public void shouldNotOverwriteNewerSnapshot() throws InterruptedException {
+        final var newer = new ActiveOperation(new OperationDto().keyword("Newer"), Instant.ofEpochMilli(2_000));
+        final var older = new ActiveOperation(new OperationDto().keyword("Older"), Instant.ofEpochMilli(1_000));
+
+        repository.save(new OperationState(2, false, List.of(newer)));
+        repository.save(new OperationState(1, false, List.of(older)));
+        repository.close();
+
+        assertEquals(List.of(newer), repository.load());
+    }
+
+    @Test
+    public void shouldNotFail_whenSavingAfterClose() throws InterruptedException {
+        repository.close();
+
+        assertDoesNotThrow(() -> repository.save(new OperationState(1, false, List.of())));
+        assertEquals(List.of(), repository.load());
+    }
+
+    @Test
+    public void shouldRestoreNothing_whenSnapshotIsMissingOrInvalid() throws IOException {
+        assertEquals(List.of(), repository.load());
+
+        Files.createDirectories(snapshot.getParent());
+        Files.writeString(snapshot, "{\"broken");
+
+        assertEquals(List.of(), repository.load());
+    }
+
+    @Test
+    public void shouldDoNothing_whenNoPathIsConfigured() throws InterruptedException {
+        final var repository = new OperationSnapshotRepository(mock(OperationConfiguration.class), new ObjectMapper(), Executors.newSingleThreadExecutor());
+
+        repository.save(new OperationState(1, false, List.of()));
+        repository.close();
+
+        assertEquals(List.of(), repository.load());
+    }
+}
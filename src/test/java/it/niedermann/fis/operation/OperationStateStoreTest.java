@@ -0,0 +1,72 @@
+package it.niedermann.fis.operation;
+
+import it.niedermann.fis.main.model.OperationDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OperationStateStoreTest {
+
+    @Test
+    public void shouldIncrementVersionWithEachChange() {
+        final var store = new OperationStateStore();
+        final var operation = new OperationDto();
+        final var initial = store.get();
+
+        final var processing = store.setProcessing(true);
+        final var added = store.add(operation, Instant.now());
+        final var removed = store.remove(operation);
+
+        assertEquals(initial.version() + 1, processing.version());
+        assertTrue(processing.processing());
+        assertEquals(processing.version() + 1, added.version());
+        assertEquals(operation, added.current().orElseThrow());
+        assertTrue(added.processing(), "Should keep processing flag when adding operations");
+        assertEquals(added.version() + 1, removed.version());
+        assertTrue(removed.current().isEmpty());
+        assertNotEquals(initial.eTag(), removed.eTag());
+    }
+
+    @Test
+    public void shouldNotChange_whenRemovingInactiveOperation() {
+        final var store = new OperationStateStore();
+        final var state = store.add(new OperationDto(), Instant.now());
+
+        assertSame(state, store.remove(new OperationDto()));
+    }
+
+    @Test
+    public void shouldKeepOtherOperations_whenRemovingOne() {
+        final var store = new OperationStateStore();
+        final var operation1 = new OperationDto().keyword("Foo");
+        final var operation2 = new OperationDto().keyword("Bar");
+        store.add(operation1, Instant.now());
+        store.add(operation2, Instant.now());
+
+        assertEquals(operation1, store.remove(operation2).current().orElseThrow());
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentChanges() throws InterruptedException {
+        final var store = new OperationStateStore();
+        final var executor = Executors.newFixedThreadPool(8);
+        final var count = 1_000;
+        final var latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            executor.execute(() -> {
+                store.add(new OperationDto(), Instant.now());
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(count, store.get().operations().size());
+        assertEquals(count, store.get().version());
+    }
+}
@@ -0,0 +1,55 @@
+package it.niedermann.fis.operation.address;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SuppressWarnings("SpellCheckingInspection")
+public class AddressIndexTest {
+
+    private AddressIndex index;
+
+    @BeforeEach
+    public void setup() {
+        index = AddressIndex.of(List.of("Musterstraße", "Musterweg", "Am Musterbach", "Hauptstraße", "Hauptstraße", "Bahnhofstraße"));
+    }
+
+    @Test
+    public void shouldIgnoreDuplicates() {
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    public void shouldFindExactMatchesIgnoringCase() {
+        assertEquals(Optional.of("Hauptstraße"), index.find("Hauptstraße", 0));
+        assertEquals(Optional.of("Hauptstraße"), index.find(" HAUPTSTRASSE ", 0));
+        assertEquals(Optional.of("Am Musterbach"), index.find("am  musterbach", 0));
+    }
+
+    @Test
+    public void shouldFindClosestMatch() {
+        assertEquals(Optional.of("Musterstraße"), index.find("Mustcrstraße", 2));
+        assertEquals(Optional.of("Musterstraße"), index.find("Musterstrafe", 2));
+        assertEquals(Optional.of("Bahnhofstraße"), index.find("Bahnhofstrae", 2));
+        assertEquals(Optional.of("Musterweg"), index.find("Musterwcg", 2));
+    }
+
+    @Test
+    public void shouldNotExceedMaxDistance() {
+        assertTrue(index.find("Mustcrstrafe", 1).isEmpty());
+        assertTrue(index.find("Mustcrstraße", 0).isEmpty());
+        assertTrue(index.find("Foo", 2).isEmpty());
+    }
+
+    @Test
+    public void shouldHandleEmptyInput() {
+        assertTrue(index.find(null, 2).isEmpty());
+        assertTrue(index.find("", 2).isEmpty());
+        assertTrue(AddressIndex.of(List.of()).find("Musterstraße", 2).isEmpty());
+    }
+}
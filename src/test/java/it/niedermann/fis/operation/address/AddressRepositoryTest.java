@@ -0,0 +1,75 @@
+package it.niedermann.fis.operation.address;
+
+import it.niedermann.fis.main.model.OperationDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("SpellCheckingInspection")
+public class AddressRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AddressRepository repository;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        final var index = tempDir.resolve("index.csv");
+        Files.write(index, List.of(
+                "# street;place",
+                "Musterstraße;Musterdorf",
+                "Hauptstraße\tMustergemeinde",
+                ";Musterhausen"
+        ));
+        final var config = mock(AddressConfiguration.class);
+        when(config.index()).thenReturn(index.toString());
+        when(config.maxDistance()).thenReturn(2);
+        repository = new AddressRepository(config);
+    }
+
+    @Test
+    public void shouldCorrectStreetAndLocation() {
+        final var operation = new OperationDto();
+        operation.setStreet("Mustcrstraße");
+        operation.setLocation("99999 Mustcrdorf - Mustergemeindc");
+
+        repository.correct(operation);
+
+        assertEquals("Musterstraße", operation.getStreet());
+        assertEquals("99999 Musterdorf - Mustergemeinde", operation.getLocation());
+    }
+
+    @Test
+    public void shouldKeepUnknownValues() {
+        final var operation = new OperationDto();
+        operation.setStreet("Foo");
+        operation.setLocation("12345 Bar");
+
+        repository.correct(operation);
+
+        assertEquals("Foo", operation.getStreet());
+        assertEquals("12345 Bar", operation.getLocation());
+    }
+
+    @Test
+    public void shouldNotCorrectAnythingWithoutIndex() throws IOException {
+        final var config = mock(AddressConfiguration.class);
+        when(config.maxDistance()).thenReturn(2);
+        final var operation = new OperationDto();
+        operation.setStreet("Mustcrstraße");
+
+        new AddressRepository(config).correct(operation);
+
+        assertEquals("Mustcrstraße", operation.getStreet());
+    }
+}
@@ -1,5 +1,6 @@
 package it.niedermann.fis.operation.parser;
 
+import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.TestUtil;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -41,6 +42,25 @@ public class MittelfrankenSuedParserTest {
         });
     }
 
+    @Test
+    public void confidenceTest() throws IOException {
+        final var samples = TestUtil.getOperationSamples("mittelfranken-sued");
+        samples.forEach((number, sample) -> {
+            final var confidence = parser.getConfidence(parser.parse(sample.input()));
+            assertTrue(confidence > .5f, "Expected a known keyword to result in a high confidence for sample " + number);
+            assertTrue(confidence <= 1f, "Confidence of sample " + number + " must not exceed 1");
+        });
+
+        assertEquals("Expected no confidence for an empty result", 0f, parser.getConfidence(new OperationDto()));
+
+        final var unknownKeyword = new OperationDto();
+        unknownKeyword.setKeyword("FOO");
+        final var knownKeyword = new OperationDto();
+        knownKeyword.setKeyword("THL 1");
+        assertTrue(parser.getConfidence(knownKeyword) > parser.getConfidence(unknownKeyword),
+                "Expected a known keyword to result in a higher confidence than an unknown keyword");
+    }
+
     @Test
     public void parseNoOperationFaxTest() {
         assertThrows(IllegalArgumentException.class, () -> parser.parse(null));
@@ -1,13 +1,19 @@
 package it.niedermann.fis.operation.parser;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.operation.address.AddressRepository;
 import net.sourceforge.tess4j.Tesseract;
 import net.sourceforge.tess4j.TesseractException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -18,19 +24,34 @@ public class OperationParserRepositoryTest {
     private OperationParserRepository repository;
     private Tesseract tesseract;
     private OperationParser parser;
+    private SimpleMeterRegistry meterRegistry;
+    private OperationTesseractFactory tesseractFactory;
+    private OperationParserFactory operationParserFactory;
+    private ParserConfiguration parserConfig;
 
     @BeforeEach
     public void setup() {
         tesseract = mock(Tesseract.class);
-        final var tesseractFactory = mock(OperationTesseractFactory.class);
+        tesseractFactory = mock(OperationTesseractFactory.class);
         when(tesseractFactory.createTesseract(any())).thenReturn(tesseract);
         parser = mock(OperationParser.class);
-        final var operationParserFactory = mock(OperationParserFactory.class);
+        operationParserFactory = mock(OperationParserFactory.class);
         when(operationParserFactory.createParser(any())).thenReturn(parser);
-        this.repository = new OperationParserRepository(
+        parserConfig = mock(ParserConfiguration.class);
+        when(parserConfig.timeout()).thenReturn(500L);
+        meterRegistry = new SimpleMeterRegistry();
+        this.repository = createRepository(Executors.newCachedThreadPool());
+    }
+
+    private OperationParserRepository createRepository(Executor executor) {
+        return new OperationParserRepository(
                 mock(TesseractConfiguration.class),
+                parserConfig,
                 tesseractFactory,
-                operationParserFactory
+                operationParserFactory,
+                mock(AddressRepository.class),
+                meterRegistry,
+                executor
         );
     }
 
@@ -44,11 +65,52 @@ public class OperationParserRepositoryTest {
     public void shouldReturnEmptyWhenFileIsNoOperationFax() {
         when(parser.parse(any())).thenThrow(IllegalArgumentException.class);
         assertTrue(repository.parse(new File("")).isEmpty());
+        assertEquals(1, meterRegistry.get("fis.parser.failures").tag("reason", "unrecognized").counter().count());
+    }
+
+    @Test
+    public void shouldRecordWinsOfParsers() {
+        when(parser.parse(any())).thenReturn(mock(OperationDto.class));
+        repository.parse(new File(""));
+        repository.parse(new File(""));
+
+        final var statistics = repository.getStatistics().get(OperationParserType.MITTELFRANKEN_SUED.name());
+        assertEquals(2, statistics.getRuns());
+        assertEquals(2, statistics.getWins());
+        assertEquals(1d, statistics.getWinRate());
+        assertEquals(2, meterRegistry.get("fis.parser.wins").tag("parser", OperationParserType.MITTELFRANKEN_SUED.name()).functionCounter().count());
+        assertEquals(2, meterRegistry.get("fis.parser.ocr").timer().count());
+    }
+
+    @Test
+    public void shouldIgnoreParsersExceedingTheTimeout() {
+        when(parser.parse(any())).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return mock(OperationDto.class);
+        });
+
+        final var start = System.currentTimeMillis();
+        assertTrue(repository.parse(new File("")).isEmpty());
+        assertTrue(System.currentTimeMillis() - start < 5_000, "Parsing should not wait for parsers exceeding the timeout");
+        assertEquals(1, repository.getStatistics().get(OperationParserType.MITTELFRANKEN_SUED.name()).getTimeouts());
+    }
+
+    @Test
+    public void shouldReturnEmptyWhenAllParsersAreUnavailable() {
+        repository = createRepository(runnable -> {
+            throw new RejectedExecutionException();
+        });
+        when(parser.parse(any())).thenReturn(mock(OperationDto.class));
+
+        assertTrue(repository.parse(new File("")).isEmpty());
+        assertEquals(1, meterRegistry.get("fis.parser.failures").tag("reason", "unavailable").counter().count());
+        assertEquals(0, repository.getStatistics().get(OperationParserType.MITTELFRANKEN_SUED.name()).getRuns());
     }
 
     @Test
     public void shouldReturnEmptyWhenTesseractFails() throws TesseractException {
         when(tesseract.doOCR(any(File.class))).thenThrow(TesseractException.class);
         assertTrue(repository.parse(new File("")).isEmpty());
+        assertEquals(1, meterRegistry.get("fis.parser.failures").tag("reason", "error").counter().count());
     }
 }
@@ -0,0 +1,40 @@
+package it.niedermann.fis.operation.parser;
+
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Replaces the OCR with reading the file as plain text, so that the recorded OCR results from
+ * <code>src/test/resources/samples</code> can be fed into the pipeline without a local Tesseract installation.
+ */
+@TestConfiguration
+public class TextOcrConfiguration {
+
+    @Bean
+    @Primary
+    OperationTesseractFactory textOcrFactory() {
+        return new OperationTesseractFactory() {
+            @Override
+            public Tesseract createTesseract(TesseractConfiguration config) {
+                return new Tesseract() {
+                    @Override
+                    public String doOCR(File imageFile) throws TesseractException {
+                        try {
+                            return Files.readString(imageFile.toPath(), StandardCharsets.UTF_8);
+                        } catch (IOException e) {
+                            throw new TesseractException(e);
+                        }
+                    }
+                };
+            }
+        };
+    }
+}
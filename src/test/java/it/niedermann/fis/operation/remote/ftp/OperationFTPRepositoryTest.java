@@ -1,5 +1,6 @@
 package it.niedermann.fis.operation.remote.ftp;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.net.ftp.FTPFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,6 +23,7 @@ public class OperationFTPRepositoryTest {
 
     private OperationFTPRepository repository;
     private OperationFTPClient ftpClient;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     public void setup() throws IOException {
@@ -31,10 +33,12 @@ public class OperationFTPRepositoryTest {
         when(config.checkUploadCompleteMaxAttempts()).thenReturn(10);
         when(config.maxFileSize()).thenReturn(10_000_000L);
         ftpClient = mock(OperationFTPClient.class);
+        meterRegistry = new SimpleMeterRegistry();
         when(ftpClient.login(any(), any())).thenReturn(true);
         this.repository = new OperationFTPRepository(
                 config,
-                ftpClient
+                ftpClient,
+                meterRegistry
         );
     }
 
@@ -247,6 +251,26 @@ public class OperationFTPRepositoryTest {
         assertTrue(repository.download(new FTPFile()).isPresent());
     }
 
+    @Test
+    public void shouldRecordMetrics() throws IOException {
+        doFirstPoll();
+        when(ftpClient.listFiles(any())).thenReturn(new FTPFile[]{
+                createFTPFile("Foo.pdf", now()),
+                createFTPObject("Bar", now(), FTPFile.DIRECTORY_TYPE)
+        });
+        when(ftpClient.retrieveFile(any(), any())).thenReturn(true, false);
+
+        repository.poll().ifPresent(repository::download);
+        repository.download(new FTPFile());
+
+        assertEquals(2, meterRegistry.get("fis.ftp.poll").timer().count());
+        assertEquals(2, meterRegistry.get("fis.ftp.files.listed").counter().count());
+        assertEquals(1, meterRegistry.get("fis.ftp.files.detected").counter().count());
+        assertEquals(2, meterRegistry.get("fis.ftp.download").timer().count());
+        assertEquals(1, meterRegistry.get("fis.ftp.download.size").summary().count());
+        assertEquals(1, meterRegistry.get("fis.ftp.download.errors").counter().count());
+    }
+
     @Test
     public void uploadAlreadyCompleted() throws IOException {
         when(ftpClient.listFiles(any(), any())).thenReturn(
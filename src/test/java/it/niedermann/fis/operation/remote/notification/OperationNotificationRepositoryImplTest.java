@@ -1,66 +1,272 @@
 package it.niedermann.fis.operation.remote.notification;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.remote.notification.mail.MailProvider;
+import it.niedermann.fis.operation.remote.notification.outbox.NotificationOutbox;
+import it.niedermann.fis.operation.remote.notification.outbox.OutboxConfiguration;
+import it.niedermann.fis.operation.remote.notification.quota.NotificationQuota;
+import it.niedermann.fis.operation.remote.notification.quota.QuotaConfiguration;
+import it.niedermann.fis.operation.remote.notification.routing.NotificationRouter;
+import it.niedermann.fis.operation.remote.notification.routing.RoutingConfiguration;
+import it.niedermann.fis.operation.remote.notification.routing.RoutingConfiguration.RecipientGroup;
+import it.niedermann.fis.operation.remote.notification.routing.RoutingConfiguration.RoutingRule;
 import it.niedermann.fis.operation.remote.notification.sms.SmsProvider;
 import it.niedermann.fis.operation.remote.notification.sms.SmsProviderFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class OperationNotificationRepositoryImplTest {
 
-    private OperationNotificationRepository repository;
+    private OperationNotificationRepositoryImpl repository;
     private MailProvider mailProvider;
     private SmsProvider smsProvider;
     private NotificationConfiguration config;
+    private SimpleMeterRegistry meterRegistry;
+    private SmsProviderFactory smsProviderFactory;
+    private NotificationOutbox outbox;
+    private NotificationQuota quota;
+    private NotificationRouter router;
 
     @BeforeEach()
     public void setup() {
         mailProvider = mock(MailProvider.class);
+        when(mailProvider.getRecipients()).thenReturn(List.of("foo@example.com"));
         smsProvider = mock(SmsProvider.class);
-        final var smsProviderFactory = mock(SmsProviderFactory.class);
-        when(smsProviderFactory.createSmsProvider(any())).thenReturn(smsProvider);
+        when(smsProvider.getRecipients()).thenReturn(List.of("0123456789"));
+        smsProviderFactory = mock(SmsProviderFactory.class);
+        when(smsProviderFactory.createSmsChannel()).thenReturn(smsProvider);
         config = mock(NotificationConfiguration.class);
         when(config.smsLimit()).thenReturn(10);
-        repository = new OperationNotificationRepositoryImpl(config, mailProvider, smsProviderFactory);
+        meterRegistry = new SimpleMeterRegistry();
+        final var outboxConfig = mock(OutboxConfiguration.class);
+        when(outboxConfig.maxAttempts()).thenReturn(3);
+        when(outboxConfig.deduplicationWindow()).thenReturn(60_000L);
+        outbox = new NotificationOutbox(outboxConfig, new ObjectMapper(), meterRegistry);
+        final var quotaConfig = mock(QuotaConfiguration.class);
+        when(quotaConfig.window()).thenReturn(86_400_000L);
+        quota = new NotificationQuota(quotaConfig, config, new ObjectMapper(), meterRegistry);
+        router = new NotificationRouter(mock(RoutingConfiguration.class), meterRegistry);
+        repository = new OperationNotificationRepositoryImpl(config, mailProvider, smsProviderFactory, outbox, quota, router, meterRegistry, Runnable::run, Runnable::run);
     }
 
     @Test
     public void shouldForwardOperationsToMailAndSmsProviders() {
-        final var operation = mock(OperationDto.class);
+        final var operation = createOperation(1);
 
         repository.accept(operation);
 
-        verify(mailProvider, times(1)).accept(operation);
-        verify(smsProvider, times(1)).accept(operation);
+        verify(mailProvider, times(1)).send(operation, List.of("foo@example.com"));
+        verify(smsProvider, times(1)).send(operation, List.of("0123456789"));
+        assertEquals(0, outbox.size());
     }
 
     @Test
-    public void shouldSkipSendingSmsWhenLimitExceeds() {
-        final var operation = mock(OperationDto.class);
+    public void shouldSendOnlyToRoutedChannelsAndGroups() {
+        final var routingConfig = mock(RoutingConfiguration.class);
+        when(routingConfig.groups()).thenReturn(Map.of("atemschutz", new RecipientGroup(null, List.of("0987654321"))));
+        when(routingConfig.rules()).thenReturn(List.of(
+                new RoutingRule("probealarm", null, "PROBEALARM", null, null, null, null, null, List.of("mail")),
+                new RoutingRule("brand", List.of("B"), null, null, null, null, null, List.of("atemschutz"), List.of("sms"))
+        ));
+        when(smsProvider.normalizeRecipients(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        router = new NotificationRouter(routingConfig, meterRegistry);
+        repository = new OperationNotificationRepositoryImpl(config, mailProvider, smsProviderFactory, outbox, quota, router, meterRegistry, Runnable::run, Runnable::run);
+
+        final var probe = createOperation(1).keyword("INF PROBEALARM");
+        repository.accept(probe);
+        verify(mailProvider).send(probe, List.of("foo@example.com"));
+        verify(smsProvider, never()).send(any(), any());
+
+        final var fire = createOperation(2);
+        repository.accept(fire);
+        verify(smsProvider).send(fire, List.of("0987654321"));
+        verify(mailProvider, never()).send(eq(fire), any());
+
+        final var other = createOperation(3).keyword("THL 1");
+        repository.accept(other);
+        verify(mailProvider).send(other, List.of("foo@example.com"));
+        verify(smsProvider).send(other, List.of("0123456789"));
+    }
+
+    @Test
+    public void shouldNotSendTheSameOperationTwice() {
+        repository.accept(createOperation(1));
+        repository.accept(createOperation(1));
+
+        verify(mailProvider, times(1)).send(any(), any());
+        verify(smsProvider, times(1)).send(any(), any());
+    }
+
+    @Test
+    public void shouldRetryFailedRecipients() {
+        final var operation = createOperation(1);
+        when(smsProvider.send(any(), any())).thenReturn(List.of("0123456789")).thenReturn(List.of());
+
+        repository.accept(operation);
+        assertEquals(1, outbox.size());
+        assertEquals(1, meterRegistry.get("fis.notification.outbox.retries").tag("channel", "sms").counter().count());
 
+        repository.retryPending();
+
+        verify(smsProvider, times(2)).send(operation, List.of("0123456789"));
+        verify(mailProvider, times(1)).send(any(), any());
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    public void shouldNotRetryBeyondTheQuota() {
+        final var operation = createOperation(1);
+        when(config.smsLimit()).thenReturn(1);
+        final var quotaConfig = mock(QuotaConfiguration.class);
+        when(quotaConfig.window()).thenReturn(86_400_000L);
+        quota = new NotificationQuota(quotaConfig, config, new ObjectMapper(), meterRegistry);
+        repository = new OperationNotificationRepositoryImpl(config, mailProvider, smsProviderFactory, outbox, quota, router, meterRegistry, Runnable::run, Runnable::run);
+        when(smsProvider.send(any(), any())).thenReturn(List.of("0123456789"));
+
+        repository.accept(operation);
+        repository.retryPending();
+
+        verify(smsProvider, times(1)).send(any(), any());
+        assertEquals(1, outbox.size());
+    }
+
+    @Test
+    public void shouldSkipSendingSmsWhenLimitExceeds() {
         for (int i = 0; i < config.smsLimit() + 1; i++) {
-            repository.accept(operation);
+            repository.accept(createOperation(i));
         }
 
-        verify(mailProvider, times(config.smsLimit() + 1)).accept(operation);
-        verify(smsProvider, times(config.smsLimit())).accept(operation);
+        verify(mailProvider, times(config.smsLimit() + 1)).send(any(), any());
+        verify(smsProvider, times(config.smsLimit())).send(any(), any());
+        assertEquals(config.smsLimit(), meterRegistry.get("fis.notification.sms.quota.used").gauge().value());
+        assertEquals(1, meterRegistry.get("fis.notification.sms.skipped").counter().count());
+        assertEquals(config.smsLimit() + 1, meterRegistry.get("fis.notification.latency").tag("channel", "mail").timer().count());
     }
 
     @Test
     public void shouldContinueSendingSmsAfterLimitWasReset() {
-        final var operation = mock(OperationDto.class);
-
         for (int i = 0; i < config.smsLimit() + 1; i++) {
-            repository.accept(operation);
+            repository.accept(createOperation(i));
         }
 
         repository.resetLimits();
+        repository.accept(createOperation(config.smsLimit() + 1));
+
+        verify(mailProvider, times(config.smsLimit() + 2)).send(any(), any());
+        verify(smsProvider, times(config.smsLimit() + 1)).send(any(), any());
+    }
+
+    @Test
+    public void shouldNotDelayMailBySlowSms() throws InterruptedException {
+        final var operation = createOperation(1);
+        final var smsReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            smsReleased.await(5, TimeUnit.SECONDS);
+            return List.of();
+        }).when(smsProvider).send(any(), any());
+        repository = new OperationNotificationRepositoryImpl(config, mailProvider, smsProviderFactory, outbox, quota, router, meterRegistry, Executors.newSingleThreadExecutor(), Executors.newSingleThreadExecutor());
+
+        repository.accept(operation);
+
+        verify(mailProvider, timeout(1_000)).send(any(), any());
+        assertEquals(0, meterRegistry.get("fis.notification.completed").timer().count());
+        smsReleased.countDown();
+        verify(smsProvider, timeout(1_000)).send(any(), any());
+    }
+
+    @Test
+    public void shouldStopWaitingForChannelsAfterTheirDeadline() throws InterruptedException {
+        final var operation = createOperation(1);
+        final var smsReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            smsReleased.await(5, TimeUnit.SECONDS);
+            return List.of();
+        }).when(smsProvider).send(any(), any());
+        when(config.smsTimeout()).thenReturn(100L);
+        repository = new OperationNotificationRepositoryImpl(config, mailProvider, smsProviderFactory, outbox, quota, router, meterRegistry, Executors.newSingleThreadExecutor(), Executors.newSingleThreadExecutor());
+
+        repository.accept(operation);
+
+        final var completed = meterRegistry.get("fis.notification.completed").timer();
+        for (int i = 0; i < 50 && completed.count() == 0; i++) {
+            Thread.sleep(20);
+        }
+        smsReleased.countDown();
+        assertEquals(1, completed.count());
+        assertTrue(completed.totalTime(TimeUnit.MILLISECONDS) < 5_000);
+        assertEquals(1, meterRegistry.get("fis.notification.timeouts").tag("channel", "sms").counter().count());
+        assertEquals(0, meterRegistry.get("fis.notification.timeouts").tag("channel", "mail").counter().count());
+    }
+
+    @Test
+    public void shouldSettleMissedDeadlinesWithTheOutcomeOfTheSend() throws InterruptedException {
+        final var operation = createOperation(1);
+        final var smsReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            smsReleased.await(5, TimeUnit.SECONDS);
+            return List.of();
+        }).when(smsProvider).send(any(), any());
+        when(config.smsTimeout()).thenReturn(100L);
+        final var smsExecutor = Executors.newSingleThreadExecutor();
+        repository = new OperationNotificationRepositoryImpl(config, mailProvider, smsProviderFactory, outbox, quota, router, meterRegistry, smsExecutor, Runnable::run);
+
         repository.accept(operation);
 
-        verify(mailProvider, times(config.smsLimit() + 2)).accept(operation);
-        verify(smsProvider, times(config.smsLimit() + 1)).accept(operation);
+        final var timeouts = meterRegistry.get("fis.notification.timeouts").tag("channel", "sms").counter();
+        for (int i = 0; i < 50 && timeouts.count() == 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, timeouts.count());
+        assertEquals(1, outbox.size(), "SMS with missed deadline should stay in the outbox");
+        repository.retryPending();
+        assertEquals(0, meterRegistry.get("fis.notification.latency").tag("channel", "sms").timer().count(), "Should not record the deadline as latency");
+
+        smsReleased.countDown();
+        smsExecutor.shutdown();
+        assertTrue(smsExecutor.awaitTermination(1, TimeUnit.SECONDS));
+        verify(smsProvider, times(1)).send(any(), any());
+        assertEquals(1, meterRegistry.get("fis.notification.latency").tag("channel", "sms").timer().count());
+        assertEquals(0, outbox.size(), "SMS which succeeded after the deadline should not be tried again");
+        assertNull(meterRegistry.find("fis.notification.outbox.retries").counter(), "Should not have failed any attempt");
+    }
+
+    @Test
+    public void shouldKeepNotificationsRejectedByTheExecutor() {
+        repository = new OperationNotificationRepositoryImpl(config, mailProvider, smsProviderFactory, outbox, quota, router, meterRegistry, runnable -> {
+            throw new RejectedExecutionException();
+        }, Runnable::run);
+
+        repository.accept(createOperation(1));
+
+        verify(smsProvider, never()).send(any(), any());
+        verify(mailProvider).send(any(), any());
+        assertEquals(1, meterRegistry.get("fis.notification.completed").timer().count());
+        assertEquals(1, outbox.size(), "Rejected SMS should be tried again");
+    }
+
+    private OperationDto createOperation(int number) {
+        return new OperationDto()
+                .keyword("B 3")
+                .street("Musterstraße")
+                .number(String.valueOf(number))
+                .location("Musterstadt")
+                .note("")
+                .obj("")
+                .tags(List.of())
+                .vehicles(List.of());
     }
 }
@@ -1,18 +1,26 @@
 package it.niedermann.fis.operation.remote.notification.mail;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
 import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
+import it.niedermann.fis.operation.remote.notification.template.TemplateConfiguration;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 
+import javax.mail.MessagingException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.*;
 
@@ -21,10 +29,17 @@ public class MailProviderTest {
     private MailProvider repository;
     private JavaMailSender mailSender;
     private NotificationConfiguration config;
+    private NotificationTemplates templates;
 
     @BeforeEach()
     public void setup() {
         config = mock(NotificationConfiguration.class);
+        final var templateConfig = mock(TemplateConfiguration.class);
+        when(templateConfig.sms()).thenReturn("{keyword}");
+        when(templateConfig.smsMaxLength()).thenReturn(160);
+        when(templateConfig.mailSubject()).thenReturn("{keyword}, {tags}");
+        when(templateConfig.mailBody()).thenReturn("Adresse: {address}\n{map}");
+        templates = new NotificationTemplates(templateConfig, new OperationNotificationUtil());
     }
 
     @Test
@@ -32,10 +47,32 @@ public class MailProviderTest {
         mailSender = mock(JavaMailSender.class);
         when(config.mail()).thenReturn(List.of("foo@example.com", "bar@example.com"));
 
-        repository = new MailProvider(config, mock(OperationNotificationUtil.class), Optional.of(mailSender), Optional.empty());
+        repository = createProvider(mock(OperationNotificationUtil.class), Optional.of(mailSender));
         repository.accept(mock(OperationDto.class));
 
-        verify(mailSender, times(1)).send(any(SimpleMailMessage.class), any(SimpleMailMessage.class));
+        verify(mailSender, times(1)).send((SimpleMailMessage[]) argThat(message -> Arrays.equals(
+                new String[]{"foo@example.com", "bar@example.com"},
+                ((SimpleMailMessage) message).getBcc()
+        )));
+    }
+
+    @Test
+    public void shouldSplitRecipientsIntoBatches() {
+        mailSender = mock(JavaMailSender.class);
+        when(config.mail()).thenReturn(List.of("foo@example.com", "bar@example.com", "baz@example.com"));
+        when(config.mailBatchSize()).thenReturn(2);
+        final var batches = new ArrayList<List<String>>();
+        doAnswer(invocation -> {
+            Arrays.stream(invocation.getArguments())
+                    .map(SimpleMailMessage.class::cast)
+                    .forEach(message -> batches.add(List.of(message.getBcc())));
+            return null;
+        }).when(mailSender).send((SimpleMailMessage[]) any());
+
+        repository = createProvider(mock(OperationNotificationUtil.class), Optional.of(mailSender));
+
+        assertEquals(Collections.emptyList(), repository.send(mock(OperationDto.class), repository.getRecipients()));
+        assertEquals(List.of(List.of("foo@example.com", "bar@example.com"), List.of("baz@example.com")), batches);
     }
 
     @Test
@@ -43,7 +80,7 @@ public class MailProviderTest {
         mailSender = mock(JavaMailSender.class);
         when(config.mail()).thenReturn(List.of("foo@example.com", "bar@example.com"));
 
-        repository = new MailProvider(config, mock(OperationNotificationUtil.class), Optional.empty(), Optional.empty());
+        repository = createProvider(mock(OperationNotificationUtil.class), Optional.empty());
         repository.accept(mock(OperationDto.class));
 
         verifyNoInteractions(mailSender);
@@ -55,7 +92,7 @@ public class MailProviderTest {
         when(config.mail()).thenReturn(null);
         when(config.senderName()).thenReturn("JarFIS");
 
-        repository = new MailProvider(config, mock(OperationNotificationUtil.class), Optional.of(mailSender), Optional.empty());
+        repository = createProvider(mock(OperationNotificationUtil.class), Optional.of(mailSender));
         repository.accept(mock(OperationDto.class));
 
         verifyNoInteractions(mailSender);
@@ -68,7 +105,7 @@ public class MailProviderTest {
         when(config.senderName()).thenReturn("Bar");
         when(config.senderMail()).thenReturn("bar@example.com");
 
-        repository = new MailProvider(config, mock(OperationNotificationUtil.class), Optional.of(mailSender), Optional.empty());
+        repository = createProvider(mock(OperationNotificationUtil.class), Optional.of(mailSender));
         repository.accept(mock(OperationDto.class));
 
         verify(mailSender, times(1)).send(
@@ -82,7 +119,7 @@ public class MailProviderTest {
         when(config.mail()).thenReturn(Collections.singletonList("foo@example.com"));
         when(config.senderName()).thenReturn("JarFIS");
 
-        repository = new MailProvider(config, mock(OperationNotificationUtil.class), Optional.of(mailSender), Optional.empty());
+        repository = createProvider(mock(OperationNotificationUtil.class), Optional.of(mailSender));
         repository.accept(mock(OperationDto.class));
 
         verify(mailSender, times(1)).send(
@@ -96,7 +133,7 @@ public class MailProviderTest {
         doThrow(new MailSendException(Collections.emptyMap())).when(mailSender).send((SimpleMailMessage[]) argThat(messages -> true));
         when(config.mail()).thenReturn(Collections.singletonList("foo@example.com"));
 
-        repository = new MailProvider(config, mock(OperationNotificationUtil.class), Optional.of(mailSender), Optional.empty());
+        repository = createProvider(mock(OperationNotificationUtil.class), Optional.of(mailSender));
 
         try {
             repository.accept(mock(OperationDto.class));
@@ -105,4 +142,54 @@ public class MailProviderTest {
         }
     }
 
+    @Test
+    public void shouldReportOnlyFailedRecipients() {
+        mailSender = mock(JavaMailSender.class);
+        doAnswer(invocation -> {
+            final var failed = Arrays.stream(invocation.getArguments())
+                    .map(SimpleMailMessage.class::cast)
+                    .filter(message -> "bar@example.com".equals(message.getBcc()[0]))
+                    .collect(Collectors.toMap(message -> (Object) message, message -> (Exception) new MessagingException()));
+            throw new MailSendException(failed);
+        }).when(mailSender).send((SimpleMailMessage[]) any());
+        when(config.mail()).thenReturn(List.of("foo@example.com", "bar@example.com"));
+        when(config.mailBatchSize()).thenReturn(1);
+
+        repository = createProvider(mock(OperationNotificationUtil.class), Optional.of(mailSender));
+
+        assertEquals(List.of("bar@example.com"), repository.send(mock(OperationDto.class), repository.getRecipients()));
+    }
+
+    @Test
+    public void shouldReportAllRecipientsIfConnectionFailed() {
+        mailSender = mock(JavaMailSender.class);
+        doThrow(new MailSendException(Collections.emptyMap())).when(mailSender).send((SimpleMailMessage[]) any());
+        when(config.mail()).thenReturn(List.of("foo@example.com", "bar@example.com"));
+
+        repository = createProvider(mock(OperationNotificationUtil.class), Optional.of(mailSender));
+
+        assertEquals(List.of("foo@example.com", "bar@example.com"), repository.send(mock(OperationDto.class), repository.getRecipients()));
+    }
+
+    @Test
+    public void shouldRenderMessageFromTemplates() {
+        mailSender = mock(JavaMailSender.class);
+        when(config.mail()).thenReturn(List.of("foo@example.com"));
+        when(config.senderName()).thenReturn("JarFIS");
+        final var operation = new OperationDto().keyword("B 3").tags(List.of("Zimmerbrand")).street("Foo Street").number("6b").location("Bar Village");
+
+        repository = createProvider(new OperationNotificationUtil(), Optional.of(mailSender));
+        repository.accept(operation);
+
+        verify(mailSender).send((SimpleMailMessage[]) argThat(message -> {
+            final var mail = (SimpleMailMessage) message;
+            return "B 3, Zimmerbrand".equals(mail.getSubject())
+                    && mail.getText().startsWith("Adresse: Foo Street 6b, Bar Village\nhttps://www.google.com/maps/")
+                    && "JarFIS".equals(mail.getFrom());
+        }));
+    }
+
+    private MailProvider createProvider(OperationNotificationUtil notificationUtil, Optional<JavaMailSender> mailSender) {
+        return new MailProvider(config, notificationUtil, templates, mailSender, new SmtpTransportPool(config, mailSender, new SimpleMeterRegistry()), Optional.empty(), new SimpleMeterRegistry());
+    }
 }
@@ -0,0 +1,143 @@
+package it.niedermann.fis.operation.remote.notification.mail;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
+import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
+import it.niedermann.fis.operation.remote.notification.template.TemplateConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.MessagingException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SmtpTransportPoolTest {
+
+    private static final List<String> RECIPIENTS = List.of(
+            "a@example.com", "b@example.com", "c@example.com", "d@example.com", "e@example.com"
+    );
+
+    private GreenMail greenMail;
+    private NotificationConfiguration config;
+    private JavaMailSenderImpl mailSender;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        greenMail = new GreenMail(new ServerSetup(findFreePort(), null, ServerSetup.PROTOCOL_SMTP));
+        greenMail.start();
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(greenMail.getSmtp().getPort());
+        config = mock(NotificationConfiguration.class);
+        when(config.senderName()).thenReturn("JarFIS");
+        when(config.senderMail()).thenReturn("fis@example.com");
+        when(config.mail()).thenReturn(RECIPIENTS);
+        when(config.mailBatchSize()).thenReturn(2);
+        when(config.mailConnections()).thenReturn(1);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void teardown() {
+        greenMail.stop();
+    }
+
+    @Test
+    public void shouldOnlyBeAvailableForConfiguredSender() {
+        assertTrue(new SmtpTransportPool(config, Optional.of(mailSender), meterRegistry).isAvailable());
+        assertFalse(new SmtpTransportPool(config, Optional.empty(), meterRegistry).isAvailable());
+        assertFalse(new SmtpTransportPool(config, Optional.of(mock(JavaMailSender.class)), meterRegistry).isAvailable());
+
+        when(config.mailConnections()).thenReturn(0);
+        assertFalse(new SmtpTransportPool(config, Optional.of(mailSender), meterRegistry).isAvailable());
+    }
+
+    @Test
+    public void shouldSendBatchesOverOneConnection() throws MessagingException {
+        final var pool = new SmtpTransportPool(config, Optional.of(mailSender), meterRegistry);
+        final var provider = createProvider(pool);
+
+        assertEquals(List.of(), provider.send(new OperationDto().keyword("B 3"), RECIPIENTS));
+        assertEquals(List.of(), provider.send(new OperationDto().keyword("THL 1"), RECIPIENTS));
+
+        // GreenMail stores a copy for each recipient
+        assertTrue(greenMail.waitForIncomingEmail(5_000, RECIPIENTS.size() * 2));
+        assertEquals(1, getOpenedConnections());
+        for (final var message : greenMail.getReceivedMessages()) {
+            assertNull(message.getHeader("Bcc"), "Recipients must not see each other");
+            assertEquals("fis@example.com", message.getHeader("To", ","));
+        }
+        pool.close();
+    }
+
+    @Test
+    public void shouldReplaceInvalidatedConnection() throws MessagingException {
+        final var pool = new SmtpTransportPool(config, Optional.of(mailSender), meterRegistry);
+
+        final var transport = pool.borrow();
+        assertTrue(transport.isConnected());
+        pool.invalidate(transport);
+        assertFalse(transport.isConnected());
+
+        pool.release(pool.borrow());
+        assertEquals(2, getOpenedConnections());
+        pool.close();
+    }
+
+    @Test
+    public void shouldKeepOneConnectionWarm() throws MessagingException {
+        final var pool = new SmtpTransportPool(config, Optional.of(mailSender), meterRegistry);
+
+        pool.keepAlive();
+        pool.keepAlive();
+        assertEquals(1, getOpenedConnections());
+
+        pool.release(pool.borrow());
+        assertEquals(1, getOpenedConnections());
+        pool.close();
+    }
+
+    @Test
+    public void shouldReportAllRecipientsIfServerIsUnreachable() {
+        final var pool = new SmtpTransportPool(config, Optional.of(mailSender), meterRegistry);
+        greenMail.stop();
+
+        assertEquals(RECIPIENTS, createProvider(pool).send(new OperationDto().keyword("B 3"), RECIPIENTS));
+    }
+
+    private MailProvider createProvider(SmtpTransportPool pool) {
+        final var templateConfig = mock(TemplateConfiguration.class);
+        when(templateConfig.sms()).thenReturn("{keyword}");
+        when(templateConfig.smsMaxLength()).thenReturn(160);
+        when(templateConfig.mailSubject()).thenReturn("{keyword}");
+        when(templateConfig.mailBody()).thenReturn("{address}");
+        final var notificationUtil = new OperationNotificationUtil();
+        return new MailProvider(config, notificationUtil, new NotificationTemplates(templateConfig, notificationUtil),
+                Optional.of(mailSender), pool, Optional.empty(), meterRegistry);
+    }
+
+    private double getOpenedConnections() {
+        return meterRegistry.get("fis.notification.mail.connections.opened").counter().count();
+    }
+
+    private static int findFreePort() throws IOException {
+        try (final var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
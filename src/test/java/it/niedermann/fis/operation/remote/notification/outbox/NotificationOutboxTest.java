@@ -0,0 +1,185 @@
+package it.niedermann.fis.operation.remote.notification.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.main.model.OperationDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NotificationOutboxTest {
+
+    @TempDir
+    Path directory;
+
+    private OutboxConfiguration config;
+    private SimpleMeterRegistry meterRegistry;
+    private Clock clock;
+
+    @BeforeEach
+    public void setup() {
+        config = mock(OutboxConfiguration.class);
+        when(config.path()).thenReturn(directory.resolve("outbox.log").toString());
+        when(config.initialBackoff()).thenReturn(1_000L);
+        when(config.maxBackoff()).thenReturn(60_000L);
+        when(config.maxAttempts()).thenReturn(3);
+        when(config.deduplicationWindow()).thenReturn(3_600_000L);
+        meterRegistry = new SimpleMeterRegistry();
+        clock = Clock.fixed(Instant.parse("2022-06-01T12:00:00Z"), ZoneOffset.UTC);
+    }
+
+    @Test
+    public void shouldSkipPendingAndCompletedDuplicates() {
+        final var outbox = createOutbox();
+
+        final var added = outbox.add("sms", createOperation("B 3"), List.of("1", "2"));
+        assertEquals(2, added.size());
+        assertEquals(0, outbox.add("sms", createOperation("B 3"), List.of("1", "2")).size(), "Pending entries should not be added again");
+
+        outbox.complete(added);
+        assertEquals(0, outbox.size());
+        assertEquals(0, outbox.add("sms", createOperation("B 3"), List.of("1", "2")).size(), "Completed entries should not be added again");
+        assertEquals(1, outbox.add("sms", createOperation("B 3"), List.of("3")).size());
+        assertEquals(2, outbox.add("mail", createOperation("B 3"), List.of("1", "2")).size());
+        assertEquals(2, outbox.add("sms", createOperation("THL 1"), List.of("1", "2")).size());
+        assertEquals(5, meterRegistry.get("fis.notification.outbox.depth").gauge().value());
+    }
+
+    @Test
+    public void shouldForgetCompletedEntriesAfterDeduplicationWindow() {
+        final var outbox = createOutbox();
+        outbox.complete(outbox.add("sms", createOperation("B 3"), List.of("1")));
+
+        clock = Clock.offset(clock, Duration.ofHours(2));
+        final var later = createOutbox();
+
+        assertEquals(1, later.add("sms", createOperation("B 3"), List.of("1")).size());
+    }
+
+    @Test
+    public void shouldRetryFailedEntriesAfterBackoff() {
+        final var outbox = createOutbox();
+        final var added = outbox.add("sms", createOperation("B 3"), List.of("1"));
+        assertEquals(0, outbox.takeDue().size(), "Entries being sent should not be due");
+
+        outbox.fail(added);
+
+        assertEquals(0, outbox.takeDue().size(), "Entries should not be due before their backoff elapsed");
+        assertEquals(1, meterRegistry.get("fis.notification.outbox.retries").tag("channel", "sms").counter().count());
+        clock = Clock.offset(clock, Duration.ofMillis(1_000));
+        final var restored = createOutbox();
+        final var due = restored.takeDue();
+        assertEquals(1, due.size());
+        assertEquals(1, due.get(0).attempts());
+        assertEquals(0, restored.takeDue().size(), "Entries should not be taken twice");
+    }
+
+    @Test
+    public void shouldGiveUpAfterMaxAttempts() {
+        final var outbox = createOutbox();
+        final var entries = outbox.add("mail", createOperation("B 3"), List.of("foo@example.com"));
+
+        for (int attempt = 1; attempt < config.maxAttempts(); attempt++) {
+            outbox.fail(entries);
+            assertEquals(1, outbox.size());
+        }
+        outbox.fail(entries);
+
+        assertEquals(0, outbox.size());
+        assertEquals(2, meterRegistry.get("fis.notification.outbox.retries").tag("channel", "mail").counter().count());
+        assertEquals(1, meterRegistry.get("fis.notification.outbox.dropped").tag("channel", "mail").counter().count());
+        assertEquals(0, createOutbox().size());
+    }
+
+    @Test
+    public void shouldRestorePendingEntriesAfterRestart() {
+        final var outbox = createOutbox();
+        outbox.add("sms", createOperation("B 3"), List.of("1", "2"));
+
+        final var restored = createOutbox();
+
+        assertEquals(2, restored.size());
+        final var due = restored.takeDue();
+        assertEquals(2, due.size());
+        assertEquals("B 3", due.get(0).operation().getKeyword());
+    }
+
+    @Test
+    public void shouldAppendOnlyTheChanges() throws IOException {
+        final var outbox = createOutbox();
+        final var log = directory.resolve("outbox.log");
+        final var first = outbox.add("sms", createOperation("B 3"), List.of("1", "2"));
+        final var size = Files.size(log);
+
+        outbox.complete(first.subList(0, 1));
+
+        final var lines = Files.readAllLines(log);
+        assertEquals(3, lines.size(), "Should append a single line per change");
+        assertTrue(Files.size(log) - size < size / 2, "Should not write the pending entries again");
+        assertEquals(1, createOutbox().size());
+    }
+
+    @Test
+    public void shouldCompactTheLog() throws IOException {
+        when(config.deduplicationWindow()).thenReturn(0L);
+        final var outbox = createOutbox();
+        final var log = directory.resolve("outbox.log");
+        final var pending = outbox.add("sms", createOperation("B 3"), List.of("1"));
+
+        for (int i = 0; i < NotificationOutbox.COMPACTION_THRESHOLD; i++) {
+            outbox.complete(outbox.add("mail", createOperation("THL " + i), List.of("foo@example.com")));
+        }
+
+        assertTrue(Files.readAllLines(log).size() < 2 * NotificationOutbox.COMPACTION_THRESHOLD, "Should have compacted the log");
+        final var restored = createOutbox();
+        assertEquals(1, restored.size());
+        assertEquals(pending.get(0).key(), restored.takeDue().get(0).key());
+    }
+
+    @Test
+    public void shouldSkipIncompleteLines() throws IOException {
+        final var outbox = createOutbox();
+        outbox.add("sms", createOperation("B 3"), List.of("1"));
+        Files.writeString(directory.resolve("outbox.log"), "{\"put\":{\"operationKey", StandardOpenOption.APPEND);
+
+        final var restored = createOutbox();
+
+        assertEquals(1, restored.size());
+        restored.add("sms", createOperation("B 3"), List.of("2"));
+        assertEquals(2, createOutbox().size(), "Should append after the last valid line");
+    }
+
+    @Test
+    public void shouldGrowBackoffExponentiallyWithJitter() {
+        final var outbox = createOutbox();
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(outbox.getBackoff(1) >= 500 && outbox.getBackoff(1) <= 1_000);
+            assertTrue(outbox.getBackoff(3) >= 2_000 && outbox.getBackoff(3) <= 4_000);
+            assertTrue(outbox.getBackoff(10) >= 30_000 && outbox.getBackoff(10) <= 60_000);
+            assertTrue(outbox.getBackoff(100) >= 30_000 && outbox.getBackoff(100) <= 60_000);
+        }
+    }
+
+    private NotificationOutbox createOutbox() {
+        return new NotificationOutbox(config, new ObjectMapper().findAndRegisterModules(), meterRegistry, clock);
+    }
+
+    private OperationDto createOperation(String keyword) {
+        return new OperationDto().keyword(keyword).location("Musterstadt");
+    }
+}
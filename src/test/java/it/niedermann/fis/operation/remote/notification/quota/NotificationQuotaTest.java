@@ -0,0 +1,168 @@
+package it.niedermann.fis.operation.remote.notification.quota;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NotificationQuotaTest {
+
+    private static final long WINDOW = 86_400_000L;
+
+    @TempDir
+    Path directory;
+
+    private QuotaConfiguration config;
+    private NotificationConfiguration notificationConfig;
+    private Clock clock;
+    private SimpleMeterRegistry meterRegistry;
+    private final List<NotificationQuota> quotas = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        config = mock(QuotaConfiguration.class);
+        when(config.window()).thenReturn(WINDOW);
+        when(config.path()).thenReturn(directory.resolve("quota.json").toString());
+        notificationConfig = mock(NotificationConfiguration.class);
+        when(notificationConfig.smsLimit()).thenReturn(2);
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void teardown() throws InterruptedException {
+        for (final var quota : quotas) {
+            quota.close();
+        }
+    }
+
+    @Test
+    public void shouldLimitEachRecipient() {
+        final var quota = createQuota();
+
+        assertEquals(List.of("1", "2"), quota.acquire("sms", List.of("1", "2")));
+        assertEquals(List.of("1"), quota.acquire("sms", List.of("1")));
+        assertEquals(List.of("2"), quota.acquire("sms", List.of("1", "2")));
+        assertEquals(List.of(), quota.acquire("sms", List.of("1", "2")));
+
+        assertEquals(3, meterRegistry.get("fis.notification.sms.skipped").counter().count());
+        assertEquals(2, meterRegistry.get("fis.notification.sms.quota.used").gauge().value());
+        assertEquals(0, meterRegistry.get("fis.notification.sms.quota.remaining").tag("scope", "recipient").gauge().value());
+    }
+
+    @Test
+    public void shouldNotLimitOtherChannels() {
+        final var quota = createQuota();
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(List.of("foo@example.com"), quota.acquire("mail", List.of("foo@example.com")));
+        }
+    }
+
+    @Test
+    public void shouldLimitChannel() {
+        when(config.smsChannelLimit()).thenReturn(3);
+        final var quota = createQuota();
+
+        assertEquals(List.of("1", "2"), quota.acquire("sms", List.of("1", "2")));
+        assertEquals(List.of("3"), quota.acquire("sms", List.of("3", "4")));
+        assertEquals(0, meterRegistry.get("fis.notification.sms.quota.remaining").tag("scope", "channel").gauge().value());
+
+        quota.release("sms", List.of("3"));
+        assertEquals(List.of("4"), quota.acquire("sms", List.of("4")));
+    }
+
+    @Test
+    public void shouldRefillContinuously() {
+        final var quota = createQuota();
+        quota.acquire("sms", List.of("1", "1"));
+        assertEquals(List.of(), quota.acquire("sms", List.of("1")));
+
+        when(clock.millis()).thenReturn(WINDOW / 2);
+        assertEquals(List.of("1"), quota.acquire("sms", List.of("1")));
+        assertEquals(List.of(), quota.acquire("sms", List.of("1")));
+
+        when(clock.millis()).thenReturn(WINDOW * 10);
+        assertEquals(List.of("1", "1"), quota.acquire("sms", List.of("1", "1", "1")));
+    }
+
+    @Test
+    public void shouldRefillOnReset() {
+        final var quota = createQuota();
+        quota.acquire("sms", List.of("1", "1"));
+
+        quota.reset();
+
+        assertEquals(List.of("1", "1"), quota.acquire("sms", List.of("1", "1")));
+    }
+
+    @Test
+    public void shouldKeepUsedQuotaAcrossRestarts() throws InterruptedException {
+        when(config.smsChannelLimit()).thenReturn(3);
+        final var quota = createQuota();
+        quota.acquire("sms", List.of("1", "1", "2"));
+        quota.close();
+
+        final var restored = createQuota();
+
+        assertEquals(List.of(), restored.acquire("sms", List.of("1")));
+        assertEquals(List.of(), restored.acquire("sms", List.of("2")), "Channel limit should have been restored");
+    }
+
+    @Test
+    public void shouldSaveChangesMadeWhileClosing() throws InterruptedException {
+        final var quota = createQuota();
+        quota.close();
+        quota.acquire("sms", List.of("1", "1"));
+        quota.close();
+
+        assertEquals(List.of(), createQuota().acquire("sms", List.of("1")));
+    }
+
+    @Test
+    public void shouldNotExceedLimitUnderContention() throws Exception {
+        when(notificationConfig.smsLimit()).thenReturn(50);
+        final var quota = createQuota();
+        final var executor = Executors.newFixedThreadPool(8);
+        final var tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(() -> {
+                int permitted = 0;
+                for (int j = 0; j < 100; j++) {
+                    permitted += quota.acquire("sms", List.of("1")).size();
+                }
+                return permitted;
+            });
+        }
+
+        int permitted = 0;
+        for (final Future<Integer> result : executor.invokeAll(tasks)) {
+            permitted += result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(50, permitted);
+    }
+
+    private NotificationQuota createQuota() {
+        final var quota = new NotificationQuota(config, notificationConfig, new ObjectMapper(), meterRegistry, clock, Executors.newSingleThreadExecutor());
+        quotas.add(quota);
+        return quota;
+    }
+}
@@ -0,0 +1,130 @@
+package it.niedermann.fis.operation.remote.notification.routing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.operation.remote.notification.routing.RoutingConfiguration.RecipientGroup;
+import it.niedermann.fis.operation.remote.notification.routing.RoutingConfiguration.RoutingRule;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationRouterTest {
+
+    private static final Map<String, RecipientGroup> GROUPS = Map.of(
+            "atemschutz", new RecipientGroup(List.of("foo@example.com"), List.of("0123456789")),
+            "fuehrung", new RecipientGroup(null, List.of("0987654321"))
+    );
+
+    @Test
+    public void shouldUseDefaultRouteWithoutRules() {
+        final var router = createRouter(null, "12:00");
+
+        assertSame(Route.DEFAULT, router.route(createOperation("B 3")));
+        assertTrue(Route.DEFAULT.includes("sms"));
+        assertTrue(Route.DEFAULT.includes("mail"));
+    }
+
+    @Test
+    public void shouldApplyFirstMatchingRule() {
+        final var router = createRouter(List.of(
+                rule("probealarm", null, "probealarm", null, null, null, null, null, List.of("mail")),
+                rule("brand", List.of("b"), null, null, null, null, null, List.of("atemschutz"), null),
+                rule("alles", null, null, null, null, null, null, List.of("fuehrung"), null)
+        ), "12:00");
+
+        final var probe = router.route(createOperation("INF PROBEALARM"));
+        assertEquals("probealarm", probe.rule());
+        assertTrue(probe.includes("mail"));
+        assertFalse(probe.includes("sms"));
+        assertEquals(Set.of(), probe.groups());
+
+        assertEquals("brand", router.route(createOperation("B 3 PERSON")).rule());
+        assertEquals(Set.of("atemschutz"), router.route(createOperation("B3")).groups());
+        assertEquals("alles", router.route(createOperation("BMA")).rule(), "Category must match completely");
+        assertEquals("alles", router.route(createOperation("THL 1")).rule());
+    }
+
+    @Test
+    public void shouldMatchTagsAndVehiclesIgnoringCase() {
+        final var router = createRouter(List.of(
+                rule("person", null, null, List.of("person"), null, null, null, null, List.of("sms")),
+                rule("drehleiter", null, null, null, List.of("dlk"), null, null, null, List.of("sms"))
+        ), "12:00");
+
+        assertEquals("person", router.route(createOperation("B 3").tags(List.of("Zimmerbrand", "Person in Gefahr"))).rule());
+        assertEquals("drehleiter", router.route(createOperation("B 3").vehicles(List.of("FL Musterstadt DLK 23/12"))).rule());
+        assertSame(Route.DEFAULT, router.route(createOperation("B 3").tags(List.of("Zimmerbrand")).vehicles(List.of("HLF"))));
+        assertSame(Route.DEFAULT, router.route(new OperationDto()));
+    }
+
+    @Test
+    public void shouldMatchTimeOfDay() {
+        final var rules = List.of(
+                rule("nachts", null, null, null, null, "22:00", "06:00", List.of("fuehrung"), null),
+                rule("tags", null, null, null, null, "08:00", "17:00", List.of("atemschutz"), null)
+        );
+
+        assertEquals("nachts", createRouter(rules, "23:30").route(createOperation("B 3")).rule());
+        assertEquals("nachts", createRouter(rules, "05:59").route(createOperation("B 3")).rule());
+        assertSame(Route.DEFAULT, createRouter(rules, "06:00").route(createOperation("B 3")));
+        assertEquals("tags", createRouter(rules, "08:00").route(createOperation("B 3")).rule());
+        assertSame(Route.DEFAULT, createRouter(rules, "17:00").route(createOperation("B 3")));
+    }
+
+    @Test
+    public void shouldCountRoutedOperations() {
+        final var meterRegistry = new SimpleMeterRegistry();
+        final var config = new RoutingConfiguration(GROUPS, List.of(rule(null, List.of("INF"), null, null, null, null, null, null, List.of("mail"))));
+        final var router = new NotificationRouter(config, meterRegistry, fixedClock("12:00"));
+
+        router.route(createOperation("INF PROBEALARM"));
+        router.route(createOperation("B 3"));
+        router.route(createOperation("B 4"));
+
+        assertEquals(1, meterRegistry.get("fis.notification.routed").tag("rule", "rule-1").counter().count());
+        assertEquals(2, meterRegistry.get("fis.notification.routed").tag("rule", "default").counter().count());
+    }
+
+    @Test
+    public void shouldProvideGroupMembersPerChannel() {
+        final var router = createRouter(null, "12:00");
+
+        assertEquals(Set.of("atemschutz", "fuehrung"), router.getGroups());
+        assertEquals(List.of("foo@example.com"), router.getMembers("atemschutz", "mail"));
+        assertEquals(List.of("0987654321"), router.getMembers("fuehrung", "sms"));
+        assertEquals(List.of(), router.getMembers("fuehrung", "mail"));
+        assertEquals(List.of(), router.getMembers("unknown", "sms"));
+    }
+
+    @Test
+    public void shouldRejectInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> createRouter(List.of(rule("a", null, null, null, null, null, null, List.of("unknown"), null)), "12:00"));
+        assertThrows(IllegalArgumentException.class, () -> createRouter(List.of(rule("a", null, null, null, null, null, null, null, List.of("fax"))), "12:00"));
+        assertThrows(IllegalArgumentException.class, () -> createRouter(List.of(rule("a", null, null, null, null, "22 Uhr", null, null, null)), "12:00"));
+        assertThrows(IllegalArgumentException.class, () -> createRouter(List.of(rule("a", null, "B (3", null, null, null, null, null, null)), "12:00"));
+    }
+
+    private NotificationRouter createRouter(List<RoutingRule> rules, String time) {
+        return new NotificationRouter(new RoutingConfiguration(GROUPS, rules), new SimpleMeterRegistry(), fixedClock(time));
+    }
+
+    private static RoutingRule rule(String name, List<String> categories, String keyword, List<String> tags, List<String> vehicles,
+                                    String from, String to, List<String> groups, List<String> channels) {
+        return new RoutingRule(name, categories, keyword, tags, vehicles, from, to, groups, channels);
+    }
+
+    private static Clock fixedClock(String time) {
+        return Clock.fixed(LocalDateTime.parse("2022-06-01T" + time).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    }
+
+    private static OperationDto createOperation(String keyword) {
+        return new OperationDto().keyword(keyword);
+    }
+}
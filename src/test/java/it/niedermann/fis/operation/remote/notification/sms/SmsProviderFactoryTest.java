@@ -1,24 +1,35 @@
 package it.niedermann.fis.operation.remote.notification.sms;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.http.OutboundHttpClient;
 import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
 import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
 import it.niedermann.fis.operation.remote.notification.sms.com.smsapi.SmsApiProvider;
+import it.niedermann.fis.operation.remote.notification.sms.failover.FailoverSmsProvider;
+import it.niedermann.fis.operation.remote.notification.sms.failover.SmsFailoverConfiguration;
+import it.niedermann.fis.operation.remote.notification.sms.failover.SmsFailoverConfiguration.Provider;
 import it.niedermann.fis.operation.remote.notification.sms.io.sms77.Sms77Provider;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class SmsProviderFactoryTest {
 
     private SmsProviderFactory factory;
+    private SmsFailoverConfiguration failoverConfig;
 
     @BeforeEach()
     public void setup() {
-        final var config = mock(NotificationConfiguration.class);
-        factory = new SmsProviderFactory(config, mock(OperationNotificationUtil.class));
+        final var config = new NotificationConfiguration("JarFIS", null, "secret", null, 10, false, 0, 0, 0, 0, 60_000, null, null);
+        failoverConfig = mock(SmsFailoverConfiguration.class);
+        factory = new SmsProviderFactory(config, failoverConfig, mock(OperationNotificationUtil.class), mock(NotificationTemplates.class), mock(OutboundHttpClient.class), new SimpleMeterRegistry(), Runnable::run);
     }
 
     @Test
@@ -26,4 +37,17 @@ public class SmsProviderFactoryTest {
         assertEquals(SmsApiProvider.class, factory.createSmsProvider(SmsProviderType.SMSAPI).getClass());
         assertEquals(Sms77Provider.class, factory.createSmsProvider(SmsProviderType.SMS77).getClass());
     }
+
+    @Test
+    public void shouldCreateSmsChannelDependingOnConfiguredProviders() {
+        assertEquals(SmsApiProvider.class, factory.createSmsChannel().getClass());
+
+        when(failoverConfig.providers()).thenReturn(List.of(new Provider(SmsProviderType.SMS77, "other", null)));
+        assertEquals(Sms77Provider.class, factory.createSmsChannel().getClass());
+
+        when(failoverConfig.providers()).thenReturn(List.of(
+                new Provider(SmsProviderType.SMSAPI, null, null),
+                new Provider(SmsProviderType.SMS77, "other", null)));
+        assertEquals(FailoverSmsProvider.class, factory.createSmsChannel().getClass());
+    }
 }
@@ -1,11 +1,15 @@
 package it.niedermann.fis.operation.remote.notification.sms;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.niedermann.fis.main.model.OperationDto;
 import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
 import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -25,10 +29,11 @@ public class SmsProviderTest {
     @Test
     public void shouldHandleNotConfiguredRecipients() {
         when(config.sms()).thenReturn(null);
-        provider = new SmsProvider(config, mock(OperationNotificationUtil.class)) {
+        provider = new SmsProvider(config, mock(OperationNotificationUtil.class), mock(NotificationTemplates.class), new SimpleMeterRegistry()) {
             @Override
-            public void accept(OperationDto operationDto) {
+            public Collection<String> send(OperationDto operation, Collection<String> recipients) {
                 assertEquals(0, recipients.size());
+                return Collections.emptyList();
             }
         };
         provider.accept(mock(OperationDto.class));
@@ -37,10 +42,11 @@ public class SmsProviderTest {
     @Test
     public void shouldFilterInvalidPhoneNumbers() {
         when(config.sms()).thenReturn(List.of("2055550125", "foobar", "123"));
-        provider = new SmsProvider(config, mock(OperationNotificationUtil.class)) {
+        provider = new SmsProvider(config, mock(OperationNotificationUtil.class), mock(NotificationTemplates.class), new SimpleMeterRegistry()) {
             @Override
-            public void accept(OperationDto operationDto) {
+            public Collection<String> send(OperationDto operation, Collection<String> recipients) {
                 assertEquals(1, recipients.size());
+                return Collections.emptyList();
             }
         };
         provider.accept(mock(OperationDto.class));
@@ -0,0 +1,232 @@
+package it.niedermann.fis.operation.remote.notification.sms.failover;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.http.HttpConfiguration;
+import it.niedermann.fis.http.OutboundHttpClient;
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
+import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
+import it.niedermann.fis.operation.remote.notification.sms.SmsProvider;
+import it.niedermann.fis.operation.remote.notification.sms.com.smsapi.SmsApiProvider;
+import it.niedermann.fis.operation.remote.notification.sms.io.sms77.Sms77Provider;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sends against local stand-ins for smsapi.com (primary) and sms77.io (secondary), which can be made slow or failing.
+ */
+public class FailoverSmsProviderTest {
+
+    private static final List<String> RECIPIENTS = List.of("01511111111", "01512222222");
+
+    private StandIn primary;
+    private StandIn secondary;
+    private SmsFailoverConfiguration config;
+    private Clock clock;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboundHttpClient httpClient;
+    private NotificationTemplates templates;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        primary = new StandIn(request -> request.getPath().startsWith("/sms.do"), "{\"count\":2}");
+        secondary = new StandIn(request -> "POST".equals(request.getMethod()), "{\"success\":\"100\"}");
+        config = mock(SmsFailoverConfiguration.class);
+        when(config.hedgeDelay()).thenReturn(300L);
+        when(config.window()).thenReturn(4);
+        when(config.minimumCalls()).thenReturn(2);
+        when(config.failureRate()).thenReturn(50);
+        when(config.openDuration()).thenReturn(60_000L);
+        clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(Instant.EPOCH);
+        meterRegistry = new SimpleMeterRegistry();
+        final var httpConfig = mock(HttpConfiguration.class);
+        when(httpConfig.connectTimeout()).thenReturn(1_000L);
+        when(httpConfig.readTimeout()).thenReturn(3_000L);
+        when(httpConfig.callTimeout()).thenReturn(5_000L);
+        when(httpConfig.maxIdleConnections()).thenReturn(4);
+        when(httpConfig.keepAlive()).thenReturn(60_000L);
+        when(httpConfig.maxRequestsPerHost()).thenReturn(4);
+        httpClient = new OutboundHttpClient(httpConfig, meterRegistry);
+        templates = mock(NotificationTemplates.class);
+        when(templates.renderSms(any(), any())).thenReturn("Einsatz: B 3");
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        primary.server.shutdown();
+        secondary.server.shutdown();
+    }
+
+    @Test
+    public void shouldOnlyUsePrimaryIfHealthy() {
+        final var provider = createProvider();
+
+        assertEquals(List.of(), provider.send(new OperationDto().keyword("B 3"), RECIPIENTS));
+
+        assertEquals(1, primary.requests.get());
+        assertEquals(0, secondary.requests.get());
+    }
+
+    @Test
+    public void shouldFailOverIfPrimaryFails() {
+        primary.responseCode = 500;
+        final var provider = createProvider();
+
+        assertEquals(List.of(), provider.send(new OperationDto().keyword("B 3"), RECIPIENTS));
+
+        assertEquals(1, primary.requests.get());
+        assertEquals(1, secondary.requests.get());
+        assertEquals(1, meterRegistry.get("fis.notification.sms.attempts").tags("provider", "sms77", "reason", "failure").counter().count());
+    }
+
+    @Test
+    public void shouldHedgeIfPrimaryIsSlow() {
+        primary.delay = 2_000L;
+        final var provider = createProvider();
+
+        final var start = System.nanoTime();
+        assertEquals(List.of(), provider.send(new OperationDto().keyword("B 3"), RECIPIENTS));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_500, "Should not wait for the primary");
+        assertEquals(1, secondary.requests.get());
+        assertEquals(1, meterRegistry.get("fis.notification.sms.attempts").tags("provider", "sms77", "reason", "hedge").counter().count());
+    }
+
+    @Test
+    public void shouldReportRecipientsFailedByAllProviders() {
+        primary.responseCode = 500;
+        secondary.responseCode = 500;
+        final var provider = createProvider();
+
+        assertEquals(RECIPIENTS, provider.send(new OperationDto().keyword("B 3"), RECIPIENTS));
+    }
+
+    @Test
+    public void shouldSkipPrimaryWhileItsCircuitBreakerIsOpen() {
+        primary.responseCode = 500;
+        final var provider = createProvider();
+
+        provider.send(new OperationDto().keyword("B 3"), RECIPIENTS);
+        provider.send(new OperationDto().keyword("B 4"), RECIPIENTS);
+        assertEquals(2, meterRegistry.get("fis.notification.sms.breaker.state").tag("provider", "smsapi").gauge().value());
+
+        assertEquals(List.of(), provider.send(new OperationDto().keyword("B 5"), RECIPIENTS));
+        assertEquals(2, primary.requests.get());
+        assertEquals(3, secondary.requests.get());
+
+        // After the open duration, the next send decides
+        primary.responseCode = 200;
+        when(clock.instant()).thenReturn(Instant.EPOCH.plusSeconds(61));
+        assertEquals(List.of(), provider.send(new OperationDto().keyword("B 6"), RECIPIENTS));
+        assertEquals(3, primary.requests.get());
+        assertEquals(3, secondary.requests.get(), "Primary should be preferred again after the open duration");
+        assertEquals(0, meterRegistry.get("fis.notification.sms.breaker.state").tag("provider", "smsapi").gauge().value());
+    }
+
+    @Test
+    public void shouldAdmitOnlyASingleProbeWhileHalfOpen() throws Exception {
+        primary.responseCode = 500;
+        final var provider = createProvider();
+        provider.send(new OperationDto().keyword("B 3"), RECIPIENTS);
+        provider.send(new OperationDto().keyword("B 4"), RECIPIENTS);
+
+        primary.responseCode = 200;
+        primary.delay = 1_000L;
+        when(clock.instant()).thenReturn(Instant.EPOCH.plusSeconds(61));
+        final var probe = CompletableFuture.supplyAsync(() -> provider.send(new OperationDto().keyword("B 5"), RECIPIENTS));
+        for (int i = 0; i < 100 && primary.requests.get() < 3; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, primary.requests.get());
+
+        assertEquals(List.of(), provider.send(new OperationDto().keyword("B 6"), RECIPIENTS));
+        assertEquals(3, primary.requests.get(), "Primary should be treated as open while its probe is running");
+        assertEquals(List.of(), probe.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldReportRecipientsAsFailedIfTheExecutorIsBusy() {
+        final var provider = createProvider(runnable -> {
+            throw new RejectedExecutionException();
+        });
+
+        assertEquals(RECIPIENTS, provider.send(new OperationDto().keyword("B 3"), RECIPIENTS));
+        assertEquals(0, primary.requests.get());
+        assertEquals(0, secondary.requests.get());
+        assertEquals(0, meterRegistry.get("fis.notification.sms.breaker.state").tag("provider", "smsapi").gauge().value(), "A busy executor is no sign of an outage of the provider");
+    }
+
+    private FailoverSmsProvider createProvider() {
+        return createProvider(Executors.newCachedThreadPool());
+    }
+
+    private FailoverSmsProvider createProvider(Executor executor) {
+        final var providers = new LinkedHashMap<String, SmsProvider>();
+        providers.put("smsapi", new SmsApiProvider(createConfig(primary), mock(OperationNotificationUtil.class), templates, httpClient, meterRegistry));
+        providers.put("sms77", new Sms77Provider(createConfig(secondary), mock(OperationNotificationUtil.class), templates, httpClient, meterRegistry));
+        return new FailoverSmsProvider(config, providers, meterRegistry, clock, executor);
+    }
+
+    private NotificationConfiguration createConfig(StandIn standIn) {
+        final var notificationConfig = mock(NotificationConfiguration.class);
+        when(notificationConfig.smsApiKey()).thenReturn("secret");
+        when(notificationConfig.smsProviderUrl()).thenReturn(standIn.server.url("/").toString());
+        when(notificationConfig.senderName()).thenReturn("JarFIS");
+        return notificationConfig;
+    }
+
+    /**
+     * Answers SMS requests after {@link #delay} with {@link #responseCode}, all other requests (like warm up) at once
+     */
+    private static class StandIn {
+
+        private final MockWebServer server = new MockWebServer();
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile int responseCode = 200;
+        private volatile long delay = 0;
+
+        private StandIn(Predicate<RecordedRequest> isSms, String body) throws IOException {
+            server.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    if (!isSms.test(request)) {
+                        return new MockResponse();
+                    }
+                    requests.incrementAndGet();
+                    return new MockResponse()
+                            .setResponseCode(responseCode)
+                            .setHeadersDelay(delay, TimeUnit.MILLISECONDS)
+                            .setHeader("Content-Type", "application/json")
+                            .setBody(body);
+                }
+            });
+            server.start();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package it.niedermann.fis.operation.remote.notification.sms.io.sms77;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.niedermann.fis.http.HttpConfiguration;
+import it.niedermann.fis.http.OutboundHttpClient;
+import it.niedermann.fis.main.model.OperationDto;
+import it.niedermann.fis.operation.remote.notification.NotificationConfiguration;
+import it.niedermann.fis.operation.remote.notification.OperationNotificationUtil;
+import it.niedermann.fis.operation.remote.notification.template.NotificationTemplates;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sends against a local stand-in for the gateway, which fails all numbers listed in {@link #failing}.
+ */
+public class Sms77ProviderTest {
+
+    private static final List<String> RECIPIENTS = List.of("0151 1111111", "0151 2222222", "0151 3333333", "0151 4444444", "0151 5555555");
+
+    private MockWebServer server;
+    private Sms77Provider provider;
+    private SimpleMeterRegistry meterRegistry;
+    private final Set<String> failing = Collections.synchronizedSet(new HashSet<>());
+    private final List<List<String>> requestedRecipients = Collections.synchronizedList(new ArrayList<>());
+    private int responseCode = 200;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (!"POST".equals(request.getMethod())) {
+                    return new MockResponse();
+                }
+                final var form = parseForm(request.getBody().readUtf8());
+                final var recipients = List.of(form.get("to").split(","));
+                requestedRecipients.add(recipients);
+                final var messages = recipients.stream()
+                        .map(recipient -> failing.contains(recipient)
+                                ? "{\"recipient\":\"49" + recipient.substring(1) + "\",\"success\":false,\"error_text\":\"Invalid recipient\"}"
+                                : "{\"recipient\":\"49" + recipient.substring(1) + "\",\"success\":true,\"error_text\":null}")
+                        .collect(Collectors.joining(","));
+                return new MockResponse()
+                        .setResponseCode(responseCode)
+                        .setHeader("Content-Type", "application/json")
+                        .setBody("{\"success\":\"" + (messages.contains("false") ? "902" : "100") + "\",\"messages\":[" + messages + "]}");
+            }
+        });
+        server.start();
+
+        final var config = mock(NotificationConfiguration.class);
+        when(config.smsApiKey()).thenReturn("secret");
+        when(config.smsProviderUrl()).thenReturn(server.url("/").toString());
+        when(config.sms()).thenReturn(RECIPIENTS);
+        when(config.senderName()).thenReturn("JarFIS");
+        final var httpConfig = mock(HttpConfiguration.class);
+        when(httpConfig.connectTimeout()).thenReturn(1_000L);
+        when(httpConfig.readTimeout()).thenReturn(1_000L);
+        when(httpConfig.callTimeout()).thenReturn(2_000L);
+        when(httpConfig.maxIdleConnections()).thenReturn(4);
+        when(httpConfig.keepAlive()).thenReturn(60_000L);
+        when(httpConfig.maxRequestsPerHost()).thenReturn(4);
+        meterRegistry = new SimpleMeterRegistry();
+        final var templates = mock(NotificationTemplates.class);
+        when(templates.renderSms(any(), any())).thenReturn("Einsatz: B 3");
+        provider = new Sms77Provider(config, mock(OperationNotificationUtil.class), templates, new OutboundHttpClient(httpConfig, meterRegistry), meterRegistry, 2);
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void shouldSendChunksOfRecipients() {
+        final var failed = provider.send(new OperationDto().keyword("B 3"), provider.getRecipients());
+
+        assertEquals(0, failed.size());
+        assertEquals(3, requestedRecipients.size());
+        assertEquals(Set.copyOf(provider.getRecipients()), requestedRecipients.stream().flatMap(List::stream).collect(Collectors.toSet()));
+        requestedRecipients.forEach(chunk -> assertTrue(chunk.size() <= 2));
+        assertEquals(5, meterRegistry.get("fis.notification.sent").tags("channel", "sms", "outcome", "success").counter().count());
+    }
+
+    @Test
+    public void shouldReportRejectedRecipients() {
+        failing.add("01513333333");
+
+        final var failed = provider.send(new OperationDto().keyword("B 3"), provider.getRecipients());
+
+        assertEquals(List.of("01513333333"), failed);
+        assertEquals(4, meterRegistry.get("fis.notification.sent").tags("channel", "sms", "outcome", "success").counter().count());
+        assertEquals(1, meterRegistry.get("fis.notification.sent").tags("channel", "sms", "outcome", "failure").counter().count());
+    }
+
+    @Test
+    public void shouldReportWholeChunkIfRequestFailed() {
+        responseCode = 500;
+
+        final var failed = provider.send(new OperationDto().keyword("B 3"), List.of("01511111111", "01512222222"));
+
+        assertEquals(Set.of("01511111111", "01512222222"), Set.copyOf(failed));
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        return Arrays.stream(body.split("&"))
+                .map(field -> field.split("=", 2))
+                .collect(Collectors.toMap(
+                        field -> URLDecoder.decode(field[0], StandardCharsets.UTF_8),
+                        field -> field.length > 1 ? URLDecoder.decode(field[1], StandardCharsets.UTF_8) : ""));
+    }
+}
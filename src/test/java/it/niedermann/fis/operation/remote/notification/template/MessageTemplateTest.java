@@ -0,0 +1,66 @@
+package it.niedermann.fis.operation.remote.notification.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static it.niedermann.fis.operation.remote.notification.template.TemplateVariable.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageTemplateTest {
+
+    @Test
+    public void shouldRenderPlaceholders() {
+        final var template = MessageTemplate.compile("Einsatz: {keyword}, {tags} - {keyword}");
+
+        assertEquals("Einsatz: B 3, Zimmerbrand - B 3", template.render(Map.of(KEYWORD, "B 3", TAGS, "Zimmerbrand")));
+        assertEquals("Einsatz: ,  - ", template.render(Map.of()));
+    }
+
+    @Test
+    public void shouldRenderEscapedBraces() {
+        assertEquals("{keyword} B 3 }", MessageTemplate.compile("{{keyword}} { keyword } }}").render(Map.of(KEYWORD, "B 3")));
+    }
+
+    @Test
+    public void shouldRejectInvalidTemplates() {
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplate.compile("Einsatz: {foo}"));
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplate.compile("Einsatz: {keyword"));
+    }
+
+    @Test
+    public void shouldNotTruncateShortMessages() {
+        assertEquals("B 3: Foo", MessageTemplate.compile("{keyword}: {note}").render(Map.of(KEYWORD, "B 3", NOTE, "Foo"), 8));
+    }
+
+    @Test
+    public void shouldTruncateNoteBeforeOtherVariables() {
+        final var template = MessageTemplate.compile("{keyword}: {note} {map}");
+        final var values = Map.of(KEYWORD, "B 3", NOTE, "Person in Wohnung", MAP, "https://example.com");
+
+        final var message = template.render(values, 35);
+
+        assertEquals(35, message.length());
+        assertEquals("B 3: Person ... https://example.com", message);
+    }
+
+    @Test
+    public void shouldDropVariablesAndKeepLinks() {
+        final var template = MessageTemplate.compile("{keyword}: {note} {tags} {map}");
+        final var values = Map.of(KEYWORD, "B 3", NOTE, "Person in Wohnung", TAGS, "Zimmerbrand", MAP, "https://example.com");
+
+        final var message = template.render(values, 30);
+
+        assertTrue(message.length() <= 30);
+        assertTrue(message.endsWith(" https://example.com"), message);
+        assertFalse(message.contains("Person"));
+    }
+
+    @Test
+    public void shouldCutMessageIfVariablesAreNotEnough() {
+        final var message = MessageTemplate.compile("Ein sehr langer Text {map}").render(Map.of(MAP, "https://example.com"), 20);
+
+        assertEquals(20, message.length());
+        assertTrue(message.endsWith("..."));
+    }
+}
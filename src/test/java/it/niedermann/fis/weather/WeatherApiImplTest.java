@@ -0,0 +1,69 @@
+package it.niedermann.fis.weather;
+
+import it.niedermann.fis.cache.ResponseBodyCache;
+import it.niedermann.fis.main.model.WeatherDto;
+import it.niedermann.fis.weather.provider.WeatherProvider;
+import it.niedermann.fis.weather.provider.WeatherProviderFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class WeatherApiImplTest {
+
+    private WeatherApiImpl api;
+    private WeatherProvider weatherProvider;
+
+    @BeforeEach
+    public void setup() {
+        final var config = mock(WeatherConfiguration.class);
+        when(config.apiKey()).thenReturn("foo");
+        weatherProvider = mock(WeatherProvider.class);
+        final var weatherProviderFactory = mock(WeatherProviderFactory.class);
+        when(weatherProviderFactory.createWeatherProvider(any())).thenReturn(weatherProvider);
+        api = new WeatherApiImpl(config, weatherProviderFactory, mock(ApplicationEventPublisher.class), mock(ResponseBodyCache.class));
+    }
+
+    @Test
+    public void shouldRespondNotModified_untilWeatherChanges() throws IOException {
+        when(weatherProvider.fetchWeather()).thenReturn(createWeather(20f));
+
+        final var first = api.getWeather(null).join();
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        final var eTag = first.getHeaders().getETag();
+        assertNotNull(eTag);
+
+        api.pollWeather();
+        final var unchanged = api.getWeather(eTag).join();
+        assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+        assertNull(unchanged.getBody());
+        assertEquals(eTag, unchanged.getHeaders().getETag());
+
+        when(weatherProvider.fetchWeather()).thenReturn(createWeather(21f));
+        api.pollWeather();
+        final var changed = api.getWeather(eTag).join();
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(eTag, changed.getHeaders().getETag());
+        assertEquals(21f, changed.getBody().getTemperature());
+    }
+
+    @Test
+    public void shouldRespondNotFound_whenNoApiKeyIsGiven() {
+        final var config = mock(WeatherConfiguration.class);
+        final var api = new WeatherApiImpl(config, mock(WeatherProviderFactory.class), mock(ApplicationEventPublisher.class), mock(ResponseBodyCache.class));
+
+        assertEquals(HttpStatus.NOT_FOUND, api.getWeather(null).join().getStatusCode());
+    }
+
+    private WeatherDto createWeather(float temperature) {
+        final var weather = new WeatherDto();
+        weather.setTemperature(temperature);
+        return weather;
+    }
+}